@@ -0,0 +1,106 @@
+package com.jjas.similar_products.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragment;
+import com.jjas.similar_products.infrastructure.mapper.ProductDetailList;
+import com.jjas.similar_products.infrastructure.mapper.ProductJson;
+import com.jjas.similar_products.infrastructure.mapper.ProductMapper;
+import com.jjas.similar_products.infrastructure.mapper.ProductMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Writes the /product/{id}/similar body of cached products three ways: building new DTOs and serializing them with
+ * Jackson, serializing the DTOs of the mapper, and joining the pre-serialized JSON the cache keeps with the products.
+ * Also writes the POST /product/similar body of ten products sharing the same similar products, with Jackson
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductJsonBenchmark {
+
+    @Param({"5", "50"})
+    int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final ProductMapper productMapper = new ProductMapperImpl();
+
+    private final Map<Product, JsonFragment> fragments = new IdentityHashMap<>();
+
+    private final ProductJson productJson = new ProductJson(productMapper, objectMapper, fragments::computeIfAbsent);
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+
+    private List<Product> products;
+
+    private List<ProductDetail> rendered;
+
+    private Map<String, List<ProductDetail>> batch;
+
+    @Setup
+    public void setUp() {
+        products = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            products.add(new Product(String.valueOf(1000 + i), "Product name " + i, new BigDecimal(i + ".99"), i % 2 == 0));
+        }
+        rendered = productJson.render(products);
+        batch = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            batch.put(String.valueOf(i), rendered);
+        }
+    }
+
+    @Benchmark
+    public int newDtosAndJackson() throws IOException {
+        List<ProductDetail> dtos = new ArrayList<>(products.size());
+        for (Product product : products) {
+            dtos.add(new ProductDetail().id(product.getId()).name(product.getName())
+                    .price(product.getPrice()).availability(product.getAvailability()));
+        }
+        out.reset();
+        objectMapper.writeValue(out, dtos);
+        return out.size();
+    }
+
+    @Benchmark
+    public int mappedDtosAndJackson() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, productMapper.toDtoList(products));
+        return out.size();
+    }
+
+    @Benchmark
+    public int joinedFragments() throws IOException {
+        out.reset();
+        ((ProductDetailList) rendered).writeTo(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int batchWithJackson() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, batch);
+        return out.size();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.jjas.similar_products.benchmark;
+
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import com.jjas.similar_products.infrastructure.mapper.ProductMapper;
+import com.jjas.similar_products.infrastructure.mapper.ProductMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Maps products to their response DTOs with {@link ProductMapper#toDtoList(List)}: products already built, and
+ * products just fetched, which includes building them
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductMapperBenchmark {
+
+    @Param({"5", "50"})
+    int size;
+
+    private final ProductMapper productMapper = new ProductMapperImpl();
+
+    private final BigDecimal price = new BigDecimal("19.99");
+
+    private List<Product> cached;
+
+    @Setup
+    public void setUp() {
+        cached = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            cached.add(new Product(String.valueOf(1000 + i), "Product name " + i, price, i % 2 == 0));
+        }
+    }
+
+    @Benchmark
+    public List<ProductDetail> cachedProducts() {
+        return productMapper.toDtoList(cached);
+    }
+
+    @Benchmark
+    public List<ProductDetail> fetchedProducts() {
+        List<Product> fetched = new ArrayList<>(size);
+        for (Product product : cached) {
+            fetched.add(new Product(product.getId(), product.getName(), price, product.getAvailability()));
+        }
+        return productMapper.toDtoList(fetched);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.jjas.similar_products.benchmark;
+
+import com.jjas.similar_products.config.FanOutProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarIds;
+import com.jjas.similar_products.domain.model.SimilarProducts;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.service.BoundedFanOut;
+import com.jjas.similar_products.service.ProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/***
+ * Assembles the similar products of a product with {@link ProductService} over an upstream that answers from memory,
+ * so only the service itself is measured: the page window, the fan-out and the result list. The fan-out runs on the
+ * calling thread (the SEQUENTIAL mode) or on a fixed pool (the EXECUTOR mode). The INFO log of every call is turned
+ * off, as it would measure the console handler instead
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ProductServiceBenchmark {
+
+    @Param({"5", "50", "500"})
+    int size;
+
+    @Param({"sequential", "executor"})
+    String fanOut;
+
+    private ExecutorService executor;
+
+    private ProductService productService;
+
+    private final Page firstPage = Page.of(0, 5);
+
+    @Setup
+    public void setUp() {
+        Logger.getLogger(ProductService.class.getName()).setLevel(java.util.logging.Level.WARNING);
+        List<String> similarIds = new ArrayList<>();
+        Map<String, Product> products = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String id = String.valueOf(1000 + i);
+            similarIds.add(id);
+            products.put(id, new Product(id, "Product name " + i, new BigDecimal(i + ".99"), i % 2 == 0));
+        }
+        List<String> compactIds = SimilarIds.of(similarIds);
+        ExternalProductService upstream = new ExternalProductService() {
+            @Override
+            public List<String> fetchSimilarProductIds(String productId, Deadline deadline) {
+                return compactIds;
+            }
+
+            @Override
+            public Product fetchProductDetail(String productId, Deadline deadline) {
+                return products.get(productId);
+            }
+        };
+
+        FanOutProperties properties = new FanOutProperties();
+        executor = "executor".equals(fanOut) ? Executors.newFixedThreadPool(properties.getPoolSize()) : null;
+        BoundedFanOut boundedFanOut = new BoundedFanOut(executor != null ? executor : Runnable::run, properties);
+        productService = new ProductService(upstream, boundedFanOut, properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public SimilarProducts allSimilarProducts() {
+        return productService.findSimilarProducts("1", Page.all(), Deadline.none());
+    }
+
+    @Benchmark
+    public SimilarProducts firstPageOfFive() {
+        return productService.findSimilarProducts("1", firstPage, Deadline.none());
+    }
+
+}
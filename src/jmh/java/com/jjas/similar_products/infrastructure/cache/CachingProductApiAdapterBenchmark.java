@@ -0,0 +1,74 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Looks product details up through the Caffeine caches of {@link CachingProductApiAdapter}, over an upstream that
+ * answers from memory. A hit reads one of the cached products; a miss loads a product never seen before on the
+ * calling thread, evicting another one, as the cache holds the default 1000 entries. It lives in the package of the
+ * adapter to use its constructor without the hedging adapter
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CachingProductApiAdapterBenchmark {
+
+    private static final int CACHED = 500;
+
+    private final BigDecimal price = new BigDecimal("19.99");
+
+    private final String[] cachedIds = new String[CACHED];
+
+    private CachingProductApiAdapter adapter;
+
+    private int next;
+
+    private long missing;
+
+    @Setup
+    public void setUp() {
+        ExternalProductService upstream = new ExternalProductService() {
+            @Override
+            public List<String> fetchSimilarProductIds(String productId, Deadline deadline) {
+                return List.of();
+            }
+
+            @Override
+            public Product fetchProductDetail(String productId, Deadline deadline) {
+                return new Product(productId, "Product name", price, true);
+            }
+        };
+        adapter = new CachingProductApiAdapter(upstream, new ProductCacheProperties(), Runnable::run);
+        for (int i = 0; i < CACHED; i++) {
+            cachedIds[i] = String.valueOf(i);
+            adapter.fetchProductDetail(cachedIds[i]);
+        }
+        missing = CACHED;
+    }
+
+    @Benchmark
+    public Product hit() {
+        next = next + 1 == CACHED ? 0 : next + 1;
+        return adapter.fetchProductDetail(cachedIds[next]);
+    }
+
+    @Benchmark
+    public Product miss() {
+        return adapter.fetchProductDetail(Long.toString(missing++));
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.jjas.similar_products.load;
+
+import java.util.random.RandomGenerator;
+
+/***
+ * Distribution of a non negative value, the latencies (in milliseconds) and list sizes of the upstream stand-in.
+ * Written as {@code fixed:20}, {@code uniform:5-50}, or {@code lognormal:10-200} for a log-normal distribution with
+ * median 10 and 99th percentile 200, the usual shape of the latency of a remote service
+ */
+interface Distribution {
+
+    double sample(RandomGenerator random);
+
+    /***
+     * @param spec the distribution, for example {@code lognormal:10-200}
+     * @return the distribution
+     * @throws IllegalArgumentException when the spec cannot be parsed
+     */
+    static Distribution parse(String spec) {
+        String[] kindAndValues = spec.split(":", 2);
+        if (kindAndValues.length != 2) {
+            throw new IllegalArgumentException("Distribution must be fixed:<value>, uniform:<min>-<max> or lognormal:<median>-<p99>: " + spec);
+        }
+        String[] values = kindAndValues[1].split("-");
+        double first = Double.parseDouble(values[0]);
+        double second = values.length > 1 ? Double.parseDouble(values[1]) : first;
+        if (first < 0 || second < first) {
+            throw new IllegalArgumentException("Distribution bounds must be non negative and ordered: " + spec);
+        }
+        return switch (kindAndValues[0]) {
+            case "fixed" -> random -> first;
+            case "uniform" -> random -> first + (second - first) * random.nextDouble();
+            case "lognormal" -> {
+                double mu = Math.log(Math.max(first, 1e-3));
+                // 2.326 is the standard normal quantile of the 99th percentile
+                double sigma = (Math.log(Math.max(second, 1e-3)) - mu) / 2.326;
+                yield random -> Math.exp(mu + sigma * random.nextGaussian());
+            }
+            default -> throw new IllegalArgumentException("Unknown distribution " + kindAndValues[0] + ": " + spec);
+        };
+    }
+
+}
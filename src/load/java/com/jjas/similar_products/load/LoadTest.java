@@ -0,0 +1,98 @@
+package com.jjas.similar_products.load;
+
+import com.jjas.similar_products.SimilarProductsApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/***
+ * Load test of GET /product/{id}/similar. Starts the upstream stand-in and, unless a target is given, the service
+ * itself pointed at it, then drives every arrival rate in turn after a warm-up. Every stage writes the HdrHistogram
+ * percentile distribution of its latencies (rate-N.hgrm, in milliseconds), and the run ends with a throughput and
+ * latency summary of all of them (summary.csv), so runs with different execution modes or cache settings can be
+ * compared side by side.
+ *
+ * Run it with {@code mvn -Pload test-compile exec:exec -Dload.args="rates=100,200 duration=20s"}; see
+ * {@link LoadTestOptions} for the options.
+ */
+public final class LoadTest {
+
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Files.createDirectories(options.output());
+
+        try (UpstreamStandIn upstream = new UpstreamStandIn(options);
+             ConfigurableApplicationContext service = options.target() == null ? startService(options, upstream) : null) {
+            String target = options.target() != null ? options.target()
+                    : "http://localhost:" + service.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            OpenLoopLoad load = new OpenLoopLoad(client, target, new ZipfKeys(options.products(), options.skew(), options.seed()),
+                    options.requestTimeout());
+
+            System.out.printf("Warming up %s at %d req/s for %s%n", target, options.rates().get(0), options.warmUp());
+            load.run(options.rates().get(0), options.warmUp());
+
+            List<String> summary = new ArrayList<>();
+            summary.add("rate,requests,errors,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,similar_ids_calls,product_detail_calls");
+            for (int rate : options.rates()) {
+                long similarIdsCalls = upstream.similarIdsCalls();
+                long productDetailCalls = upstream.productDetailCalls();
+                OpenLoopLoad.Result result = load.run(rate, options.duration());
+                writeDistribution(result, options.output().resolve("rate-" + rate + ".hgrm"));
+                String line = String.format(Locale.ROOT, "%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%.2f,%.2f,%d,%d",
+                        rate, result.requests(), result.errors(), result.throughput(),
+                        millis(result, 50), millis(result, 90), millis(result, 99), millis(result, 99.9),
+                        result.latencies().getMaxValue() / MICROS_PER_MILLI,
+                        upstream.similarIdsCalls() - similarIdsCalls, upstream.productDetailCalls() - productDetailCalls);
+                summary.add(line);
+                System.out.printf(Locale.ROOT, "%5d req/s: %.1f ok/s, %d errors, p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+                        rate, result.throughput(), result.errors(), millis(result, 50), millis(result, 99),
+                        millis(result, 99.9), result.latencies().getMaxValue() / MICROS_PER_MILLI);
+            }
+            Files.write(options.output().resolve("summary.csv"), summary);
+            System.out.println("Reports written to " + options.output().toAbsolutePath());
+        }
+    }
+
+    /***
+     * Starts the service on a random port, calling the stand-in. Its request log is lowered to WARN unless the
+     * arguments set it, as writing a console line per request would be measured instead of the service
+     */
+    private static ConfigurableApplicationContext startService(LoadTestOptions options, UpstreamStandIn upstream) {
+        List<String> arguments = new ArrayList<>(options.serviceArguments());
+        addDefault(arguments, "--server.port", "0");
+        addDefault(arguments, "--external.product-api.base-url", upstream.baseUrl());
+        addDefault(arguments, "--logging.level.com.jjas.similar_products", "WARN");
+        return new SpringApplicationBuilder(SimilarProductsApplication.class).run(arguments.toArray(String[]::new));
+    }
+
+    private static void addDefault(List<String> arguments, String name, String value) {
+        if (arguments.stream().noneMatch(argument -> argument.startsWith(name + "="))) {
+            arguments.add(name + "=" + value);
+        }
+    }
+
+    private static void writeDistribution(OpenLoopLoad.Result result, Path file) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            result.latencies().outputPercentileDistribution(out, MICROS_PER_MILLI);
+        }
+    }
+
+    private static double millis(OpenLoopLoad.Result result, double percentile) {
+        return result.latencies().getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+    }
+
+}
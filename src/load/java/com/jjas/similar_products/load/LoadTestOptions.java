@@ -0,0 +1,75 @@
+package com.jjas.similar_products.load;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/***
+ * Options of a load test run, given as {@code name=value} arguments. Arguments starting with {@code --} are Spring
+ * Boot properties of the service under test, for example {@code --similar-products.fan-out.mode=EXECUTOR}
+ * @param rates              arrival rates to drive, in requests per second, one stage each
+ * @param duration           measured duration of every stage
+ * @param warmUp             duration of the unmeasured warm-up at the first rate
+ * @param products           number of products of the synthetic catalog
+ * @param skew               Zipf exponent of the requested products, 0 requests all of them uniformly
+ * @param seed               seed of the catalog and of the sequence of requested products
+ * @param similarIdsLatency  latency of the similar IDs calls, in milliseconds
+ * @param productDetailLatency latency of the product detail calls, in milliseconds
+ * @param errorRate          fraction of upstream calls answered with 500
+ * @param listSize           number of similar IDs of every product
+ * @param requestTimeout     timeout of every request to the service
+ * @param target             base URL of an already running service, null to start one in process
+ * @param output             directory of the reports
+ * @param serviceArguments   Spring Boot arguments of the service started in process
+ */
+record LoadTestOptions(List<Integer> rates, Duration duration, Duration warmUp, int products, double skew, long seed,
+                       Distribution similarIdsLatency, Distribution productDetailLatency, double errorRate,
+                       Distribution listSize, Duration requestTimeout, String target, Path output,
+                       List<String> serviceArguments) {
+
+    private static final Set<String> NAMES = Set.of("rates", "duration", "warm-up", "products", "skew", "seed",
+            "similar-ids-latency", "product-detail-latency", "error-rate", "list-size", "request-timeout", "target",
+            "output");
+
+    /***
+     * @param args the program arguments
+     * @return the options, with defaults for the missing ones
+     * @throws IllegalArgumentException for unknown or malformed options
+     */
+    static LoadTestOptions parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        List<String> serviceArguments = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                serviceArguments.add(arg);
+                continue;
+            }
+            String[] nameAndValue = arg.split("=", 2);
+            if (nameAndValue.length != 2 || !NAMES.contains(nameAndValue[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + NAMES);
+            }
+            values.put(nameAndValue[0], nameAndValue[1]);
+        }
+        return new LoadTestOptions(
+                Arrays.stream(values.getOrDefault("rates", "50,100,200").split(",")).map(Integer::valueOf).toList(),
+                Duration.parse("PT" + values.getOrDefault("duration", "30s")),
+                Duration.parse("PT" + values.getOrDefault("warm-up", "10s")),
+                Integer.parseInt(values.getOrDefault("products", "10000")),
+                Double.parseDouble(values.getOrDefault("skew", "1.0")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Distribution.parse(values.getOrDefault("similar-ids-latency", "lognormal:5-50")),
+                Distribution.parse(values.getOrDefault("product-detail-latency", "lognormal:10-100")),
+                Double.parseDouble(values.getOrDefault("error-rate", "0")),
+                Distribution.parse(values.getOrDefault("list-size", "uniform:1-20")),
+                Duration.parse("PT" + values.getOrDefault("request-timeout", "10s")),
+                values.get("target"),
+                Path.of(values.getOrDefault("output", "target/load-test")),
+                List.copyOf(serviceArguments));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.jjas.similar_products.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/***
+ * Sends GET /product/{id}/similar requests at a fixed arrival rate, whatever the response times. Requests are sent on
+ * schedule without waiting for the previous ones, and the latency of every request is measured from the moment it
+ * was due, so a stalled service shows up in the percentiles instead of slowing down the load (no coordinated
+ * omission).
+ */
+final class OpenLoopLoad {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(2);
+
+    private final HttpClient client;
+
+    private final String baseUrl;
+
+    private final ZipfKeys keys;
+
+    private final Duration requestTimeout;
+
+    OpenLoopLoad(HttpClient client, String baseUrl, ZipfKeys keys, Duration requestTimeout) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.keys = keys;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /***
+     * @param rate     requests per second
+     * @param duration how long requests are sent for
+     * @return the latencies and outcomes of the requests, once all of them completed
+     */
+    Result run(int rate, Duration duration) {
+        Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3);
+        AtomicLong errors = new AtomicLong();
+        long requests = Math.max(1, duration.toNanos() * rate / TimeUnit.SECONDS.toNanos(1));
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        List<CompletableFuture<?>> responses = new ArrayList<>((int) requests);
+
+        long start = System.nanoTime();
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * interval;
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/product/" + keys.next() + "/similar"))
+                    .timeout(requestTimeout)
+                    .GET()
+                    .build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latencies.recordValue(Math.min(HIGHEST_LATENCY_MICROS, (System.nanoTime() - due) / 1000));
+                        if (failure != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+                .exceptionally(failure -> null)
+                .join();
+        return new Result(rate, requests, errors.get(), Duration.ofNanos(System.nanoTime() - start), latencies);
+    }
+
+    /***
+     * @param rate      the arrival rate, in requests per second
+     * @param requests  the requests sent
+     * @param errors    the requests that failed or were not answered with 200
+     * @param elapsed   the time from the first request to the last response
+     * @param latencies the latencies of all the requests, in microseconds
+     */
+    record Result(int rate, long requests, long errors, Duration elapsed, Histogram latencies) {
+
+        double throughput() {
+            return (requests - errors) * 1e9 / elapsed.toNanos();
+        }
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.jjas.similar_products.load;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Startup benchmark of the packaging modes. Starts the service several times per mode as a new process, calling the
+ * upstream stand-in, and measures the time until /actuator/health/readiness answers 200, the latency of the first
+ * GET /product/{id}/similar (cold caches, code not compiled yet) and the resident memory after it. Every run is
+ * written to startup.csv and the median of every mode is printed.
+ *
+ * Modes: {@code jar} (fat jar), {@code aot} (fat jar with the Spring AOT initializers), {@code aot-cds} (extracted jar
+ * with AOT and the AppCDS archive of the fast-startup profile) and {@code native} (GraalVM native executable). Build
+ * them first with {@code mvn -Pfast-startup package -DskipTests}, plus {@code mvn -Pnative native:compile} for the
+ * native mode, then run {@code mvn -Pload test-compile exec:exec -Dload.main=com.jjas.similar_products.load.StartupBenchmark
+ * -Dload.args="modes=jar,aot,aot-cds runs=5"}.
+ */
+public final class StartupBenchmark {
+
+    private static final Set<String> NAMES = Set.of("modes", "runs", "jar", "native", "timeout", "output");
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        List<String> modes = Arrays.asList(options.getOrDefault("modes", "jar,aot,aot-cds").split(","));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        Path jar = Path.of(options.getOrDefault("jar", System.getProperty("startup.jar", "")));
+        Path nativeImage = Path.of(options.getOrDefault("native", System.getProperty("startup.native", "")));
+        Duration timeout = Duration.parse("PT" + options.getOrDefault("timeout", "120s"));
+        Path output = Path.of(options.getOrDefault("output", "target/startup"));
+        Files.createDirectories(output);
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<String> lines = new ArrayList<>();
+        lines.add("mode,run,ready_ms,first_request_ms,rss_mb");
+        try (UpstreamStandIn upstream = new UpstreamStandIn(LoadTestOptions.parse())) {
+            for (String mode : modes) {
+                List<double[]> results = new ArrayList<>();
+                for (int run = 1; run <= runs; run++) {
+                    double[] result = measure(command(mode, jar, nativeImage), upstream, client, timeout,
+                            output.resolve(mode + "-" + run + ".log"));
+                    results.add(result);
+                    lines.add(String.format(Locale.ROOT, "%s,%d,%.1f,%.1f,%.1f", mode, run, result[0], result[1], result[2]));
+                }
+                System.out.printf(Locale.ROOT, "%-8s ready %.0f ms, first request %.1f ms, rss %.0f MB (median of %d)%n",
+                        mode, median(results, 0), median(results, 1), median(results, 2), runs);
+            }
+        }
+        Files.write(output.resolve("startup.csv"), lines);
+        System.out.println("Reports written to " + output.toAbsolutePath());
+    }
+
+    /***
+     * @return the command starting the service in a mode, without the service arguments
+     */
+    private static List<String> command(String mode, Path jar, Path nativeImage) {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path extracted = jar.resolveSibling("fast-startup").resolve(jar.getFileName());
+        return switch (mode) {
+            case "jar" -> List.of(java, "-jar", jar.toString());
+            case "aot" -> List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString());
+            case "aot-cds" -> List.of(java, "-XX:SharedArchiveFile=" + extracted.resolveSibling("application.jsa"),
+                    "-Dspring.aot.enabled=true", "-jar", extracted.toString());
+            case "native" -> List.of(nativeImage.toString());
+            default -> throw new IllegalArgumentException("Unknown mode " + mode + ", expected jar, aot, aot-cds or native");
+        };
+    }
+
+    /***
+     * Starts the service once and stops it after its first request
+     * @return the time to ready and the first request latency in milliseconds, and the resident memory in MB
+     */
+    private static double[] measure(List<String> command, UpstreamStandIn upstream, HttpClient client, Duration timeout,
+                                    Path log) throws Exception {
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        arguments.add("--external.product-api.base-url=" + upstream.baseUrl());
+        String base = "http://localhost:" + port;
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            awaitReady(client, URI.create(base + "/actuator/health/readiness"), process, start + timeout.toNanos(), log);
+            long ready = System.nanoTime();
+            HttpResponse<Void> first = client.send(HttpRequest.newBuilder(URI.create(base + "/product/1/similar")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            long answered = System.nanoTime();
+            if (first.statusCode() != 200) {
+                throw new IllegalStateException("First request answered " + first.statusCode() + ", see " + log);
+            }
+            return new double[]{(ready - start) / NANOS_PER_MILLI, (answered - ready) / NANOS_PER_MILLI, residentMegabytes(process)};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static void awaitReady(HttpClient client, URI readiness, Process process, long deadlineNanos, Path log)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(readiness).timeout(Duration.ofSeconds(1)).build();
+        while (System.nanoTime() < deadlineNanos) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Service exited with " + process.exitValue() + ", see " + log);
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        }
+        throw new IllegalStateException("Service not ready in time, see " + log);
+    }
+
+    /***
+     * @return the resident set size of the process, read from /proc on Linux, -1 elsewhere
+     */
+    private static double residentMegabytes(Process process) {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc", String.valueOf(process.pid()), "status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) / 1024d;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double median(List<double[]> results, int index) {
+        double[] values = results.stream().mapToDouble(result -> result[index]).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private static Map<String, String> parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            String[] nameAndValue = arg.split("=", 2);
+            if (nameAndValue.length != 2 || !NAMES.contains(nameAndValue[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected one of " + NAMES);
+            }
+            values.put(nameAndValue[0], nameAndValue[1]);
+        }
+        return values;
+    }
+
+}
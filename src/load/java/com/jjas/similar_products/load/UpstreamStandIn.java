@@ -0,0 +1,140 @@
+package com.jjas.similar_products.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Embedded stand-in for the product API, serving a synthetic catalog of products 1..N. The similar IDs of every product
+ * are drawn from the seed, so the catalog is the same on every run, while the latency and errors of every call are
+ * drawn per call. Responses are written by a scheduler once their latency has passed, so slow calls do not hold a
+ * thread each. Product details carry an ETag and answer a matching If-None-Match with 304, like a caching upstream.
+ */
+final class UpstreamStandIn implements AutoCloseable {
+
+    private final LoadTestOptions options;
+
+    private final HttpServer server;
+
+    private final ScheduledExecutorService responder;
+
+    private final AtomicLong similarIdsCalls = new AtomicLong();
+
+    private final AtomicLong productDetailCalls = new AtomicLong();
+
+    UpstreamStandIn(LoadTestOptions options) throws IOException {
+        this.options = options;
+        this.responder = Executors.newScheduledThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "upstream-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 4096);
+        this.server.setExecutor(responder);
+        this.server.createContext("/product/", this::handle);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    long similarIdsCalls() {
+        return similarIdsCalls.get();
+    }
+
+    long productDetailCalls() {
+        return productDetailCalls.get();
+    }
+
+    private void handle(HttpExchange exchange) {
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        long productId = path.length > 2 ? parseId(path[2]) : -1;
+        boolean similarIds = path.length > 3 && "similarids".equals(path[3]);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int status;
+        String etag = null;
+        byte[] body = null;
+        if (productId < 1 || productId > options.products()) {
+            status = 404;
+        } else if (random.nextDouble() < options.errorRate()) {
+            status = 500;
+        } else if (similarIds) {
+            status = 200;
+            body = similarIdsOf(productId);
+        } else {
+            etag = "\"" + productId + "\"";
+            status = etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match")) ? 304 : 200;
+            body = status == 200 ? productDetailOf(productId) : null;
+        }
+        (similarIds ? similarIdsCalls : productDetailCalls).incrementAndGet();
+
+        double latency = (similarIds ? options.similarIdsLatency() : options.productDetailLatency()).sample(random);
+        int responseStatus = status;
+        String responseEtag = etag;
+        byte[] responseBody = body;
+        responder.schedule(() -> respond(exchange, responseStatus, responseEtag, responseBody),
+                Math.round(latency * 1000), TimeUnit.MICROSECONDS);
+    }
+
+    private void respond(HttpExchange exchange, int status, String etag, byte[] body) {
+        try (exchange) {
+            if (etag != null) {
+                exchange.getResponseHeaders().set("ETag", etag);
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // the client went away, nothing to answer
+        }
+    }
+
+    private byte[] similarIdsOf(long productId) {
+        Random random = new Random(options.seed() * 31 + productId);
+        int size = (int) Math.max(0, Math.round(options.listSize().sample(random)));
+        StringJoiner ids = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < size; i++) {
+            ids.add("\"" + (1 + random.nextInt(options.products())) + "\"");
+        }
+        return ids.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] productDetailOf(long productId) {
+        return String.format("{\"id\":\"%d\",\"name\":\"Product %d\",\"price\":%d.99,\"availability\":%b}",
+                productId, productId, productId % 100, productId % 2 == 0).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static long parseId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        responder.shutdownNow();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.jjas.similar_products.load;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/***
+ * Reproducible sequence of requested product IDs, following a Zipf distribution over the catalog: a few popular
+ * products take most of the requests, as in a shop. Product 1 is the most popular one
+ */
+final class ZipfKeys {
+
+    private final double[] cumulative;
+
+    private final Random random;
+
+    ZipfKeys(int products, double skew, long seed) {
+        this.cumulative = new double[products];
+        double total = 0;
+        for (int rank = 1; rank <= products; rank++) {
+            total += 1 / Math.pow(rank, skew);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < products; i++) {
+            cumulative[i] /= total;
+        }
+        this.random = new Random(seed);
+    }
+
+    /***
+     * @return the next requested product ID
+     */
+    long next() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1L;
+    }
+
+}
@@ -1,11 +1,14 @@
 package com.jjas.similar_products;
 
+import com.jjas.similar_products.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
 @EnableCaching
+@ImportRuntimeHints(NativeHints.class)
 public class SimilarProductsApplication {
 
     public static void main(String[] args) {
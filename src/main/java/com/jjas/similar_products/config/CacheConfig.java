@@ -0,0 +1,59 @@
+package com.jjas.similar_products.config;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.jjas.similar_products.infrastructure.cache.CachingProductApiAdapter;
+import com.jjas.similar_products.infrastructure.cache.SimilarProductsResponseCache;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.jjas.similar_products.config.ProductCacheProperties.PRODUCT_DETAILS;
+import static com.jjas.similar_products.config.ProductCacheProperties.SIMILAR_IDS;
+import static com.jjas.similar_products.config.ProductCacheProperties.SIMILAR_RESPONSES;
+
+@Configuration
+public class CacheConfig {
+
+    /***
+     * Threads loading and refreshing the cache entries, virtual ones when spring.threads.virtual.enabled is set
+     * @param properties  the cache settings
+     * @param environment
+     * @return the executor
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService cacheLoaderExecutor(ProductCacheProperties properties, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return VirtualThreads.newExecutor("cache-loader-");
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, properties.getLoaderThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "cache-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /***
+     * Exposes the adapter caches through the Spring cache abstraction (actuator caches endpoint, cache metrics)
+     * @param cachingAdapter the caching layer owning the caches
+     * @return the cache manager
+     */
+    @Bean
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public CacheManager cacheManager(CachingProductApiAdapter cachingAdapter, SimilarProductsResponseCache responseCache) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAsyncCacheMode(true);
+        cacheManager.registerCustomCache(SIMILAR_IDS, (AsyncCache) cachingAdapter.getSimilarIdsCache());
+        cacheManager.registerCustomCache(PRODUCT_DETAILS, (AsyncCache) cachingAdapter.getProductDetailsCache());
+        cacheManager.registerCustomCache(SIMILAR_RESPONSES, (Cache) responseCache.getResponses());
+        return cacheManager;
+    }
+}
@@ -0,0 +1,46 @@
+package com.jjas.similar_products.config;
+
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.infrastructure.http.exception.InvalidInputException;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "similar-products.deadline")
+public class DeadlineProperties {
+
+    /***
+     * Time budget of a request that does not send the X-Request-Timeout header. Zero disables the deadline
+     */
+    private Duration defaultTimeout = Duration.ofSeconds(3);
+
+    /***
+     * Upper bound of the budget a client can ask for with the X-Request-Timeout header
+     */
+    private Duration maxTimeout = Duration.ofSeconds(10);
+
+    /***
+     * @param requestTimeoutMs the budget asked by the client in milliseconds, null when not sent
+     * @return the deadline of a request starting now
+     */
+    public Deadline deadlineOf(Integer requestTimeoutMs) {
+        if (requestTimeoutMs != null) {
+            if (requestTimeoutMs < 1) {
+                throw new InvalidInputException("X-Request-Timeout must be a positive number of milliseconds");
+            }
+            Duration requested = Duration.ofMillis(requestTimeoutMs);
+            return Deadline.after(requested.compareTo(maxTimeout) > 0 ? maxTimeout : requested);
+        }
+        if (defaultTimeout.isZero() || defaultTimeout.isNegative()) {
+            return Deadline.none();
+        }
+        return Deadline.after(defaultTimeout);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.jjas.similar_products.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "similar-products.fan-out")
+public class FanOutProperties {
+
+    /***
+     * How the product detail lookups of a single request are dispatched
+     */
+    private Mode mode = Mode.EXECUTOR;
+
+    /***
+     * Number of platform threads used when mode is EXECUTOR
+     */
+    private int poolSize = 64;
+
+    /***
+     * Maximum number of detail lookups in flight for a single request
+     */
+    private int maxInFlightPerRequest = 16;
+
+    /***
+     * Maximum number of detail lookups in flight across all requests
+     */
+    private int maxInFlightGlobal = 256;
+
+    /***
+     * Extra product details fetched past the requested limit, so a failed lookup does not leave the page short
+     */
+    private int overFetch = 2;
+
+    public enum Mode {
+        SEQUENTIAL,
+        EXECUTOR,
+        VIRTUAL_THREADS
+    }
+
+}
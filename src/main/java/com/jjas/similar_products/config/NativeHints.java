@@ -0,0 +1,27 @@
+package com.jjas.similar_products.config;
+
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import com.jjas.similar_products.generated.similar.model.SimilarProductsBatchRequest;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/***
+ * Reflection hints of the native image. Spring AOT already covers the beans, including the MapStruct mapper
+ * implementation, and the configuration properties bound through their Lombok setters. The generated OpenAPI models
+ * are registered here for Jackson, as the upstream client bodies and the JSON kept with the products are read and
+ * written outside of the controller signatures AOT inspects.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private final BindingReflectionHintsRegistrar bindingHints = new BindingReflectionHintsRegistrar();
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        bindingHints.registerReflectionHints(hints.reflection(),
+                ProductDetail.class,
+                SimilarProductsBatchRequest.class,
+                com.jjas.similar_products.generated.external.model.ProductDetail.class);
+    }
+
+}
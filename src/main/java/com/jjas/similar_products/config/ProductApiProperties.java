@@ -13,8 +13,146 @@ public class ProductApiProperties {
 
     private String baseUrl;
 
-    private String connectTimeoutMs;
+    private int connectTimeoutMs = 2000;
 
-    private String readTimeoutMs;
+    private int readTimeoutMs = 3000;
+
+    /***
+     * HTTP client used to reach the upstream product API from the blocking adapter
+     */
+    private Transport transport = Transport.APACHE;
+
+    /***
+     * Negotiate HTTP/2 with the upstream (JDK transport only)
+     */
+    private boolean http2;
+
+    private Pool pool = new Pool();
+
+    private Hedging hedging = new Hedging();
+
+    private ConcurrencyLimit concurrencyLimit = new ConcurrencyLimit();
+
+    public enum Transport {
+        SIMPLE,
+        APACHE,
+        JDK
+    }
+
+    @Setter
+    @Getter
+    public static class Pool {
+
+        /***
+         * Maximum number of pooled connections
+         */
+        private int maxTotal = 200;
+
+        /***
+         * Maximum number of pooled connections per upstream host
+         */
+        private int maxPerRoute = 100;
+
+        /***
+         * Maximum lifetime of a keep-alive connection
+         */
+        private long timeToLiveMs = 60_000;
+
+        /***
+         * Idle connections older than this are evicted in background
+         */
+        private long idleEvictionMs = 30_000;
+
+        /***
+         * Pooled connections idle for longer than this are validated before being reused
+         */
+        private long validateAfterInactivityMs = 2_000;
+
+    }
+
+    @Setter
+    @Getter
+    public static class Hedging {
+
+        /***
+         * Send a duplicate request when the first one is slower than usual. Off by default: a hedged call takes a
+         * second bulkhead thread and connection while both attempts are in flight
+         */
+        private boolean enabled = false;
+
+        /***
+         * Percentile of the observed latency after which the duplicate request is sent
+         */
+        private double percentile = 95;
+
+        /***
+         * Lower bound of the hedge delay, so fast upstreams are not hedged on jitter
+         */
+        private long minDelayMs = 20;
+
+        /***
+         * Latencies observed before hedging starts; until then requests are sent once
+         */
+        private int minSamples = 50;
+
+        /***
+         * Number of recent latencies the percentile is computed from
+         */
+        private int windowSize = 1024;
+
+        /***
+         * Maximum extra requests, as a percentage of the requests sent
+         */
+        private double budgetPercent = 5;
+
+        /***
+         * Hedges that can be sent in a row when the budget has been saved up
+         */
+        private int maxBurst = 10;
+
+    }
+
+    @Setter
+    @Getter
+    public static class ConcurrencyLimit {
+
+        /***
+         * Adapt the number of upstream calls in flight to the measured round trip time. Off by default: the limiter
+         * runs inside the bulkheads, so it adds a second layer of rejections on top of them
+         */
+        private boolean enabled;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 200;
+
+        /***
+         * How long a call waits for a free slot before being rejected
+         */
+        private long maxQueueWaitMs = 20;
+
+        /***
+         * Ratio between the recent and the long-term round trip time tolerated before the limit shrinks
+         */
+        private double tolerance = 1.5;
+
+        /***
+         * Weight of every new limit estimate, between 0 and 1
+         */
+        private double smoothing = 0.2;
+
+        /***
+         * Factor applied to the limit when a call times out or fails
+         */
+        private double backoffRatio = 0.9;
+
+        /***
+         * Samples averaged into the long-term round trip time
+         */
+        private int longWindow = 600;
+
+    }
 
 }
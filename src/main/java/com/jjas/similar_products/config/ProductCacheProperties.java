@@ -0,0 +1,192 @@
+package com.jjas.similar_products.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "similar-products.cache")
+public class ProductCacheProperties {
+
+    public static final String PRODUCT_DETAILS = "product-details";
+
+    public static final String SIMILAR_IDS = "similar-ids";
+
+    public static final String SIMILAR_RESPONSES = "similar-responses";
+
+    /***
+     * When false every lookup goes straight to the upstream API
+     */
+    private boolean enabled = true;
+
+    /***
+     * Threads running the upstream loads and background refreshes of the caches
+     */
+    private int loaderThreads = 64;
+
+    /***
+     * When true the names of the cached products are interned, so products sharing a name share one String
+     */
+    private boolean internNames = true;
+
+    /***
+     * Settings of every cache, by cache name
+     */
+    private Map<String, CacheSettings> caches = new LinkedHashMap<>(Map.of(
+            PRODUCT_DETAILS, new CacheSettings(),
+            SIMILAR_IDS, new CacheSettings(),
+            SIMILAR_RESPONSES, new CacheSettings()));
+
+    /***
+     * Persistent second level under the heap caches
+     */
+    private SecondLevel secondLevel = new SecondLevel();
+
+    /***
+     * Startup warm-up of the heap caches and periodic snapshots
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    public CacheSettings settingsOf(String cacheName) {
+        return caches.getOrDefault(cacheName, new CacheSettings());
+    }
+
+    @Setter
+    @Getter
+    public static class CacheSettings {
+
+        /***
+         * Caffeine spec of the cache. A refreshAfterWrite entry reloads hot entries in background while the
+         * current value keeps being served
+         */
+        private String spec = "maximumSize=1000,expireAfterWrite=10m";
+
+        /***
+         * How long a product not found upstream is remembered. Zero disables negative caching
+         */
+        private Duration negativeTtl = Duration.ofSeconds(30);
+
+        /***
+         * Maximum number of products remembered as not found
+         */
+        private long negativeMaximumSize = 10_000;
+
+        /***
+         * @return the expireAfterWrite of the spec, in the Caffeine duration format (10m, 30s, PT1H...), or empty
+         * when entries never expire after a write
+         */
+        public Optional<Duration> expireAfterWrite() {
+            for (String option : spec.split(",")) {
+                String[] nameAndValue = option.split("=", 2);
+                if (nameAndValue.length == 2 && nameAndValue[0].trim().equals("expireAfterWrite")) {
+                    return Optional.of(parseDuration(nameAndValue[1].trim()));
+                }
+            }
+            return Optional.empty();
+        }
+
+        private static Duration parseDuration(String value) {
+            if (value.toUpperCase(Locale.ROOT).startsWith("P")) {
+                return Duration.parse(value);
+            }
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            return switch (Character.toLowerCase(value.charAt(value.length() - 1))) {
+                case 'd' -> Duration.ofDays(amount);
+                case 'h' -> Duration.ofHours(amount);
+                case 'm' -> Duration.ofMinutes(amount);
+                case 's' -> Duration.ofSeconds(amount);
+                default -> throw new IllegalArgumentException("Invalid duration in cache spec: " + value);
+            };
+        }
+
+    }
+
+    @Setter
+    @Getter
+    public static class SecondLevel {
+
+        /***
+         * When true, product details and similar IDs are also kept in memory-mapped files that survive restarts
+         */
+        private boolean enabled;
+
+        /***
+         * Directory holding the memory-mapped files
+         */
+        private String directory = "cache";
+
+        /***
+         * Size of the data file of every cache, in megabytes (at most 2047)
+         */
+        private int dataSizeMb = 256;
+
+        /***
+         * Index slots of every cache. The store is cleared when three quarters of them are used
+         */
+        private int indexSlots = 4_194_304;
+
+        /***
+         * Entries older than this are ignored and reloaded from upstream. Entries older than the expireAfterWrite of the
+         * heap cache above are stale: served on a heap miss, then refreshed from upstream in the background
+         */
+        private Duration ttl = Duration.ofHours(24);
+
+    }
+
+    @Setter
+    @Getter
+    public static class WarmUp {
+
+        /***
+         * When true the caches are filled before the instance reports ready, and snapshots are written periodically
+         */
+        private boolean enabled;
+
+        /***
+         * Snapshot of the hottest cache entries, read at startup and rewritten every snapshot interval
+         */
+        private String snapshotFile = "cache/snapshot.bin";
+
+        /***
+         * Snapshots older than this are ignored at startup
+         */
+        private Duration snapshotMaxAge = Duration.ofHours(1);
+
+        /***
+         * How often a snapshot is written. Zero only writes it on shutdown
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /***
+         * Maximum number of entries of every cache written to the snapshot, hottest first
+         */
+        private int snapshotMaxEntries = 100_000;
+
+        /***
+         * Optional file with one hot product ID per line, prefetched from upstream at startup together with their
+         * similar products
+         */
+        private String hotKeysFile;
+
+        /***
+         * Concurrent upstream prefetches during warm-up
+         */
+        private int concurrency = 16;
+
+        /***
+         * The instance reports ready after this time even if the warm-up has not finished
+         */
+        private Duration timeout = Duration.ofSeconds(60);
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.jjas.similar_products.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+@Configuration
+@Profile("reactive")
+public class ReactiveExternalApiConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider externalApiConnectionProvider(ProductApiProperties properties) {
+        ProductApiProperties.Pool pool = properties.getPool();
+        return ConnectionProvider.builder("product-api")
+                .maxConnections(pool.getMaxPerRoute())
+                .maxLifeTime(Duration.ofMillis(pool.getTimeToLiveMs()))
+                .maxIdleTime(Duration.ofMillis(pool.getIdleEvictionMs()))
+                .evictInBackground(Duration.ofMillis(pool.getIdleEvictionMs()))
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public WebClient externalApiWebClient(WebClient.Builder builder,
+                                          ProductApiProperties properties,
+                                          ConnectionProvider externalApiConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(externalApiConnectionProvider)
+                .protocol(properties.isHttp2() ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeoutMs())
+                .responseTimeout(Duration.ofMillis(properties.getReadTimeoutMs()));
+
+        return builder
+                .baseUrl(properties.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.jjas.similar_products.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "similar-products.server-timing")
+public class ServerTimingProperties {
+
+    /***
+     * Whether a request may be timed at all, either because it sends the X-Server-Timing header or because it is
+     * sampled. Off by default: the header tells any client that asks for it the internal latencies of the request and
+     * the ID of its slowest product, so enable it only where the clients are trusted, such as behind a gateway that
+     * drops the X-Server-Timing request header
+     */
+    private boolean enabled = false;
+
+    /***
+     * Fraction of the requests timed without asking for it, from 0 to 1. Their breakdown is only logged
+     */
+    private double sampleRate = 0;
+
+}
@@ -0,0 +1,164 @@
+package com.jjas.similar_products.config;
+
+import com.jjas.similar_products.infrastructure.http.CancellableCall;
+import com.jjas.similar_products.infrastructure.http.ConnectionReuseMetrics;
+import com.jjas.similar_products.infrastructure.http.UpstreamConcurrencyLimiters;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.ManagedHttpClientConnectionFactory;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class UpstreamTransportConfig {
+
+    /***
+     * Virtual threads running the upstream calls behind the semaphore bulkheads, in place of the thread-pool
+     * bulkheads
+     * @return the executor
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public ExecutorService upstreamCallExecutor() {
+        return VirtualThreads.newExecutor("upstream-bulkhead-");
+    }
+
+    /***
+     * Timer threads of the upstream time limiters and retry back-offs
+     * @return the scheduler
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService resilienceScheduler() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "resilience-scheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Bean
+    public UpstreamConcurrencyLimiters upstreamConcurrencyLimiters(ProductApiProperties properties) {
+        return new UpstreamConcurrencyLimiters(properties.getConcurrencyLimit());
+    }
+
+    @Bean
+    public ConnectionReuseMetrics upstreamConnectionReuseMetrics() {
+        return new ConnectionReuseMetrics();
+    }
+
+    /***
+     * Keep-alive connection pool shared by all the calls to the upstream product API (APACHE transport)
+     * @param properties the upstream API properties
+     * @param metrics    the connection reuse counters
+     * @return the connection manager
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager upstreamConnectionManager(ProductApiProperties properties, ConnectionReuseMetrics metrics) {
+        ProductApiProperties.Pool pool = properties.getPool();
+        ManagedHttpClientConnectionFactory connectionFactory = ManagedHttpClientConnectionFactory.INSTANCE;
+
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(pool.getMaxTotal())
+                .setMaxConnPerRoute(pool.getMaxPerRoute())
+                .setConnectionFactory(socket -> {
+                    metrics.connectionOpened();
+                    return connectionFactory.createConnection(socket);
+                })
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(properties.getReadTimeoutMs()))
+                        .setTimeToLive(TimeValue.ofMilliseconds(pool.getTimeToLiveMs()))
+                        .setValidateAfterInactivity(TimeValue.ofMilliseconds(pool.getValidateAfterInactivityMs()))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    public MeterBinder upstreamConnectionPoolMetrics(PoolingHttpClientConnectionManager upstreamConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(upstreamConnectionManager, "product-api");
+    }
+
+    /***
+     * Builds the request factory used by the generated RestTemplate client, according to external.product-api.transport
+     * @param properties        the upstream API properties
+     * @param connectionManager the pool used by the APACHE transport
+     * @param metrics           the connection reuse counters
+     * @return the request factory
+     */
+    @Bean
+    public ClientHttpRequestFactory upstreamRequestFactory(ProductApiProperties properties,
+                                                           PoolingHttpClientConnectionManager connectionManager,
+                                                           ConnectionReuseMetrics metrics) {
+        return switch (properties.getTransport()) {
+            case SIMPLE -> simpleRequestFactory(properties);
+            case APACHE -> apacheRequestFactory(apacheHttpClient(properties, connectionManager, metrics));
+            case JDK -> jdkRequestFactory(properties);
+        };
+    }
+
+    private static ClientHttpRequestFactory simpleRequestFactory(ProductApiProperties properties) {
+        SimpleClientHttpRequestFactory reqFactory = new SimpleClientHttpRequestFactory();
+        reqFactory.setConnectTimeout(properties.getConnectTimeoutMs());
+        reqFactory.setReadTimeout(properties.getReadTimeoutMs());
+        return reqFactory;
+    }
+
+    /***
+     * Registers every request with the upstream call sending it, so a cancelled hedge attempt aborts its request
+     */
+    private static ClientHttpRequestFactory apacheRequestFactory(CloseableHttpClient httpClient) {
+        return new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected void postProcessHttpRequest(ClassicHttpRequest request) {
+                if (request instanceof Cancellable cancellable) {
+                    CancellableCall.register(cancellable::cancel);
+                }
+            }
+        };
+    }
+
+    private static ClientHttpRequestFactory jdkRequestFactory(ProductApiProperties properties) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .build();
+        JdkClientHttpRequestFactory reqFactory = new JdkClientHttpRequestFactory(httpClient);
+        reqFactory.setReadTimeout(properties.getReadTimeoutMs());
+        return reqFactory;
+    }
+
+    private static CloseableHttpClient apacheHttpClient(ProductApiProperties properties,
+                                                        PoolingHttpClientConnectionManager connectionManager,
+                                                        ConnectionReuseMetrics metrics) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .addRequestInterceptorFirst((request, entity, context) -> metrics.requestSent())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(properties.getPool().getIdleEvictionMs()))
+                .build();
+    }
+}
@@ -0,0 +1,37 @@
+package com.jjas.similar_products.config;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Executors starting a new virtual thread for every task, used instead of the platform thread pools when
+ * spring.threads.virtual.enabled is set on Java 21 or newer. The virtual thread factory comes from Spring, so the
+ * project still builds on Java 17, where asking for virtual threads fails at startup instead.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /***
+     * @param namePrefix the prefix of the thread names, followed by a counter
+     * @return an executor running every task on a new virtual thread. Idle threads are never kept, so nothing is
+     * pooled; the executor only adds shutdown and termination on top of the thread factory
+     * @throws IllegalStateException when the JVM does not support virtual threads
+     */
+    public static ExecutorService newExecutor(String namePrefix) {
+        ThreadFactory factory;
+        try {
+            factory = new VirtualThreadTaskExecutor(namePrefix).getVirtualThreadFactory();
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer", e);
+        }
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.NANOSECONDS, new SynchronousQueue<>(), factory);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.jjas.similar_products.domain.model;
+
+import java.time.Duration;
+
+/***
+ * Point in time by which a request must be answered. It is passed down to every upstream call, so each call, retry
+ * or wait only gets the time left in the request budget.
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE, false);
+
+    private final long expiresAtNanos;
+
+    private final boolean bounded;
+
+    private Deadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    /***
+     * @return a deadline that never expires
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /***
+     * @param budget the time budget, starting now
+     * @return the deadline at the end of the budget
+     */
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos(), true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && remainingNanos() <= 0;
+    }
+
+    /***
+     * @return the nanoseconds left, never negative, or Long.MAX_VALUE when unbounded
+     */
+    public long remainingNanos() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, expiresAtNanos - System.nanoTime());
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(remainingNanos());
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.jjas.similar_products.domain.model;
+
+import java.util.List;
+
+/***
+ * Window over the similar products ranked by similarity: the first {@code offset} ones are skipped and at most
+ * {@code limit} are returned.
+ */
+public final class Page {
+
+    private static final Page ALL = new Page(0, Integer.MAX_VALUE);
+
+    private final int offset;
+
+    private final int limit;
+
+    private Page(int offset, int limit) {
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /***
+     * @return the page holding every similar product
+     */
+    public static Page all() {
+        return ALL;
+    }
+
+    /***
+     * @param offset the number of ranked similar products skipped, zero or more
+     * @param limit  the maximum number of similar products returned, one or more
+     * @return the page
+     */
+    public static Page of(int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset cannot be negative: " + offset);
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        return offset == 0 && limit == Integer.MAX_VALUE ? ALL : new Page(offset, limit);
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    /***
+     * @param items the ranked items
+     * @return a view of the items of this page, in rank order
+     */
+    public <T> List<T> slice(List<T> items) {
+        if (isAll()) {
+            return items;
+        }
+        int from = Math.min(offset, items.size());
+        return items.subList(from, (int) Math.min(items.size(), (long) from + limit));
+    }
+
+}
@@ -1,18 +1,125 @@
 package com.jjas.similar_products.domain.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-import lombok.RequiredArgsConstructor;
-
 import java.math.BigDecimal;
 
-@Getter
-@AllArgsConstructor
-@RequiredArgsConstructor
-public class Product {
-    private String id;
-    private String name;
-    private BigDecimal price;
-    private Boolean availability;
+/***
+ * Immutable product detail. The price is kept as an unscaled long plus its scale and the availability as bit flags,
+ * so a cached product is one object besides its strings, instead of also holding a {@code BigDecimal} and its
+ * internals. Prices whose unscaled value or scale do not fit are kept as the {@code BigDecimal} given. Missing prices
+ * and availabilities are still told apart from zero and {@code false}.
+ */
+public final class Product {
+
+    private static final byte HAS_PRICE = 1;
+
+    private static final byte HAS_AVAILABILITY = 2;
+
+    private static final byte AVAILABLE = 4;
+
+    private final String id;
+
+    private final String name;
+
+    private final long unscaledPrice;
+
+    private final byte priceScale;
+
+    private final byte flags;
+
+    /***
+     * The price when it does not fit in the unscaled long and byte scale, otherwise null
+     */
+    private final BigDecimal largePrice;
+
+    /***
+     * @param id
+     * @param name
+     * @param price        the price, null when unknown
+     * @param availability the availability, null when unknown
+     */
+    public Product(String id, String name, BigDecimal price, Boolean availability) {
+        this.id = id;
+        this.name = name;
+        if (price != null && (price.unscaledValue().bitLength() > 63 || price.scale() != (byte) price.scale())) {
+            this.unscaledPrice = 0;
+            this.priceScale = 0;
+            this.largePrice = price;
+        } else {
+            this.unscaledPrice = price != null ? price.unscaledValue().longValue() : 0;
+            this.priceScale = price != null ? (byte) price.scale() : 0;
+            this.largePrice = null;
+        }
+        this.flags = (byte) ((price != null ? HAS_PRICE : 0)
+                | (availability != null ? HAS_AVAILABILITY : 0)
+                | (Boolean.TRUE.equals(availability) ? AVAILABLE : 0));
+    }
+
+    private Product(Product product, String name) {
+        this.id = product.id;
+        this.name = name;
+        this.unscaledPrice = product.unscaledPrice;
+        this.priceScale = product.priceScale;
+        this.flags = product.flags;
+        this.largePrice = product.largePrice;
+    }
+
+    /***
+     * @param name the new name, usually the interned copy of the current one
+     * @return this product when the name is the same instance, otherwise a copy with the new name
+     */
+    public Product withName(String name) {
+        return name == this.name ? this : new Product(this, name);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /***
+     * @return the price, null when unknown. A new {@code BigDecimal} is built on every call, unless the price does
+     * not fit in the unscaled long
+     */
+    public BigDecimal getPrice() {
+        if (largePrice != null) {
+            return largePrice;
+        }
+        return hasPrice() ? BigDecimal.valueOf(unscaledPrice, priceScale) : null;
+    }
+
+    /***
+     * @return the availability, null when unknown
+     */
+    public Boolean getAvailability() {
+        return (flags & HAS_AVAILABILITY) != 0 ? Boolean.valueOf((flags & AVAILABLE) != 0) : null;
+    }
+
+    public boolean hasPrice() {
+        return (flags & HAS_PRICE) != 0;
+    }
+
+    /***
+     * @return whether the price is known and held as {@link #getUnscaledPrice()} and {@link #getPriceScale()}
+     */
+    public boolean hasCompactPrice() {
+        return hasPrice() && largePrice == null;
+    }
+
+    /***
+     * @return the unscaled price, zero when unknown or not compact
+     */
+    public long getUnscaledPrice() {
+        return unscaledPrice;
+    }
+
+    /***
+     * @return the scale of the price, zero when unknown or not compact
+     */
+    public int getPriceScale() {
+        return priceScale;
+    }
 
 }
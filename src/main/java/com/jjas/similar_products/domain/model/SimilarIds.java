@@ -0,0 +1,121 @@
+package com.jjas.similar_products.domain.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/***
+ * Immutable, compact list of similar product IDs, in rank order. Numeric IDs are packed in a {@code long[]}, one slot
+ * per ID, instead of one {@code String} and one collection node each. Any other ID is kept in a small dictionary and
+ * its slot holds {@code -(index + 1)}. The {@code String} of an ID is rebuilt on every {@link #get(int)}, so callers
+ * should iterate once instead of reading the same position repeatedly.
+ */
+public final class SimilarIds extends AbstractList<String> implements RandomAccess {
+
+    private static final SimilarIds EMPTY = new SimilarIds(new long[0], null);
+
+    private static final SimilarIds UNAVAILABLE = new SimilarIds(new long[0], null);
+
+    /***
+     * Longest decimal ID packed as a number, so that parsing it can never overflow a long
+     */
+    private static final int MAX_NUMERIC_LENGTH = 18;
+
+    private final long[] slots;
+
+    private final String[] dictionary;
+
+    private SimilarIds(long[] slots, String[] dictionary) {
+        this.slots = slots;
+        this.dictionary = dictionary;
+    }
+
+    /***
+     * @param ids the similar IDs, in rank order
+     * @return the compact copy of the IDs, or the same instance when they are already compact
+     */
+    public static SimilarIds of(Collection<String> ids) {
+        if (ids instanceof SimilarIds similarIds) {
+            return similarIds;
+        }
+        if (ids.isEmpty()) {
+            return EMPTY;
+        }
+        long[] slots = new long[ids.size()];
+        String[] dictionary = null;
+        int dictionarySize = 0;
+        int i = 0;
+        for (String id : ids) {
+            Objects.requireNonNull(id, "Similar ID cannot be null");
+            if (isCanonicalNumber(id)) {
+                slots[i++] = Long.parseLong(id);
+                continue;
+            }
+            if (dictionary == null) {
+                dictionary = new String[ids.size() - i];
+            }
+            dictionary[dictionarySize] = id;
+            slots[i++] = -(++dictionarySize);
+        }
+        if (dictionary != null && dictionarySize < dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionarySize);
+        }
+        return new SimilarIds(slots, dictionary);
+    }
+
+    /***
+     * @return the empty list answered when the similar IDs could not be retrieved, which is not an answer of the
+     * upstream and must never be cached
+     */
+    public static SimilarIds unavailable() {
+        return UNAVAILABLE;
+    }
+
+    /***
+     * @param ids similar IDs
+     * @return whether the IDs are the {@link #unavailable()} answer rather than an empty upstream answer
+     */
+    public static boolean isUnavailable(Collection<String> ids) {
+        return ids == UNAVAILABLE;
+    }
+
+    @Override
+    public String get(int index) {
+        long slot = slots[Objects.checkIndex(index, slots.length)];
+        return slot >= 0 ? Long.toString(slot) : dictionary[(int) -slot - 1];
+    }
+
+    @Override
+    public int size() {
+        return slots.length;
+    }
+
+    /***
+     * @return the number of IDs that could not be packed as numbers
+     */
+    public int dictionarySize() {
+        return dictionary == null ? 0 : dictionary.length;
+    }
+
+    /***
+     * @param id a product ID
+     * @return whether the ID is the decimal form of a non negative long, without sign or leading zeros, so that
+     * {@code Long.toString} gives it back unchanged
+     */
+    private static boolean isCanonicalNumber(String id) {
+        int length = id.length();
+        if (length == 0 || length > MAX_NUMERIC_LENGTH || (id.charAt(0) == '0' && length > 1)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
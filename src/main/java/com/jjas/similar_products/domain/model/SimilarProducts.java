@@ -0,0 +1,27 @@
+package com.jjas.similar_products.domain.model;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/***
+ * Result of a similar products lookup: the similar IDs returned upstream, ordered by similarity, and the products that
+ * could be retrieved, in the same order
+ */
+@Getter
+@RequiredArgsConstructor
+public class SimilarProducts {
+    private final String productId;
+    private final List<String> similarIds;
+    private final List<Product> products;
+
+    /***
+     * @return true when the similar IDs and the details of every similar product were retrieved. A result built on
+     * the fallback answer of the similar IDs is never complete, even though it lists every one of its zero products
+     */
+    public boolean isComplete() {
+        return !SimilarIds.isUnavailable(similarIds) && products.size() == similarIds.size();
+    }
+
+}
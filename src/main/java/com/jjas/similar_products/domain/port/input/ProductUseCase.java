@@ -1,11 +1,57 @@
 package com.jjas.similar_products.domain.port.input;
 
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
 import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarProducts;
+import com.jjas.similar_products.domain.port.output.RequestPhases;
+import reactor.core.publisher.Flux;
 
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
 public interface ProductUseCase {
 
-    Set<Product> findSimilarProducts(String productId);
+    default SimilarProducts findSimilarProducts(String productId) {
+        return findSimilarProducts(productId, Deadline.none());
+    }
+
+    default SimilarProducts findSimilarProducts(String productId, Deadline deadline) {
+        return findSimilarProducts(productId, Page.all(), deadline);
+    }
+
+    default SimilarProducts findSimilarProducts(String productId, Page page, Deadline deadline) {
+        return findSimilarProducts(productId, page, deadline, RequestPhases.none());
+    }
+
+    /***
+     * @param productId
+     * @param page      the window of the ranked similar products to retrieve
+     * @param deadline  the request deadline; when it is reached the products resolved so far are returned
+     * @param phases    records the lookups of the request, {@link RequestPhases#none()} when it is not timed
+     * @return the similar products, ordered by similarity
+     */
+    SimilarProducts findSimilarProducts(String productId, Page page, Deadline deadline, RequestPhases phases);
+
+    /***
+     * Resolves the similar IDs before returning, so a missing product is reported as an error instead of an empty
+     * stream, then emits every product as soon as its details are retrieved
+     * @param productId
+     * @param page      the window of the ranked similar products to retrieve
+     * @param deadline  the request deadline; when it is reached the stream completes
+     * @return the similar products, in the order their details arrive
+     */
+    Flux<Product> streamSimilarProducts(String productId, Page page, Deadline deadline);
+
+    /***
+     * Resolves the similar IDs of every product first. A product not found upstream is left out; any other failure to
+     * get the similar IDs of a product, or the deadline being reached before all of them are known, fails the whole
+     * batch with the exception the single product lookup throws
+     * @param productIds the products whose similar products are requested
+     * @param deadline   the request deadline; when it is reached after the similar IDs are known, the products
+     *                   resolved so far are returned
+     * @return the similar products by product ID, without the products not found upstream
+     */
+    Map<String, SimilarProducts> findSimilarProductsBatch(List<String> productIds, Deadline deadline);
 
 }
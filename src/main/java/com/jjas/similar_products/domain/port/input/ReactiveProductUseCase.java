@@ -0,0 +1,26 @@
+package com.jjas.similar_products.domain.port.input;
+
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
+import com.jjas.similar_products.domain.model.Product;
+import reactor.core.publisher.Flux;
+
+public interface ReactiveProductUseCase {
+
+    default Flux<Product> findSimilarProducts(String productId) {
+        return findSimilarProducts(productId, Page.all());
+    }
+
+    default Flux<Product> findSimilarProducts(String productId, Page page) {
+        return findSimilarProducts(productId, page, Deadline.none());
+    }
+
+    /***
+     * @param productId
+     * @param page      the window of the ranked similar products to retrieve
+     * @param deadline  the request deadline, passed down to every upstream call
+     * @return the similar products, ordered by similarity
+     */
+    Flux<Product> findSimilarProducts(String productId, Page page, Deadline deadline);
+
+}
@@ -1,13 +1,42 @@
 package com.jjas.similar_products.domain.port.output;
 
+import com.jjas.similar_products.domain.model.Deadline;
 import com.jjas.similar_products.domain.model.Product;
 
-import java.util.Set;
+import java.util.List;
 
 public interface ExternalProductService {
 
-    Set<String> fetchSimilarProductIds(String productId);
+    default List<String> fetchSimilarProductIds(String productId) {
+        return fetchSimilarProductIds(productId, Deadline.none());
+    }
 
-    Product fetchProductDetail(String productId);
+    default Product fetchProductDetail(String productId) {
+        return fetchProductDetail(productId, Deadline.none());
+    }
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline, bounding the upstream call and its retries
+     * @return the similar product IDs
+     */
+    List<String> fetchSimilarProductIds(String productId, Deadline deadline);
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline, bounding the upstream call and its retries
+     * @return the product
+     */
+    Product fetchProductDetail(String productId, Deadline deadline);
+
+    /***
+     * Fetches the current details of a product already held, for cache refreshes
+     * @param productId
+     * @param current   the product held
+     * @return the product, the held instance itself when it did not change
+     */
+    default Product refreshProductDetail(String productId, Product current) {
+        return fetchProductDetail(productId);
+    }
 
 }
@@ -0,0 +1,29 @@
+package com.jjas.similar_products.domain.port.output;
+
+/***
+ * Phases of a request that is not timed
+ */
+final class NoRequestPhases implements RequestPhases {
+
+    static final NoRequestPhases INSTANCE = new NoRequestPhases();
+
+    private NoRequestPhases() {
+    }
+
+    @Override
+    public long now() {
+        return 0;
+    }
+
+    @Override
+    public void similarIds(long startNanos) {
+    }
+
+    @Override
+    public void detail(String productId, long startNanos) {
+    }
+
+    @Override
+    public void fanOut(long startNanos) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.jjas.similar_products.domain.port.output;
+
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Product;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReactiveExternalProductService {
+
+    default Mono<List<String>> fetchSimilarProductIds(String productId) {
+        return fetchSimilarProductIds(productId, Deadline.none());
+    }
+
+    default Mono<Product> fetchProductDetail(String productId) {
+        return fetchProductDetail(productId, Deadline.none());
+    }
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline, bounding every upstream call and retry
+     * @return the similar product IDs
+     */
+    Mono<List<String>> fetchSimilarProductIds(String productId, Deadline deadline);
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline, bounding every upstream call and retry
+     * @return the product
+     */
+    Mono<Product> fetchProductDetail(String productId, Deadline deadline);
+
+}
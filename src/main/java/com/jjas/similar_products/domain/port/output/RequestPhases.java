@@ -0,0 +1,39 @@
+package com.jjas.similar_products.domain.port.output;
+
+/***
+ * Records the phases of a similar products request as the use case goes through them: the similar IDs lookup and the
+ * fan-out of the product detail lookups. The web layer passes its timing of the request, or {@link #none()} when the
+ * request is not timed.
+ */
+public interface RequestPhases {
+
+    /***
+     * @return phases recording nothing and never reading the clock
+     */
+    static RequestPhases none() {
+        return NoRequestPhases.INSTANCE;
+    }
+
+    /***
+     * @return the current time in nanoseconds, or 0 without reading the clock when the request is not timed
+     */
+    long now();
+
+    /***
+     * @param startNanos the time the similar IDs lookup started, from {@link #now()}
+     */
+    void similarIds(long startNanos);
+
+    /***
+     * Records one product detail lookup of the fan-out, called from the thread running it
+     * @param productId
+     * @param startNanos the time the lookup started, from {@link #now()}
+     */
+    void detail(String productId, long startNanos);
+
+    /***
+     * @param startNanos the time the fan-out started, from {@link #now()}
+     */
+    void fanOut(long startNanos);
+
+}
@@ -0,0 +1,108 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/***
+ * Compact binary snapshot of the heap caches:
+ * {@code [magic][createdAt][sections]} and per section {@code [cacheName][entries]([key][writtenAt][length][value])...},
+ * with values encoded by the same codecs as the second level cache and the time each entry was written to its cache.
+ */
+class CacheSnapshot {
+
+    private static final int MAGIC = 0x53505332;
+
+    private final Instant createdAt;
+
+    private final Map<String, Map<String, Entry>> sections;
+
+    CacheSnapshot(Instant createdAt, Map<String, Map<String, Entry>> sections) {
+        this.createdAt = createdAt;
+        this.sections = sections;
+    }
+
+    Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    /***
+     * @param cacheName the cache name
+     * @return the encoded entries of the cache, empty when the snapshot does not contain it
+     */
+    Map<String, Entry> entriesOf(String cacheName) {
+        return sections.getOrDefault(cacheName, Map.of());
+    }
+
+    /***
+     * Writes the snapshot to a temporary file that then replaces the target, so a crash never leaves a torn snapshot
+     * @param file the snapshot file
+     * @throws IOException when the file cannot be written
+     */
+    void writeTo(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Files.createDirectories(absolute.getParent());
+        Path temporary = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeLong(createdAt.toEpochMilli());
+            out.writeInt(sections.size());
+            for (Map.Entry<String, Map<String, Entry>> section : sections.entrySet()) {
+                out.writeUTF(section.getKey());
+                out.writeInt(section.getValue().size());
+                for (Map.Entry<String, Entry> entry : section.getValue().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue().writtenAt());
+                    out.writeInt(entry.getValue().value().length);
+                    out.write(entry.getValue().value());
+                }
+            }
+        }
+        Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /***
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException when the file cannot be read or is not a snapshot
+     */
+    static CacheSnapshot readFrom(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot: " + file);
+            }
+            Instant createdAt = Instant.ofEpochMilli(in.readLong());
+            int sectionCount = in.readInt();
+            Map<String, Map<String, Entry>> sections = new LinkedHashMap<>();
+            for (int i = 0; i < sectionCount; i++) {
+                String cacheName = in.readUTF();
+                int entryCount = in.readInt();
+                Map<String, Entry> entries = new LinkedHashMap<>(Math.max(16, entryCount * 2));
+                for (int j = 0; j < entryCount; j++) {
+                    String key = in.readUTF();
+                    long writtenAt = in.readLong();
+                    byte[] value = new byte[in.readInt()];
+                    in.readFully(value);
+                    entries.put(key, new Entry(value, writtenAt));
+                }
+                sections.put(cacheName, entries);
+            }
+            return new CacheSnapshot(createdAt, sections);
+        }
+    }
+
+    /***
+     * @param value     the encoded value
+     * @param writtenAt the time the value was written to its cache, in epoch millis
+     */
+    record Entry(byte[] value, long writtenAt) {
+    }
+}
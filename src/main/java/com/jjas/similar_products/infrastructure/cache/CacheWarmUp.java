@@ -0,0 +1,288 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.jjas.similar_products.config.ProductCacheProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.jjas.similar_products.config.ProductCacheProperties.PRODUCT_DETAILS;
+import static com.jjas.similar_products.config.ProductCacheProperties.SIMILAR_IDS;
+
+/***
+ * Fills the heap caches before the instance reports ready, so a fresh deploy does not start at a 0% hit rate:
+ * <ol>
+ *     <li>restores the last snapshot of the hottest entries, without calling upstream. Every entry expires when it
+ *     would have in the instance that wrote it, and the ones already older than the expireAfterWrite of their cache
+ *     are left out</li>
+ *     <li>prefetches the configured hot product IDs, and their similar products, through the caching adapter
+ *     with bounded concurrency</li>
+ * </ol>
+ * Spring Boot publishes the readiness change after every ApplicationRunner has finished, so the readiness probe
+ * keeps refusing traffic during the warm-up. Snapshots are then written periodically and on shutdown.
+ */
+@Component
+public class CacheWarmUp implements ApplicationRunner, DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheWarmUp.class.getName());
+
+    private final CachingProductApiAdapter adapter;
+
+    private final ProductCacheProperties cacheProperties;
+
+    private final ProductCacheProperties.WarmUp properties;
+
+    private final boolean enabled;
+
+    private final ProductCodec productCodec;
+
+    private final SimilarIdsCodec similarIdsCodec = new SimilarIdsCodec();
+
+    private ScheduledExecutorService snapshotScheduler;
+
+    public CacheWarmUp(CachingProductApiAdapter adapter, ProductCacheProperties properties) {
+        this.adapter = adapter;
+        this.cacheProperties = properties;
+        this.properties = properties.getWarmUp();
+        this.productCodec = adapter.getProductCodec();
+        this.enabled = properties.isEnabled() && this.properties.isEnabled();
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        WarmUpResult result = warmUp();
+        LOGGER.log(Level.INFO, String.format("Cache warm-up restored %d entries and prefetched %d hot products in %d ms",
+                result.restored(), result.prefetched(), result.elapsed().toMillis()));
+        scheduleSnapshots();
+    }
+
+    /***
+     * Restores the snapshot and prefetches the hot product IDs
+     * @return what was loaded and how long it took
+     */
+    WarmUpResult warmUp() {
+        long start = System.nanoTime();
+        int restored = restoreSnapshot();
+        int prefetched = prefetch(readHotKeys());
+        return new WarmUpResult(restored, prefetched, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /***
+     * @return the number of entries restored from the snapshot file
+     */
+    int restoreSnapshot() {
+        Path file = Path.of(properties.getSnapshotFile());
+        if (!Files.isReadable(file)) {
+            return 0;
+        }
+        try {
+            CacheSnapshot snapshot = CacheSnapshot.readFrom(file);
+            if (snapshot.getCreatedAt().plus(properties.getSnapshotMaxAge()).isBefore(Instant.now())) {
+                LOGGER.log(Level.INFO, String.format("Ignoring cache snapshot from %s, older than %s",
+                        snapshot.getCreatedAt(), properties.getSnapshotMaxAge()));
+                return 0;
+            }
+            Instant now = Instant.now();
+            return restore(snapshot.entriesOf(SIMILAR_IDS), adapter.getSimilarIdsCache(), SIMILAR_IDS, similarIdsCodec, now)
+                    + restore(snapshot.entriesOf(PRODUCT_DETAILS), adapter.getProductDetailsCache(), PRODUCT_DETAILS, productCodec, now);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Could not restore cache snapshot %s -> %s", file, e.getMessage()));
+            return 0;
+        }
+    }
+
+    /***
+     * Loads the given product IDs and their similar products through the caching adapter, with at most the
+     * configured number of upstream calls in flight. Gives up on the remaining ones when the warm-up times out.
+     * @param productIds the hot product IDs
+     * @return the number of product IDs fully prefetched
+     */
+    int prefetch(List<String> productIds) {
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, properties.getConcurrency()), runnable -> {
+            Thread thread = new Thread(runnable, "cache-warm-up-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Callable<Boolean>> tasks = new ArrayList<>(productIds.size());
+        for (String productId : productIds) {
+            tasks.add(() -> prefetch(productId));
+        }
+        int prefetched = 0;
+        try {
+            for (Future<Boolean> task : executor.invokeAll(tasks, properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                if (!task.isCancelled() && Boolean.TRUE.equals(task.get())) {
+                    prefetched++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, String.format("Cache warm-up interrupted -> %s", e.getMessage()));
+        } finally {
+            executor.shutdownNow();
+        }
+        return prefetched;
+    }
+
+    /***
+     * Writes a snapshot with the hottest entries of every cache
+     */
+    void writeSnapshot() {
+        Instant now = Instant.now();
+        Map<String, Map<String, CacheSnapshot.Entry>> sections = new LinkedHashMap<>();
+        sections.put(SIMILAR_IDS, encode(adapter.getSimilarIdsCache(), SIMILAR_IDS, similarIdsCodec, now));
+        sections.put(PRODUCT_DETAILS, encode(adapter.getProductDetailsCache(), PRODUCT_DETAILS, productCodec, now));
+        Path file = Path.of(properties.getSnapshotFile());
+        try {
+            new CacheSnapshot(now, sections).writeTo(file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Could not write cache snapshot %s -> %s", file, e.getMessage()));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdownNow();
+        }
+        if (enabled) {
+            writeSnapshot();
+        }
+    }
+
+    private boolean prefetch(String productId) {
+        try {
+            List<String> similarIds = adapter.fetchSimilarProductIds(productId);
+            for (String similarId : similarIds) {
+                adapter.fetchProductDetail(similarId);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, String.format("Could not prefetch product %s -> %s", productId, e.getMessage()));
+            return false;
+        }
+    }
+
+    private List<String> readHotKeys() {
+        if (properties.getHotKeysFile() == null) {
+            return List.of();
+        }
+        Path file = Path.of(properties.getHotKeysFile());
+        try (var lines = Files.lines(file)) {
+            return lines.map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .distinct()
+                    .toList();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Could not read hot keys %s -> %s", file, e.getMessage()));
+            return List.of();
+        }
+    }
+
+    private void scheduleSnapshots() {
+        long interval = properties.getSnapshotInterval().toMillis();
+        if (interval <= 0) {
+            return;
+        }
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotScheduler.scheduleWithFixedDelay(this::writeSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /***
+     * Puts the snapshot entries still fresh for the cache, each with the lifetime it had left, skipping the ones that
+     * cannot be decoded
+     * @return the number of entries restored
+     */
+    private <V> int restore(Map<String, CacheSnapshot.Entry> entries, AsyncLoadingCache<String, V> cache, String cacheName,
+                            ValueCodec<V> codec, Instant now) {
+        Optional<Duration> ttl = cacheProperties.settingsOf(cacheName).expireAfterWrite();
+        Optional<Policy.VarExpiration<String, V>> expiration = cache.synchronous().policy().expireVariably();
+        int restored = 0;
+        for (Map.Entry<String, CacheSnapshot.Entry> entry : entries.entrySet()) {
+            long age = now.toEpochMilli() - entry.getValue().writtenAt();
+            Optional<Duration> remaining = ttl.map(expiry -> expiry.minusMillis(Math.max(0, age)));
+            if (remaining.isPresent() && (remaining.get().isZero() || remaining.get().isNegative())) {
+                continue;
+            }
+            try {
+                V value = codec.decode(entry.getValue().value());
+                if (remaining.isPresent() && expiration.isPresent()) {
+                    expiration.get().put(entry.getKey(), value, remaining.get());
+                } else {
+                    cache.put(entry.getKey(), CompletableFuture.completedFuture(value));
+                }
+                restored++;
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, String.format("Skipping undecodable snapshot entry %s -> %s", entry.getKey(), e.getMessage()));
+            }
+        }
+        return restored;
+    }
+
+    /***
+     * @return the completed entries of the cache with the time they were written, hottest first when the cache is
+     * size bounded
+     */
+    private <V> Map<String, CacheSnapshot.Entry> encode(AsyncLoadingCache<String, V> cache, String cacheName,
+                                                        ValueCodec<V> codec, Instant now) {
+        int limit = properties.getSnapshotMaxEntries();
+        Optional<Duration> ttl = cacheProperties.settingsOf(cacheName).expireAfterWrite();
+        Policy<String, V> policy = cache.synchronous().policy();
+        Map<String, V> values = policy.eviction()
+                .map(eviction -> eviction.hottest(limit))
+                .orElseGet(() -> cache.synchronous().asMap());
+        Map<String, CacheSnapshot.Entry> encoded = new LinkedHashMap<>();
+        for (Map.Entry<String, V> entry : values.entrySet()) {
+            if (encoded.size() >= limit) {
+                break;
+            }
+            long writtenAt = policy.expireVariably()
+                    .flatMap(expiration -> expiration.getExpiresAfter(entry.getKey()))
+                    .flatMap(remaining -> ttl.map(expiry -> now.minus(expiry).plus(remaining).toEpochMilli()))
+                    .orElse(now.toEpochMilli());
+            try {
+                encoded.put(entry.getKey(), new CacheSnapshot.Entry(codec.encode(entry.getValue()), writtenAt));
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, String.format("Skipping snapshot entry %s -> %s", entry.getKey(), e.getMessage()));
+            }
+        }
+        return encoded;
+    }
+
+    record WarmUpResult(int restored, int prefetched, Duration elapsed) {
+    }
+}
@@ -0,0 +1,61 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.infrastructure.http.UpstreamProduct;
+import com.jjas.similar_products.infrastructure.http.UpstreamValidators;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragment;
+
+import java.util.function.Function;
+
+/***
+ * Value of the product details cache: the product, the validators the upstream returned with it, and its response
+ * JSON, serialized once by the first request that needs it. The cached product is the same instance on every request,
+ * so it is serialized once however many responses hold it. Concurrent first calls may each serialize it, and one of
+ * the fragments is kept.
+ */
+public final class CachedProduct {
+
+    private final Product product;
+
+    private final UpstreamValidators validators;
+
+    private volatile JsonFragment json;
+
+    /***
+     * @param product    the product
+     * @param validators the validators of the upstream response, {@link UpstreamValidators#NONE} when it had none
+     */
+    CachedProduct(Product product, UpstreamValidators validators) {
+        this.product = product;
+        this.validators = validators;
+    }
+
+    public Product product() {
+        return product;
+    }
+
+    public UpstreamValidators validators() {
+        return validators;
+    }
+
+    /***
+     * @return the product with its validators, to revalidate it upstream
+     */
+    UpstreamProduct upstream() {
+        return new UpstreamProduct(product, validators);
+    }
+
+    /***
+     * @param serializer serializes the product to the JSON of its response DTO
+     * @return the JSON built by the first call
+     */
+    JsonFragment json(Function<Product, JsonFragment> serializer) {
+        JsonFragment current = json;
+        if (current == null) {
+            current = serializer.apply(product);
+            json = current;
+        }
+        return current;
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Interner;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarIds;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.infrastructure.http.HedgingProductApiAdapter;
+import com.jjas.similar_products.infrastructure.http.ProductApiAdapter;
+import com.jjas.similar_products.infrastructure.http.UpstreamProduct;
+import com.jjas.similar_products.infrastructure.http.UpstreamProductDetails;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragment;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragmentCache;
+import com.jjas.similar_products.infrastructure.rest.RequestTiming;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import static com.jjas.similar_products.config.ProductCacheProperties.PRODUCT_DETAILS;
+import static com.jjas.similar_products.config.ProductCacheProperties.SIMILAR_IDS;
+
+/***
+ * Caching layer in front of the upstream adapter. Concurrent misses for the same key share a single upstream call,
+ * so an expired popular product costs one request to the product API instead of one per caller.
+ * Misses on the heap caches are first looked up in the optional memory-mapped second level, which survives restarts.
+ * Products are cached with the validators the upstream returned and their response JSON, built once.
+ */
+@Component
+@Primary
+public class CachingProductApiAdapter implements ExternalProductService, JsonFragmentCache {
+
+    private final ExternalProductService delegate;
+
+    private final UpstreamProductDetails details;
+
+    private final boolean enabled;
+
+    private final AsyncLoadingCache<String, List<String>> similarIdsCache;
+
+    private final AsyncLoadingCache<String, CachedProduct> productDetailsCache;
+
+    private final UpstreamCacheLoader<List<String>> similarIdsLoader;
+
+    private final UpstreamCacheLoader<CachedProduct> productDetailsLoader;
+
+    private final Cache<String, Boolean> similarIdsNotFound;
+
+    private final Cache<String, Boolean> productDetailsNotFound;
+
+    private final UnaryOperator<String> names;
+
+    private final ProductCodec productCodec;
+
+    @Autowired
+    public CachingProductApiAdapter(HedgingProductApiAdapter delegate,
+                                    ProductCacheProperties properties,
+                                    @Qualifier("cacheLoaderExecutor") Executor cacheLoaderExecutor,
+                                    ObjectProvider<ProductCacheListener> listeners,
+                                    SecondLevelCacheTier secondLevel) {
+        this(delegate, delegate, properties, cacheLoaderExecutor, listeners.orderedStream().toList(), secondLevel);
+    }
+
+    CachingProductApiAdapter(ExternalProductService delegate, ProductCacheProperties properties, Executor cacheLoaderExecutor) {
+        this(delegate, properties, cacheLoaderExecutor, List.of(), SecondLevelCacheTier.disabled());
+    }
+
+    CachingProductApiAdapter(ExternalProductService delegate, ProductCacheProperties properties, Executor cacheLoaderExecutor,
+                             List<ProductCacheListener> listeners) {
+        this(delegate, properties, cacheLoaderExecutor, listeners, SecondLevelCacheTier.disabled());
+    }
+
+    /***
+     * Caches the products of a service without validators, so every refresh fetches the product again
+     */
+    CachingProductApiAdapter(ExternalProductService delegate, ProductCacheProperties properties, Executor cacheLoaderExecutor,
+                             List<ProductCacheListener> listeners, SecondLevelCacheTier secondLevel) {
+        this(delegate, UpstreamProductDetails.of(delegate), properties, cacheLoaderExecutor, listeners, secondLevel);
+    }
+
+    CachingProductApiAdapter(ExternalProductService delegate, UpstreamProductDetails details, ProductCacheProperties properties,
+                             Executor cacheLoaderExecutor, List<ProductCacheListener> listeners, SecondLevelCacheTier secondLevel) {
+        this.delegate = delegate;
+        this.details = details;
+        this.enabled = properties.isEnabled();
+        this.names = properties.isInternNames() ? Interner.<String>newWeakInterner()::intern : UnaryOperator.identity();
+        this.productCodec = new ProductCodec(names);
+
+        ProductCacheProperties.CacheSettings similarIds = properties.settingsOf(SIMILAR_IDS);
+        this.similarIdsNotFound = negativeCache(similarIds);
+        this.similarIdsLoader = new UpstreamCacheLoader<>(this::fetchCompactSimilarIds, ProductApiAdapter::isFallback,
+                similarIdsNotFound, secondLevel.similarIds(SIMILAR_IDS));
+        this.similarIdsCache = builder(similarIds)
+                .executor(cacheLoaderExecutor)
+                .removalListener((String key, List<String> value, RemovalCause cause) ->
+                        listeners.forEach(listener -> listener.onSimilarIdsRemoved(key)))
+                .recordStats()
+                .buildAsync(similarIdsLoader);
+
+        ProductCacheProperties.CacheSettings productDetails = properties.settingsOf(PRODUCT_DETAILS);
+        this.productDetailsNotFound = negativeCache(productDetails);
+        this.productDetailsLoader = new UpstreamCacheLoader<>(this::fetchInternedProduct, this::refreshInternedProduct,
+                ProductApiAdapter::isFallback, productDetailsNotFound, secondLevel.productDetails(PRODUCT_DETAILS, productCodec));
+        this.productDetailsCache = builder(productDetails)
+                .executor(cacheLoaderExecutor)
+                .removalListener((String key, CachedProduct value, RemovalCause cause) ->
+                        listeners.forEach(listener -> listener.onProductDetailRemoved(key)))
+                .recordStats()
+                .buildAsync(productDetailsLoader);
+    }
+
+    /***
+     * Also reports to the timing of the request whether the similar IDs were already cached, checked through the map
+     * view so the cache statistics do not count the check
+     */
+    @Override
+    public List<String> fetchSimilarProductIds(String productId, Deadline deadline) {
+        if (!enabled) {
+            RequestTiming.current().similarIdsCached(false);
+            return delegate.fetchSimilarProductIds(productId, deadline);
+        }
+        RequestTiming timing = RequestTiming.current();
+        if (timing.isEnabled()) {
+            CompletableFuture<List<String>> cached = similarIdsCache.asMap().get(productId);
+            timing.similarIdsCached((cached != null && cached.isDone())
+                    || (similarIdsNotFound != null && similarIdsNotFound.getIfPresent(productId) != null));
+        }
+        return lookup(productId, deadline, similarIdsNotFound, similarIdsCache, similarIdsLoader);
+    }
+
+    @Override
+    public Product fetchProductDetail(String productId, Deadline deadline) {
+        if (!enabled) {
+            return delegate.fetchProductDetail(productId, deadline);
+        }
+        CachedProduct cached = lookup(productId, deadline, productDetailsNotFound, productDetailsCache, productDetailsLoader);
+        return cached == null ? null : cached.product();
+    }
+
+    /***
+     * Looks the product up through the map view, so the cache statistics do not count it
+     */
+    @Override
+    public JsonFragment fragment(Product product, Function<Product, JsonFragment> serializer) {
+        CompletableFuture<CachedProduct> future = enabled ? productDetailsCache.asMap().get(product.getId()) : null;
+        if (future != null && future.isDone() && !future.isCompletedExceptionally()) {
+            CachedProduct cached = future.join();
+            if (cached != null && cached.product() == product) {
+                return cached.json(serializer);
+            }
+        }
+        return serializer.apply(product);
+    }
+
+    /***
+     * Loads the similar IDs into the compact representation stored by the cache. Fallback answers are returned as
+     * they are, so the loader still recognizes and skips them
+     * @param productId
+     * @return the similar IDs
+     */
+    private List<String> fetchCompactSimilarIds(String productId) {
+        List<String> ids = delegate.fetchSimilarProductIds(productId);
+        return ProductApiAdapter.isFallback(ids) ? ids : SimilarIds.of(ids);
+    }
+
+    /***
+     * Loads a product with its name interned, so the cached products sharing a name share one String
+     * @param productId
+     * @return the product and its validators, null for a fallback answer
+     */
+    private CachedProduct fetchInternedProduct(String productId) {
+        return cache(details.fetchUpstreamProductDetail(productId));
+    }
+
+    /***
+     * Refreshes a cached product, keeping the cached instance, and its JSON, when the upstream reports it unchanged
+     * @param productId
+     * @param current   the cached product
+     * @return the product and its validators, null for a fallback answer
+     */
+    private CachedProduct refreshInternedProduct(String productId, CachedProduct current) {
+        UpstreamProduct upstream = details.refreshUpstreamProductDetail(productId, current.upstream());
+        if (upstream != null && upstream.product() == current.product()) {
+            return current;
+        }
+        return cache(upstream);
+    }
+
+    private CachedProduct cache(UpstreamProduct upstream) {
+        if (upstream == null || upstream.product() == null) {
+            return null;
+        }
+        Product product = upstream.product();
+        return new CachedProduct(product.getName() == null ? product : product.withName(names.apply(product.getName())),
+                upstream.validators());
+    }
+
+    public AsyncLoadingCache<String, List<String>> getSimilarIdsCache() {
+        return similarIdsCache;
+    }
+
+    public AsyncLoadingCache<String, CachedProduct> getProductDetailsCache() {
+        return productDetailsCache;
+    }
+
+    /***
+     * @return the codec of the cached products, interning the decoded names as the loaded ones
+     */
+    ProductCodec getProductCodec() {
+        return productCodec;
+    }
+
+    /***
+     * Answers from the negative cache when the product is known to be missing, otherwise waits for the cached or
+     * shared in-flight value, rethrowing the domain exception raised by the upstream adapter. A caller reaching its
+     * deadline stops waiting, but the shared load keeps running for the other callers and fills the cache. A value
+     * loaded from a stale second level entry is returned, and refreshed from upstream in the background
+     * @param productId
+     * @param deadline  the request deadline
+     * @param notFound  the negative cache, null when disabled
+     * @param cache     the positive cache
+     * @param loader    the loader of the positive cache
+     * @return the value
+     */
+    private static <V> V lookup(String productId, Deadline deadline, Cache<String, Boolean> notFound,
+                                AsyncLoadingCache<String, V> cache, UpstreamCacheLoader<V> loader) {
+        if (notFound != null && notFound.getIfPresent(productId) != null) {
+            throw new ProductNotFoundException(productId);
+        }
+        try {
+            V value = cache.get(productId).get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            if (loader.takeStale(productId)) {
+                cache.synchronous().refresh(productId);
+            }
+            return value;
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Deadline reached waiting for product " + productId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted waiting for product " + productId);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncachedResult uncached) {
+                return uncached.value();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    /***
+     * Builds a cache from its spec, turning its expireAfterWrite into a variable expiry of the same duration, so an
+     * entry restored by the warm-up can be given only the lifetime it had left
+     * @param settings the cache settings
+     * @return the cache builder
+     */
+    private static Caffeine<Object, Object> builder(ProductCacheProperties.CacheSettings settings) {
+        Optional<Duration> expireAfterWrite = settings.expireAfterWrite();
+        if (expireAfterWrite.isEmpty()) {
+            return Caffeine.from(CaffeineSpec.parse(settings.getSpec()));
+        }
+        String spec = Arrays.stream(settings.getSpec().split(","))
+                .filter(option -> !option.trim().startsWith("expireAfterWrite"))
+                .collect(Collectors.joining(","));
+        Duration expiry = expireAfterWrite.get();
+        return Caffeine.from(CaffeineSpec.parse(spec)).expireAfter(Expiry.writing((key, value) -> expiry));
+    }
+
+    /***
+     * @param settings the cache settings
+     * @return the short-lived cache of products not found upstream, or null when negative caching is disabled
+     */
+    private static Cache<String, Boolean> negativeCache(ProductCacheProperties.CacheSettings settings) {
+        if (settings.getNegativeTtl().isZero() || settings.getNegativeTtl().isNegative()) {
+            return null;
+        }
+        return Caffeine.newBuilder()
+                .maximumSize(settings.getNegativeMaximumSize())
+                .expireAfterWrite(settings.getNegativeTtl())
+                .build();
+    }
+
+}
@@ -0,0 +1,347 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/***
+ * Off-heap key/value store backed by two memory-mapped files that survive restarts:
+ * <ul>
+ *     <li>{@code <name>.data}: append-only log of records {@code [keyLength:short][key][writtenAt:long][valueLength:int][value]}</li>
+ *     <li>{@code <name>.index}: open-addressing hash table of {@code [keyHash:long][recordOffset:long]} slots</li>
+ * </ul>
+ * Nothing but the lock lives on the heap, so the store can hold millions of entries without GC cost. When the log
+ * or the index fills up the store is cleared and starts over, which is acceptable for a cache. Pages are not forced
+ * to disk on every write, so after a crash a record or an index slot may be torn: every offset and length read back
+ * is checked against the log, and a store found inconsistent throws {@link CorruptStoreException}.
+ */
+final class MappedFileStore implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(MappedFileStore.class.getName());
+
+    private static final int MAGIC = 0x53504331;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final int SLOT_SIZE = 16;
+
+    private static final long EMPTY = 0;
+
+    private static final long TOMBSTONE = -1;
+
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private final String name;
+
+    private final FileChannel dataChannel;
+
+    private final FileChannel indexChannel;
+
+    private final MappedByteBuffer data;
+
+    private final MappedByteBuffer index;
+
+    private final int dataCapacity;
+
+    private final int slots;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private MappedFileStore(String name, FileChannel dataChannel, FileChannel indexChannel,
+                            MappedByteBuffer data, MappedByteBuffer index, int dataCapacity, int slots) {
+        this.name = name;
+        this.dataChannel = dataChannel;
+        this.indexChannel = indexChannel;
+        this.data = data;
+        this.index = index;
+        this.dataCapacity = dataCapacity;
+        this.slots = slots;
+    }
+
+    /***
+     * Opens the store, reusing the files left by a previous run when they were written with the same sizes
+     * @param directory    the directory holding the files
+     * @param name         the store name, used as file name
+     * @param dataCapacity the size in bytes of the data log
+     * @param slots        the number of index slots, rounded up to a power of two
+     * @return the store
+     * @throws IOException when the files cannot be created or mapped
+     */
+    static MappedFileStore open(Path directory, String name, int dataCapacity, int slots) throws IOException {
+        Files.createDirectories(directory);
+        int indexSlots = slots <= 16 ? 16 : Integer.highestOneBit(slots - 1) << 1;
+        long indexBytes = HEADER_SIZE + (long) indexSlots * SLOT_SIZE;
+        if (indexBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many index slots for a mapped file: " + slots);
+        }
+
+        FileChannel dataChannel = FileChannel.open(directory.resolve(name + ".data"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel indexChannel = FileChannel.open(directory.resolve(name + ".index"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean reusable = dataChannel.size() == dataCapacity && indexChannel.size() == indexBytes;
+
+        MappedByteBuffer data = dataChannel.map(FileChannel.MapMode.READ_WRITE, 0, dataCapacity);
+        MappedByteBuffer index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, indexBytes);
+        MappedFileStore store = new MappedFileStore(name, dataChannel, indexChannel, data, index, dataCapacity, indexSlots);
+
+        if (!reusable || data.getInt(0) != MAGIC || data.getInt(4) != FORMAT_VERSION || index.getInt(0) != MAGIC
+                || index.getInt(4) != indexSlots || !store.hasValidWritePosition()) {
+            store.reset();
+        }
+        return store;
+    }
+
+    /***
+     * @param key the entry key
+     * @return the stored value and its write time, or null when absent
+     * @throws CorruptStoreException when the index or the record of the key is inconsistent
+     */
+    Entry get(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash);
+            if (slot < 0) {
+                return null;
+            }
+            return readEntry(offsetAt(slot), keyBytes.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /***
+     * Stores a value, replacing the previous one for the same key
+     * @param key       the entry key
+     * @param value     the encoded value
+     * @param writtenAt the write time in epoch millis
+     */
+    void put(String key, byte[] value, long writtenAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > Short.MAX_VALUE) {
+            return;
+        }
+        long hash = hash(keyBytes);
+        int recordSize = 2 + keyBytes.length + 8 + 4 + value.length;
+        if (HEADER_SIZE + recordSize > dataCapacity) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            int existing = findSlot(keyBytes, hash);
+            if (writePosition() + recordSize > dataCapacity || (existing < 0 && used() + 1 > slots * MAX_LOAD_FACTOR)) {
+                LOGGER.log(Level.INFO, String.format("Second level cache %s is full, clearing it", name));
+                reset();
+                existing = -1;
+            }
+
+            int offset = (int) writePosition();
+            data.putShort(offset, (short) keyBytes.length);
+            data.put(offset + 2, keyBytes);
+            data.putLong(offset + 2 + keyBytes.length, writtenAt);
+            data.putInt(offset + 2 + keyBytes.length + 8, value.length);
+            data.put(offset + 2 + keyBytes.length + 12, value);
+            setWritePosition(offset + recordSize);
+
+            int slot = existing >= 0 ? existing : freeSlot(hash);
+            if (existing < 0 && index.getLong(slotBase(slot) + 8) == EMPTY) {
+                setUsed(used() + 1);
+            }
+            index.putLong(slotBase(slot), hash);
+            index.putLong(slotBase(slot) + 8, offset);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash);
+            if (slot >= 0) {
+                index.putLong(slotBase(slot) + 8, TOMBSTONE);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /***
+     * Removes every entry, starting over with empty files
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /***
+     * @return the number of index slots in use, including removed entries
+     */
+    long used() {
+        return index.getLong(8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            data.force();
+            index.force();
+        } finally {
+            lock.writeLock().unlock();
+            dataChannel.close();
+            indexChannel.close();
+        }
+    }
+
+    private int findSlot(byte[] keyBytes, long hash) {
+        int slot = (int) (hash & (slots - 1));
+        for (int probes = 0; probes < slots; probes++) {
+            long offset = index.getLong(slotBase(slot) + 8);
+            if (offset == EMPTY) {
+                return -1;
+            }
+            if (offset != TOMBSTONE && index.getLong(slotBase(slot)) == hash && keyMatches(checkOffset(offset), keyBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+        return -1;
+    }
+
+    private int freeSlot(long hash) {
+        int slot = (int) (hash & (slots - 1));
+        while (true) {
+            long offset = index.getLong(slotBase(slot) + 8);
+            if (offset == EMPTY || offset == TOMBSTONE) {
+                return slot;
+            }
+            slot = (slot + 1) & (slots - 1);
+        }
+    }
+
+    private boolean keyMatches(int offset, byte[] keyBytes) {
+        if (data.getShort(offset) != keyBytes.length) {
+            return false;
+        }
+        checkLength(offset + 2, keyBytes.length + 12L);
+        byte[] stored = new byte[keyBytes.length];
+        data.get(offset + 2, stored);
+        return Arrays.equals(stored, keyBytes);
+    }
+
+    private Entry readEntry(long offset, int keyLength) {
+        int position = (int) offset + 2 + keyLength;
+        long writtenAt = data.getLong(position);
+        int valueLength = data.getInt(position + 8);
+        if (valueLength < 0) {
+            throw new CorruptStoreException(String.format("Negative value length %d at %d in %s", valueLength, offset, name));
+        }
+        checkLength(position + 12, valueLength);
+        byte[] value = new byte[valueLength];
+        data.get(position + 12, value);
+        return new Entry(value, writtenAt);
+    }
+
+    /***
+     * @param offset a record offset read from the index
+     * @return the offset, when a record can start there
+     */
+    private int checkOffset(long offset) {
+        if (offset < HEADER_SIZE || offset + 2 > writePosition()) {
+            throw new CorruptStoreException(String.format("Record offset %d out of the log of %s", offset, name));
+        }
+        return (int) offset;
+    }
+
+    /***
+     * Checks that bytes read from a record lie within the written part of the log
+     */
+    private void checkLength(int position, long length) {
+        if (position + length > writePosition()) {
+            throw new CorruptStoreException(String.format("Record of %d bytes at %d past the log of %s", length, position, name));
+        }
+    }
+
+    private boolean hasValidWritePosition() {
+        long position = writePosition();
+        return position >= HEADER_SIZE && position <= dataCapacity;
+    }
+
+    private long offsetAt(int slot) {
+        return index.getLong(slotBase(slot) + 8);
+    }
+
+    private static int slotBase(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private long writePosition() {
+        return data.getLong(8);
+    }
+
+    private void setWritePosition(long position) {
+        data.putLong(8, position);
+    }
+
+    private void setUsed(long used) {
+        index.putLong(8, used);
+    }
+
+    private void reset() {
+        for (int position = HEADER_SIZE; position < index.capacity(); position += 8) {
+            index.putLong(position, 0L);
+        }
+        index.putInt(0, MAGIC);
+        index.putInt(4, slots);
+        setUsed(0);
+        data.putInt(0, MAGIC);
+        data.putInt(4, FORMAT_VERSION);
+        setWritePosition(HEADER_SIZE);
+    }
+
+    /***
+     * 64-bit FNV-1a hash of the key, never zero so an empty slot can be told apart
+     */
+    private static long hash(byte[] keyBytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : keyBytes) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    record Entry(byte[] value, long writtenAt) {
+    }
+
+    /***
+     * Raised when an index slot or a record left by a crash points outside the written log
+     */
+    static final class CorruptStoreException extends IllegalStateException {
+
+        CorruptStoreException(String message) {
+            super(message);
+        }
+    }
+}
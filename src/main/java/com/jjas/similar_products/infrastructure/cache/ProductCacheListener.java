@@ -0,0 +1,12 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+/***
+ * Notified when an entry of the product caches is evicted, expired or replaced by a refresh
+ */
+public interface ProductCacheListener {
+
+    void onSimilarIdsRemoved(String productId);
+
+    void onProductDetailRemoved(String productId);
+
+}
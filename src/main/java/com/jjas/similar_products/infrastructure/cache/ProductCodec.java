@@ -0,0 +1,101 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.infrastructure.http.UpstreamValidators;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.function.UnaryOperator;
+
+/***
+ * Encodes a Product as {@code [id][name][price][availability]}. The price is stored as unscaled long plus scale,
+ * which is how the Product holds it, or as text when it does not fit. Cached products are decoded without upstream
+ * validators.
+ */
+class ProductCodec implements ValueCodec<CachedProduct> {
+
+    private static final byte NULL = 0;
+
+    private static final byte LONG_PRICE = 1;
+
+    private static final byte TEXT_PRICE = 2;
+
+    private final UnaryOperator<String> names;
+
+    ProductCodec() {
+        this(UnaryOperator.identity());
+    }
+
+    /***
+     * @param names applied to every decoded name, to intern them
+     */
+    ProductCodec(UnaryOperator<String> names) {
+        this.names = names;
+    }
+
+    @Override
+    public byte[] encode(CachedProduct cached) throws IOException {
+        Product product = cached.product();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeNullableString(out, product.getId());
+        writeNullableString(out, product.getName());
+        writePrice(out, product);
+        out.writeByte(product.getAvailability() == null ? NULL : product.getAvailability() ? 2 : 1);
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public CachedProduct decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        String id = readNullableString(in);
+        String name = readNullableString(in);
+        if (name != null) {
+            name = names.apply(name);
+        }
+        BigDecimal price = readPrice(in);
+        byte availability = in.readByte();
+        return new CachedProduct(new Product(id, name, price, availability == NULL ? null : availability == 2),
+                UpstreamValidators.NONE);
+    }
+
+    private static void writePrice(DataOutputStream out, Product product) throws IOException {
+        if (!product.hasPrice()) {
+            out.writeByte(NULL);
+        } else if (product.hasCompactPrice()) {
+            out.writeByte(LONG_PRICE);
+            out.writeInt(product.getPriceScale());
+            out.writeLong(product.getUnscaledPrice());
+        } else {
+            out.writeByte(TEXT_PRICE);
+            out.writeUTF(product.getPrice().toString());
+        }
+    }
+
+    private static BigDecimal readPrice(DataInputStream in) throws IOException {
+        return switch (in.readByte()) {
+            case LONG_PRICE -> {
+                int scale = in.readInt();
+                yield new BigDecimal(BigInteger.valueOf(in.readLong()), scale);
+            }
+            case TEXT_PRICE -> new BigDecimal(in.readUTF());
+            default -> null;
+        };
+    }
+
+    static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,121 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/***
+ * Typed view of a {@link MappedFileStore}: encodes the values, drops entries older than the TTL, flags the ones older
+ * than their freshness period as stale, and never lets a storage failure reach the request path, since the upstream API
+ * is always there to fall back on. An undecodable entry is removed; a store found corrupt is cleared.
+ */
+class SecondLevelCache<V> {
+
+    private static final Logger LOGGER = Logger.getLogger(SecondLevelCache.class.getName());
+
+    private static final SecondLevelCache<?> DISABLED = new SecondLevelCache<>(null, null, Duration.ZERO, Clock.systemUTC());
+
+    /***
+     * A stored value
+     * @param value the decoded value
+     * @param stale whether it is older than the freshness period, so it must be refreshed from upstream once served
+     */
+    record Hit<V>(V value, boolean stale) {
+    }
+
+    private final MappedFileStore store;
+
+    private final ValueCodec<V> codec;
+
+    private final long ttlMillis;
+
+    private final long freshMillis;
+
+    private final Clock clock;
+
+    SecondLevelCache(MappedFileStore store, ValueCodec<V> codec, Duration ttl, Clock clock) {
+        this(store, codec, ttl, ttl, clock);
+    }
+
+    /***
+     * @param store
+     * @param codec
+     * @param ttl       entries older than this are ignored
+     * @param freshness entries older than this, but within the TTL, are served as stale
+     * @param clock
+     */
+    SecondLevelCache(MappedFileStore store, ValueCodec<V> codec, Duration ttl, Duration freshness, Clock clock) {
+        this.store = store;
+        this.codec = codec;
+        this.ttlMillis = ttl.toMillis();
+        this.freshMillis = Math.min(freshness.toMillis(), ttlMillis);
+        this.clock = clock;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> SecondLevelCache<V> disabled() {
+        return (SecondLevelCache<V>) DISABLED;
+    }
+
+    /***
+     * @param key the product ID
+     * @return the stored value, or null when absent, expired or unreadable
+     */
+    Hit<V> get(String key) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            MappedFileStore.Entry entry = store.get(key);
+            long age = entry == null ? 0 : clock.millis() - entry.writtenAt();
+            if (entry == null || age > ttlMillis) {
+                return null;
+            }
+            return new Hit<>(codec.decode(entry.value()), age > freshMillis);
+        } catch (MappedFileStore.CorruptStoreException e) {
+            clear(e);
+            return null;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Discarding unreadable second level entry %s -> %s", key, e.getMessage()));
+            invalidate(key);
+            return null;
+        }
+    }
+
+    void put(String key, V value) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.put(key, codec.encode(value), clock.millis());
+        } catch (MappedFileStore.CorruptStoreException e) {
+            clear(e);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Could not store second level entry %s -> %s", key, e.getMessage()));
+        }
+    }
+
+    void invalidate(String key) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.remove(key);
+        } catch (MappedFileStore.CorruptStoreException e) {
+            clear(e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Could not remove second level entry %s -> %s", key, e.getMessage()));
+        }
+    }
+
+    private void clear(MappedFileStore.CorruptStoreException e) {
+        LOGGER.log(Level.WARNING, String.format("Clearing corrupt second level cache -> %s", e.getMessage()));
+        try {
+            store.clear();
+        } catch (RuntimeException clearFailure) {
+            LOGGER.log(Level.WARNING, String.format("Could not clear second level cache -> %s", clearFailure.getMessage()));
+        }
+    }
+}
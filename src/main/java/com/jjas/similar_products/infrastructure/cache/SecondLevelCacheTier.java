@@ -0,0 +1,97 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.config.ProductCacheProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/***
+ * Owns the memory-mapped stores behind the heap caches, opening one per cache and flushing them on shutdown.
+ * When the second level is disabled it hands out no-op caches. Entries are kept for the second level TTL, but an entry
+ * promoted from a store starts a new expireAfterWrite period in its heap cache, so the ones older than that period are
+ * stale: they are served once, then refreshed from upstream in the background, instead of being served for a whole
+ * new heap period.
+ */
+@Component
+public class SecondLevelCacheTier implements DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(SecondLevelCacheTier.class.getName());
+
+    private final ProductCacheProperties cacheProperties;
+
+    private final ProductCacheProperties.SecondLevel properties;
+
+    private final boolean enabled;
+
+    private final List<MappedFileStore> stores = new ArrayList<>();
+
+    public SecondLevelCacheTier(ProductCacheProperties properties) {
+        this.cacheProperties = properties;
+        this.properties = properties.getSecondLevel();
+        this.enabled = properties.isEnabled() && this.properties.isEnabled();
+    }
+
+    static SecondLevelCacheTier disabled() {
+        return new SecondLevelCacheTier(new ProductCacheProperties());
+    }
+
+    SecondLevelCache<CachedProduct> productDetails(String cacheName, ProductCodec codec) {
+        return open(cacheName, codec);
+    }
+
+    SecondLevelCache<List<String>> similarIds(String cacheName) {
+        return open(cacheName, new SimilarIdsCodec());
+    }
+
+    private synchronized <V> SecondLevelCache<V> open(String cacheName, ValueCodec<V> codec) {
+        if (!enabled) {
+            return SecondLevelCache.disabled();
+        }
+        Path directory = Path.of(properties.getDirectory());
+        try {
+            MappedFileStore store = MappedFileStore.open(directory, cacheName,
+                    Math.min(2047, Math.max(1, properties.getDataSizeMb())) * 1024 * 1024, properties.getIndexSlots());
+            stores.add(store);
+            Duration ttl = properties.getTtl();
+            Duration freshness = freshnessOf(cacheName);
+            LOGGER.log(Level.INFO, String.format("Second level cache %s opened in %s with %d entries, a TTL of %s, stale after %s",
+                    cacheName, directory.toAbsolutePath(), store.used(), ttl, freshness));
+            return new SecondLevelCache<>(store, codec, ttl, freshness, Clock.systemUTC());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open second level cache " + cacheName, e);
+        }
+    }
+
+    /***
+     * @param cacheName the heap cache in front of the store
+     * @return the age after which a second level entry is stale: the expireAfterWrite of the heap cache, capped at the
+     * second level TTL
+     */
+    Duration freshnessOf(String cacheName) {
+        Duration ttl = properties.getTtl();
+        return cacheProperties.settingsOf(cacheName).expireAfterWrite()
+                .filter(expiry -> expiry.compareTo(ttl) < 0)
+                .orElse(ttl);
+    }
+
+    @Override
+    public synchronized void destroy() {
+        for (MappedFileStore store : stores) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, String.format("Could not close second level cache -> %s", e.getMessage()));
+            }
+        }
+        stores.clear();
+    }
+}
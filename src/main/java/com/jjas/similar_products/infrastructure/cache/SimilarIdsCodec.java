@@ -0,0 +1,40 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.domain.model.SimilarIds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/***
+ * Encodes a list of similar product IDs as {@code [count][id]...}, keeping the upstream order, and decodes it into the
+ * compact {@link SimilarIds} held by the heap cache
+ */
+class SimilarIdsCodec implements ValueCodec<List<String>> {
+
+    @Override
+    public byte[] encode(List<String> ids) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + ids.size() * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(ids.size());
+        for (String id : ids) {
+            out.writeUTF(id);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public List<String> decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int count = in.readInt();
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(in.readUTF());
+        }
+        return SimilarIds.of(ids);
+    }
+}
@@ -0,0 +1,274 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Page;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarProducts;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.jjas.similar_products.config.ProductCacheProperties.SIMILAR_RESPONSES;
+
+/***
+ * Cache of the assembled /product/{id}/similar responses, keyed by product ID. Every response remembers the product
+ * details it was built from, so evicting or refreshing one detail only invalidates the responses that contain it.
+ * Every removal below is also remembered for a while, so a response assembled while one of its own entries was
+ * removed is never kept, whatever happens to the other entries meanwhile.
+ */
+@Component
+public class SimilarProductsResponseCache implements ProductCacheListener, MeterBinder {
+
+    private final boolean enabled;
+
+    private final Cache<String, List<ProductDetail>> responses;
+
+    private final Map<String, Set<String>> dependents = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> constituents = new ConcurrentHashMap<>();
+
+    /***
+     * How long the removals below are remembered. A response taking longer to assemble is not cached, since a removal
+     * of one of its entries could have been forgotten
+     */
+    static final Duration REMOVALS_RETENTION = Duration.ofMinutes(1);
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Cache<String, Long> similarIdsRemovals;
+
+    private final Cache<String, Long> productDetailRemovals;
+
+    public SimilarProductsResponseCache(ProductCacheProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.responses = Caffeine.from(CaffeineSpec.parse(properties.settingsOf(SIMILAR_RESPONSES).getSpec()))
+                .executor(Runnable::run)
+                .removalListener((String productId, List<ProductDetail> body, RemovalCause cause) -> {
+                    if (cause != RemovalCause.REPLACED) {
+                        unlink(productId);
+                    }
+                })
+                .recordStats()
+                .build();
+        this.similarIdsRemovals = removals();
+        this.productDetailRemovals = removals();
+    }
+
+    /***
+     * Returns the cached response of a product, assembling and caching it on a miss. Incomplete results (some
+     * product could not be retrieved) are returned but not cached
+     * @param productId
+     * @param assembler builds the domain result
+     * @param mapper    maps the products to an immutable list of response DTOs
+     * @return the response body
+     */
+    public List<ProductDetail> get(String productId, Supplier<SimilarProducts> assembler, Function<List<Product>, List<ProductDetail>> mapper) {
+        return get(productId, Page.all(), assembler, mapper);
+    }
+
+    /***
+     * Returns a page of the cached response of a product, or assembles the page on a miss. Only a result holding
+     * every similar product is cached, so a page is served from the cache when the whole response was cached before
+     * @param productId
+     * @param page      the window of the ranked similar products
+     * @param assembler builds the domain result of the page
+     * @param mapper    maps the products to an immutable list of response DTOs, sliced by the page on later hits
+     * @return the response body
+     */
+    public List<ProductDetail> get(String productId, Page page, Supplier<SimilarProducts> assembler,
+                                   Function<List<Product>, List<ProductDetail>> mapper) {
+        if (!enabled) {
+            return mapper.apply(assembler.get().getProducts());
+        }
+        List<ProductDetail> cached = responses.getIfPresent(productId);
+        if (cached != null) {
+            return page.slice(cached);
+        }
+
+        long startNanos = System.nanoTime();
+        long invalidationsBefore = invalidations.get();
+        SimilarProducts result = assembler.get();
+        List<ProductDetail> body = mapper.apply(result.getProducts());
+        store(productId, result, body, invalidationsBefore, startNanos);
+        return body;
+    }
+
+    /***
+     * Returns the cached responses of several products, assembling the missing ones with a single call so they can
+     * share their product detail lookups. Incomplete results are returned but not cached
+     * @param productIds the products, in response order
+     * @param assembler  builds the domain results of the products missing from the cache
+     * @param mapper     maps the products to an immutable list of response DTOs
+     * @return the response bodies by product ID, without the products the assembler left out
+     */
+    public Map<String, List<ProductDetail>> getAll(Collection<String> productIds,
+                                                  Function<List<String>, Map<String, SimilarProducts>> assembler,
+                                                  Function<List<Product>, List<ProductDetail>> mapper) {
+        Map<String, List<ProductDetail>> cached = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String productId : productIds) {
+            List<ProductDetail> body = enabled ? responses.getIfPresent(productId) : null;
+            if (body != null) {
+                cached.put(productId, body);
+            } else if (!missing.contains(productId)) {
+                missing.add(productId);
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        long invalidationsBefore = invalidations.get();
+        Map<String, SimilarProducts> results = missing.isEmpty() ? Map.of() : assembler.apply(missing);
+
+        Map<String, List<ProductDetail>> bodies = new LinkedHashMap<>();
+        for (String productId : productIds) {
+            if (cached.containsKey(productId)) {
+                bodies.put(productId, cached.get(productId));
+            } else if (results.containsKey(productId) && !bodies.containsKey(productId)) {
+                SimilarProducts result = results.get(productId);
+                List<ProductDetail> body = mapper.apply(result.getProducts());
+                if (enabled) {
+                    store(productId, result, body, invalidationsBefore, startNanos);
+                }
+                bodies.put(productId, body);
+            }
+        }
+        return bodies;
+    }
+
+    /***
+     * @param productId
+     * @return the cached response of the product, or null when it is not cached
+     */
+    public List<ProductDetail> getIfPresent(String productId) {
+        return enabled ? responses.getIfPresent(productId) : null;
+    }
+
+    /***
+     * @param productId
+     * @return how long the cached response of the product stays fresh, zero when it is not cached or never expires
+     */
+    public Duration freshnessOf(String productId) {
+        if (!enabled) {
+            return Duration.ZERO;
+        }
+        return responses.policy().expireAfterWrite()
+                .flatMap(expiration -> expiration.ageOf(productId)
+                        .map(age -> expiration.getExpiresAfter().minus(age)))
+                .filter(remaining -> !remaining.isNegative())
+                .orElse(Duration.ZERO);
+    }
+
+    public Cache<String, List<ProductDetail>> getResponses() {
+        return responses;
+    }
+
+    /***
+     * Publishes the invalidations caused by the product details and similar IDs removed from the caches below. The
+     * hits, misses, evictions and size of every cache are already published through the cache manager
+     * @param registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.invalidations", invalidations, AtomicLong::get)
+                .description("Removals from the caches below, each invalidating the cached responses holding the removed entry")
+                .tag("cache", SIMILAR_RESPONSES)
+                .register(registry);
+    }
+
+    @Override
+    public void onSimilarIdsRemoved(String productId) {
+        similarIdsRemovals.put(productId, invalidations.incrementAndGet());
+        responses.invalidate(productId);
+    }
+
+    @Override
+    public void onProductDetailRemoved(String productId) {
+        productDetailRemovals.put(productId, invalidations.incrementAndGet());
+        Set<String> keys = dependents.get(productId);
+        if (keys != null) {
+            responses.invalidateAll(Set.copyOf(keys));
+        }
+    }
+
+    /***
+     * Caches a complete response unless one of its entries was removed since its assembly started. The response is
+     * linked to its product details before it is put, so a removal after the check below finds and invalidates it;
+     * the check after the put catches the removals that happened before the link
+     * @param productId
+     * @param result              the domain result
+     * @param body                the response body
+     * @param invalidationsBefore the invalidations counted when the assembly started
+     * @param startNanos          the time the assembly started
+     */
+    private void store(String productId, SimilarProducts result, List<ProductDetail> body, long invalidationsBefore,
+                       long startNanos) {
+        if (!result.isComplete() || System.nanoTime() - startNanos >= REMOVALS_RETENTION.toNanos()
+                || removedSince(productId, result.getSimilarIds(), invalidationsBefore)) {
+            return;
+        }
+        link(productId, result.getSimilarIds());
+        responses.put(productId, body);
+        if (removedSince(productId, result.getSimilarIds(), invalidationsBefore)) {
+            responses.asMap().remove(productId, body);
+        }
+    }
+
+    private boolean removedSince(String productId, Collection<String> detailIds, long invalidationsBefore) {
+        if (isAfter(similarIdsRemovals.getIfPresent(productId), invalidationsBefore)) {
+            return true;
+        }
+        for (String detailId : detailIds) {
+            if (isAfter(productDetailRemovals.getIfPresent(detailId), invalidationsBefore)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAfter(Long removal, long invalidationsBefore) {
+        return removal != null && removal > invalidationsBefore;
+    }
+
+    private static Cache<String, Long> removals() {
+        return Caffeine.newBuilder()
+                .expireAfterWrite(REMOVALS_RETENTION)
+                .executor(Runnable::run)
+                .build();
+    }
+
+    private void link(String productId, Collection<String> detailIds) {
+        constituents.put(productId, Set.copyOf(detailIds));
+        detailIds.forEach(detailId -> dependents.computeIfAbsent(detailId, id -> ConcurrentHashMap.newKeySet()).add(productId));
+    }
+
+    private void unlink(String productId) {
+        Set<String> detailIds = constituents.remove(productId);
+        if (detailIds == null) {
+            return;
+        }
+        detailIds.forEach(detailId -> dependents.computeIfPresent(detailId, (id, keys) -> {
+            keys.remove(productId);
+            return keys.isEmpty() ? null : keys;
+        }));
+    }
+
+}
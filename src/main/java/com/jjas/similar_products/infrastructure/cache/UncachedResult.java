@@ -0,0 +1,20 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+/***
+ * Carries a loaded value that must be returned to the callers but never stored, such as a fallback answer given
+ * while the upstream API is failing. Failing the load is what keeps it out of the cache.
+ */
+class UncachedResult extends RuntimeException {
+
+    private final transient Object value;
+
+    UncachedResult(Object value) {
+        super(null, null, false, false);
+        this.value = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> V value() {
+        return (V) value;
+    }
+}
@@ -0,0 +1,111 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/***
+ * Loads cache entries from the second level, then from the upstream adapter, applying the storage rules of the
+ * product caches: fallback answers are never stored, products not found are remembered in a short-lived negative
+ * cache, and a background refresh that only gets a fallback answer keeps serving the previous value.
+ * Background refreshes skip the second level so they always bring fresh data into both levels, and may revalidate the
+ * previous value upstream instead of fetching it again. A stale second level entry is loaded as it is, and its key is
+ * remembered so the caller refreshes it once the load completes.
+ */
+class UpstreamCacheLoader<V> implements CacheLoader<String, V> {
+
+    private final Function<String, V> upstream;
+
+    private final BiFunction<String, V, V> refresh;
+
+    private final Predicate<V> isFallback;
+
+    private final Cache<String, Boolean> notFound;
+
+    private final SecondLevelCache<V> secondLevel;
+
+    private final Set<String> staleKeys = ConcurrentHashMap.newKeySet();
+
+    UpstreamCacheLoader(Function<String, V> upstream, Predicate<V> isFallback, Cache<String, Boolean> notFound) {
+        this(upstream, isFallback, notFound, SecondLevelCache.disabled());
+    }
+
+    UpstreamCacheLoader(Function<String, V> upstream, Predicate<V> isFallback, Cache<String, Boolean> notFound,
+                        SecondLevelCache<V> secondLevel) {
+        this(upstream, (key, oldValue) -> upstream.apply(key), isFallback, notFound, secondLevel);
+    }
+
+    /***
+     * @param upstream   fetches a value
+     * @param refresh    fetches the new value of a key from its previous value, returning the previous value itself
+     *                   when upstream reports it unchanged
+     * @param isFallback
+     * @param notFound
+     * @param secondLevel
+     */
+    UpstreamCacheLoader(Function<String, V> upstream, BiFunction<String, V, V> refresh, Predicate<V> isFallback,
+                        Cache<String, Boolean> notFound, SecondLevelCache<V> secondLevel) {
+        this.upstream = upstream;
+        this.refresh = refresh;
+        this.isFallback = isFallback;
+        this.notFound = notFound;
+        this.secondLevel = secondLevel;
+    }
+
+    @Override
+    public V load(String key) {
+        SecondLevelCache.Hit<V> stored = secondLevel.get(key);
+        if (stored != null) {
+            if (stored.stale()) {
+                staleKeys.add(key);
+            }
+            return stored.value();
+        }
+        return fetch(key, upstream);
+    }
+
+    /***
+     * @param key
+     * @return whether the last load of the key served a stale second level entry not refreshed yet. Only the first call
+     * after that load returns true
+     */
+    boolean takeStale(String key) {
+        return !staleKeys.isEmpty() && staleKeys.remove(key);
+    }
+
+    @Override
+    public V reload(String key, V oldValue) {
+        staleKeys.remove(key);
+        try {
+            return fetch(key, k -> refresh.apply(k, oldValue));
+        } catch (UncachedResult e) {
+            return oldValue;
+        } catch (ProductNotFoundException e) {
+            return null;
+        }
+    }
+
+    private V fetch(String key, Function<String, V> source) {
+        V value;
+        try {
+            value = source.apply(key);
+        } catch (ProductNotFoundException e) {
+            secondLevel.invalidate(key);
+            if (notFound != null) {
+                notFound.put(key, Boolean.TRUE);
+            }
+            throw e;
+        }
+        if (value == null || isFallback.test(value)) {
+            throw new UncachedResult(value);
+        }
+        secondLevel.put(key, value);
+        return value;
+    }
+}
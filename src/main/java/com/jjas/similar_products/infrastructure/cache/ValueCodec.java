@@ -0,0 +1,14 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import java.io.IOException;
+
+/***
+ * Compact binary encoding of the values kept in the second level cache
+ */
+interface ValueCodec<V> {
+
+    byte[] encode(V value) throws IOException;
+
+    V decode(byte[] bytes) throws IOException;
+
+}
@@ -0,0 +1,184 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.config.ProductApiProperties;
+import com.jjas.similar_products.infrastructure.http.exception.UpstreamOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/***
+ * Limits the upstream calls in flight, adapting the limit to the measured round trip time with a gradient algorithm:
+ * <ul>
+ *     <li>the limit is scaled by {@code tolerance * longRtt / shortRtt} (clamped to [0.5, 1]) plus a queue allowance
+ *     of {@code sqrt(limit)}, so it grows while latency is stable and shrinks as soon as it rises</li>
+ *     <li>a failed or timed out call multiplies the limit by the backoff ratio</li>
+ *     <li>the limit only grows while at least half of it is in use</li>
+ * </ul>
+ * Calls over the limit wait up to {@code maxQueueWaitMs} for a slot and are then rejected with
+ * {@link UpstreamOverloadedException}, instead of piling up on a saturated upstream. Every upstream operation has its
+ * own limiter, see {@link UpstreamConcurrencyLimiters}.
+ */
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+
+    private static final int SHORT_WINDOW = 10;
+
+    private final String operation;
+
+    private final ProductApiProperties.ConcurrencyLimit properties;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition released = lock.newCondition();
+
+    private final LongAdder rejections = new LongAdder();
+
+    private double limit;
+
+    private int inFlight;
+
+    private double shortRtt = -1;
+
+    private double longRtt = -1;
+
+    /***
+     * @param operation  the upstream operation limited, tagging the metrics
+     * @param properties the limit settings
+     */
+    public AdaptiveConcurrencyLimiter(String operation, ProductApiProperties.ConcurrencyLimit properties) {
+        this.operation = operation;
+        this.properties = properties;
+        this.limit = clamp(properties.getInitialLimit());
+    }
+
+    /***
+     * Runs the call within the limit, measuring its round trip time. Client errors (4xx) are answers and count as
+     * regular samples; any other failure counts as a drop.
+     * @param call the upstream call
+     * @return the call result
+     * @throws UpstreamOverloadedException when no slot frees up in time
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!properties.isEnabled()) {
+            return call.get();
+        }
+        acquire();
+        long start = System.nanoTime();
+        boolean dropped = true;
+        try {
+            T result = call.get();
+            dropped = false;
+            return result;
+        } catch (HttpClientErrorException e) {
+            dropped = false;
+            throw e;
+        } finally {
+            release(System.nanoTime() - start, dropped);
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    private void acquire() {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(properties.getMaxQueueWaitMs());
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejections.increment();
+                    throw new UpstreamOverloadedException("Upstream concurrency limit reached for " + operation);
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            inFlight++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamOverloadedException("Interrupted waiting for an upstream slot");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            onSample(rttNanos, inFlight, dropped);
+            inFlight--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /***
+     * Updates the limit with a new sample. Callers hold the lock, or own the limiter as in tests
+     * @param rttNanos the round trip time of the call
+     * @param inFlight the calls in flight when it finished, itself included
+     * @param dropped  whether the call failed or timed out
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            limit = clamp(limit * properties.getBackoffRatio());
+            return;
+        }
+        shortRtt = shortRtt < 0 ? rttNanos : shortRtt + (rttNanos - shortRtt) / SHORT_WINDOW;
+        longRtt = longRtt < 0 ? rttNanos : longRtt + (rttNanos - longRtt) / Math.max(1, properties.getLongWindow());
+        if (longRtt > shortRtt * 2) {
+            // latency dropped for good, let the long-term average catch up
+            longRtt *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longRtt / shortRtt));
+        double estimate = limit * gradient + Math.sqrt(limit);
+        limit = clamp(limit * (1 - properties.getSmoothing()) + estimate * properties.getSmoothing());
+    }
+
+    private double clamp(double value) {
+        return Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), value));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("upstream.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Upstream calls allowed in flight")
+                .tag("operation", operation)
+                .register(registry);
+        Gauge.builder("upstream.concurrency.in.flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Upstream calls in flight")
+                .tag("operation", operation)
+                .register(registry);
+        FunctionCounter.builder("upstream.concurrency.rejections", this, AdaptiveConcurrencyLimiter::getRejections)
+                .description("Upstream calls rejected because the concurrency limit was reached")
+                .tag("operation", operation)
+                .register(registry);
+    }
+}
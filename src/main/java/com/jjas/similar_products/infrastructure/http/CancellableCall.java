@@ -0,0 +1,103 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/***
+ * Handle on an upstream call running on a bulkhead thread, so the thread that started it can abort it. The request
+ * factory registers the HTTP request the call sends (APACHE transport), and cancelling the call cancels that request,
+ * which closes its connection. The thread running the call is interrupted too, which aborts the request of the JDK
+ * transport. The SIMPLE transport cannot be aborted and runs until its read timeout.
+ */
+public final class CancellableCall {
+
+    private static final ThreadLocal<CancellableCall> CURRENT = new ThreadLocal<>();
+
+    private Runnable abort;
+
+    private Thread thread;
+
+    private boolean cancelled;
+
+    /***
+     * Registers how to abort the request the current call is sending. Does nothing outside a cancellable call
+     * @param abort aborts the request
+     */
+    public static void register(Runnable abort) {
+        CancellableCall call = CURRENT.get();
+        if (call != null) {
+            call.attach(abort);
+        }
+    }
+
+    /***
+     * @return true when the call running in the current thread has been cancelled
+     */
+    static boolean isCurrentCancelled() {
+        CancellableCall call = CURRENT.get();
+        return call != null && call.isCancelled();
+    }
+
+    /***
+     * Runs the call in the current thread
+     * @param call the upstream call
+     * @return the call result
+     * @throws CancellationException when the call was cancelled, before or while it ran
+     */
+    <T> T run(Supplier<T> call) {
+        synchronized (this) {
+            if (cancelled) {
+                throw new CancellationException("Upstream call cancelled before it started");
+            }
+            thread = Thread.currentThread();
+        }
+        CURRENT.set(this);
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            if (isCancelled()) {
+                CancellationException cancellation = new CancellationException("Upstream call cancelled");
+                cancellation.initCause(e);
+                throw cancellation;
+            }
+            throw e;
+        } finally {
+            CURRENT.remove();
+            synchronized (this) {
+                thread = null;
+                if (cancelled) {
+                    // the bulkhead thread goes back to its pool, without the interrupt meant for this call
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    /***
+     * Aborts the request of the call and interrupts the thread running it. A call not started yet never starts
+     */
+    synchronized void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        if (abort != null) {
+            abort.run();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private synchronized void attach(Runnable abort) {
+        if (cancelled) {
+            abort.run();
+        } else {
+            this.abort = abort;
+        }
+    }
+}
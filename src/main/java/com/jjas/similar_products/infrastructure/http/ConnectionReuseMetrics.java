@@ -0,0 +1,59 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/***
+ * Counts the upstream requests and the connections opened to serve them, so the share of requests served over a
+ * reused keep-alive connection can be monitored.
+ */
+public class ConnectionReuseMetrics implements MeterBinder {
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder connectionsOpened = new LongAdder();
+
+    public void requestSent() {
+        requests.increment();
+    }
+
+    public void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.sum();
+    }
+
+    /***
+     * @return the ratio of requests that did not need a new connection, between 0 and 1
+     */
+    public double reuseRatio() {
+        long sent = requests.sum();
+        if (sent == 0) {
+            return 0;
+        }
+        return Math.max(0, 1 - (double) connectionsOpened.sum() / sent);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("upstream.http.requests", this, ConnectionReuseMetrics::getRequests)
+                .description("Requests sent to the upstream product API")
+                .register(registry);
+        FunctionCounter.builder("upstream.http.connections.opened", this, ConnectionReuseMetrics::getConnectionsOpened)
+                .description("Connections opened to the upstream product API")
+                .register(registry);
+        Gauge.builder("upstream.http.connections.reuse.ratio", this, ConnectionReuseMetrics::reuseRatio)
+                .description("Share of upstream requests served over a reused connection")
+                .register(registry);
+    }
+}
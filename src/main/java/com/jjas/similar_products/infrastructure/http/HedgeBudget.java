@@ -0,0 +1,39 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/***
+ * Token bucket limiting hedged requests to a share of the requests sent: every request earns a fraction of a token
+ * and every hedge spends a whole one, so hedges never exceed {@code percent}% of the traffic plus a small burst.
+ */
+class HedgeBudget {
+
+    private static final long TOKEN = 1_000;
+
+    private final long earnedPerRequest;
+
+    private final long maxTokens;
+
+    private final AtomicLong tokens = new AtomicLong();
+
+    HedgeBudget(double percent, int maxBurst) {
+        this.earnedPerRequest = Math.round(Math.max(0, percent) / 100 * TOKEN);
+        this.maxTokens = Math.max(1, maxBurst) * TOKEN;
+    }
+
+    void onRequest() {
+        tokens.accumulateAndGet(earnedPerRequest, (current, earned) -> Math.min(maxTokens, current + earned));
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            long current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.config.ProductApiProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/***
+ * Hedges the calls to the upstream adapter: when the first attempt has not answered within the configured
+ * percentile of the recently observed latency, one duplicate request is sent and the first answer wins, the other
+ * attempt being cancelled. A not found answer counts as an answer; an error only wins when every attempt failed.
+ * A {@link HedgeBudget} caps the extra requests so a slow upstream is not hit with twice the load. No hedge is sent
+ * past the request deadline. A fallback answer (open circuit, full bulkhead, time limit) counts as a failure.
+ * The attempts run on the bulkhead threads while the caller waits for the first answer, so a hedged call holds the
+ * caller thread and at most two bulkhead threads; cancelling the losing attempt aborts its HTTP request.
+ */
+@Component
+public class HedgingProductApiAdapter implements ExternalProductService, UpstreamProductDetails, MeterBinder {
+
+    private final ExternalProductService delegate;
+
+    private final UpstreamProductDetails details;
+
+    private final UpstreamAttempts attempts;
+
+    private final ProductApiProperties.Hedging properties;
+
+    private final HedgeBudget budget;
+
+    private final Operation similarIds;
+
+    private final Operation productDetail;
+
+    @Autowired
+    public HedgingProductApiAdapter(ProductApiAdapter delegate, ProductApiProperties properties) {
+        this(delegate, delegate, delegate, properties.getHedging());
+    }
+
+    HedgingProductApiAdapter(ExternalProductService delegate, UpstreamProductDetails details, UpstreamAttempts attempts,
+                             ProductApiProperties.Hedging properties) {
+        this.delegate = delegate;
+        this.details = details;
+        this.attempts = attempts;
+        this.properties = properties;
+        this.budget = new HedgeBudget(properties.getBudgetPercent(), properties.getMaxBurst());
+        this.similarIds = new Operation("similar-ids", "Server error fetching similar IDs", properties);
+        this.productDetail = new Operation("product-detail", "Server error fetching product", properties);
+    }
+
+    @Override
+    public List<String> fetchSimilarProductIds(String productId, Deadline deadline) {
+        return call(similarIds, productId, deadline, id -> delegate.fetchSimilarProductIds(id, deadline),
+                id -> attempts.startSimilarProductIds(id, deadline));
+    }
+
+    @Override
+    public Product fetchProductDetail(String productId, Deadline deadline) {
+        return UpstreamProduct.productOf(fetchUpstreamProductDetail(productId, deadline));
+    }
+
+    @Override
+    public UpstreamProduct fetchUpstreamProductDetail(String productId, Deadline deadline) {
+        return call(productDetail, productId, deadline, id -> details.fetchUpstreamProductDetail(id, deadline),
+                id -> attempts.startProductDetail(id, deadline));
+    }
+
+    /***
+     * Refreshes are background revalidations, so they go straight to the delegate without hedges
+     */
+    @Override
+    public Product refreshProductDetail(String productId, Product current) {
+        return delegate.refreshProductDetail(productId, current);
+    }
+
+    /***
+     * Refreshes are background revalidations, so they go straight to the delegate without hedges
+     */
+    @Override
+    public UpstreamProduct refreshUpstreamProductDetail(String productId, UpstreamProduct current) {
+        return details.refreshUpstreamProductDetail(productId, current);
+    }
+
+    /***
+     * Calls the upstream, hedging it once the latency of the operation is known
+     * @param operation the hedged operation
+     * @param productId
+     * @param deadline  the request deadline, no hedge is sent and no answer awaited past it
+     * @param call      the upstream call, run in the caller thread
+     * @param start     starts an attempt of the upstream call on a bulkhead thread
+     * @return the first answer
+     */
+    private <T> T call(Operation operation, String productId, Deadline deadline, Function<String, T> call,
+                       Function<String, CompletableFuture<T>> start) {
+        if (!properties.isEnabled()) {
+            return call.apply(productId);
+        }
+        budget.onRequest();
+        long delayNanos = operation.latencies.percentileNanos(properties.getMinSamples());
+        if (delayNanos < 0) {
+            return callUnhedged(operation, productId, call);
+        }
+        delayNanos = Math.max(delayNanos, TimeUnit.MILLISECONDS.toNanos(properties.getMinDelayMs()));
+
+        Race<T> race = new Race<>();
+        try {
+            attempt(operation, productId, start, race, false);
+        } catch (RejectedExecutionException e) {
+            return callUnhedged(operation, productId, call);
+        }
+        try {
+            try {
+                return race.winner.get(Math.min(delayNanos, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (!race.winner.isDone() && !deadline.isExpired() && budget.tryAcquire()) {
+                    hedge(operation, productId, start, race);
+                }
+                return race.winner.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException(String.format("Deadline reached waiting for %s of %s", operation.name, productId));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ExternalServiceException(operation.errorMessage, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExternalServiceException(operation.errorMessage, e);
+        } finally {
+            race.attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    private <T> T callUnhedged(Operation operation, String productId, Function<String, T> call) {
+        long start = System.nanoTime();
+        T value = call.apply(productId);
+        operation.latencies.record(System.nanoTime() - start);
+        return value;
+    }
+
+    /***
+     * Sends the duplicate request, unless the upstream calls cannot be started anymore
+     */
+    private <T> void hedge(Operation operation, String productId, Function<String, CompletableFuture<T>> start, Race<T> race) {
+        race.pending.incrementAndGet();
+        try {
+            attempt(operation, productId, start, race, true);
+            operation.sent.increment();
+        } catch (RejectedExecutionException e) {
+            if (race.pending.decrementAndGet() == 0 && race.decide(null)) {
+                race.winner.completeExceptionally(new ExternalServiceException(operation.errorMessage, e));
+            }
+        }
+    }
+
+    /***
+     * Starts an attempt, which decides the race when it answers. A fallback value counts as a failure, so it only
+     * completes the race when no other attempt is left
+     * @throws RejectedExecutionException when the attempt cannot be started
+     */
+    private <T> void attempt(Operation operation, String productId, Function<String, CompletableFuture<T>> start,
+                             Race<T> race, boolean hedge) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<T> attempt = start.apply(productId);
+        race.attempts.add(attempt);
+        attempt.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null && !ProductApiAdapter.isFallback(value)) {
+                operation.latencies.record(System.nanoTime() - startNanos);
+                if (race.decide(hedge ? operation.won : null)) {
+                    race.winner.complete(value);
+                }
+            } else if (cause instanceof ProductNotFoundException) {
+                if (race.decide(hedge ? operation.won : null)) {
+                    race.winner.completeExceptionally(cause);
+                }
+            } else if (!(cause instanceof CancellationException) && race.pending.decrementAndGet() == 0 && race.decide(null)) {
+                if (cause == null) {
+                    race.winner.complete(value);
+                } else {
+                    race.winner.completeExceptionally(cause);
+                }
+            }
+        });
+    }
+
+    long hedgesSent() {
+        return similarIds.sent.sum() + productDetail.sent.sum();
+    }
+
+    long hedgesWon() {
+        return similarIds.won.sum() + productDetail.won.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Operation operation : List.of(similarIds, productDetail)) {
+            FunctionCounter.builder("upstream.hedge.sent", operation.sent, LongAdder::sum)
+                    .description("Duplicate requests sent to the upstream product API")
+                    .tag("operation", operation.name)
+                    .register(registry);
+            FunctionCounter.builder("upstream.hedge.won", operation.won, LongAdder::sum)
+                    .description("Duplicate requests that answered before the original one")
+                    .tag("operation", operation.name)
+                    .register(registry);
+            Gauge.builder("upstream.hedge.delay", operation.latencies,
+                            latencies -> latencies.percentileNanos(properties.getMinSamples()) / 1_000_000.0)
+                    .description("Delay after which a duplicate request is sent, -1 while still measuring")
+                    .tag("operation", operation.name)
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        }
+    }
+
+    /***
+     * State shared by the attempts of one call. The first attempt to decide the race completes the winner
+     */
+    private static final class Race<T> {
+
+        private final CompletableFuture<T> winner = new CompletableFuture<>();
+
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private final AtomicBoolean decided = new AtomicBoolean();
+
+        private final List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+
+        /***
+         * @param wins counter of the hedges won, incremented before the winner is completed; null for the original
+         * @return true when this attempt decides the race
+         */
+        private boolean decide(LongAdder wins) {
+            if (!decided.compareAndSet(false, true)) {
+                return false;
+            }
+            if (wins != null) {
+                wins.increment();
+            }
+            return true;
+        }
+    }
+
+    private static final class Operation {
+
+        private final String name;
+
+        private final String errorMessage;
+
+        private final LatencyWindow latencies;
+
+        private final LongAdder sent = new LongAdder();
+
+        private final LongAdder won = new LongAdder();
+
+        private Operation(String name, String errorMessage, ProductApiProperties.Hedging properties) {
+            this.name = name;
+            this.errorMessage = errorMessage;
+            this.latencies = new LatencyWindow(properties.getWindowSize(), properties.getPercentile());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import java.util.Arrays;
+
+/***
+ * Ring buffer of the most recent upstream latencies, answering a fixed percentile. The percentile is recomputed
+ * every {@value #RECOMPUTE_EVERY} samples instead of on every request.
+ */
+class LatencyWindow {
+
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final long[] samples;
+
+    private final double percentile;
+
+    private int next;
+
+    private long count;
+
+    private int sinceRecompute;
+
+    private long percentileNanos = -1;
+
+    LatencyWindow(int size, double percentile) {
+        this.samples = new long[Math.max(1, size)];
+        this.percentile = Math.min(100, Math.max(0, percentile));
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count++;
+        sinceRecompute++;
+    }
+
+    /***
+     * @param minSamples the samples needed before answering
+     * @return the percentile of the recent latencies in nanoseconds, or -1 when there are not enough samples yet
+     */
+    synchronized long percentileNanos(int minSamples) {
+        if (count == 0 || count < minSamples) {
+            return -1;
+        }
+        if (percentileNanos < 0 || sinceRecompute >= RECOMPUTE_EVERY) {
+            int size = (int) Math.min(count, samples.length);
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * size) - 1;
+            percentileNanos = sorted[Math.min(size - 1, Math.max(0, rank))];
+            sinceRecompute = 0;
+        }
+        return percentileNanos;
+    }
+}
@@ -1,98 +1,219 @@
 package com.jjas.similar_products.infrastructure.http;
 
+import com.jjas.similar_products.domain.model.Deadline;
 import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarIds;
 import com.jjas.similar_products.domain.port.output.ExternalProductService;
 import com.jjas.similar_products.generated.external.api.DefaultApi;
 import com.jjas.similar_products.generated.external.model.ProductDetail;
+import com.jjas.similar_products.infrastructure.http.UpstreamMetrics.Outcome;
 import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
 import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
+import com.jjas.similar_products.infrastructure.http.exception.UpstreamOverloadedException;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 
-import java.util.Collections;
-import java.util.Set;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @Component
 @RequiredArgsConstructor
-public class ProductApiAdapter implements ExternalProductService {
+public class ProductApiAdapter implements ExternalProductService, UpstreamProductDetails, UpstreamAttempts {
     private static final Logger LOGGER = Logger.getLogger(ProductApiAdapter.class.getName());
 
-    private static final String CIRCUIT_BRAKER_NAME = "externalService";
+    private static final List<String> FALLBACK_SIMILAR_IDS = SimilarIds.unavailable();
 
     private final DefaultApi productsApi;
 
+    private final UpstreamConcurrencyLimiters upstreamLimiters;
+
+    private final ProductDetailRevalidator revalidator;
+
+    private final UpstreamMetrics metrics;
+
+    private final UpstreamResilience resilience;
+
+    @Override
+    public List<String> fetchSimilarProductIds(String productId, Deadline deadline) {
+        return resilience.execute(UpstreamResilience.SIMILAR_IDS,
+                () -> requestSimilarIds(productId),
+                ex -> fallbackSimilarIds(productId, ex),
+                deadline);
+    }
+
+    @Override
+    public Product fetchProductDetail(String productId, Deadline deadline) {
+        return UpstreamProduct.productOf(fetchUpstreamProductDetail(productId, deadline));
+    }
+
+    @Override
+    public UpstreamProduct fetchUpstreamProductDetail(String productId, Deadline deadline) {
+        return resilience.execute(UpstreamResilience.PRODUCT_DETAIL,
+                () -> requestProductDetail(productId, () -> productsApi.getProductProductIdWithHttpInfo(productId), null),
+                ex -> fallbackProductDetail(productId, ex),
+                deadline);
+    }
+
+    @Override
+    public CompletableFuture<List<String>> startSimilarProductIds(String productId, Deadline deadline) {
+        return resilience.start(UpstreamResilience.SIMILAR_IDS,
+                () -> requestSimilarIds(productId),
+                ex -> fallbackSimilarIds(productId, ex),
+                deadline);
+    }
+
+    @Override
+    public CompletableFuture<UpstreamProduct> startProductDetail(String productId, Deadline deadline) {
+        return resilience.start(UpstreamResilience.PRODUCT_DETAIL,
+                () -> requestProductDetail(productId, () -> productsApi.getProductProductIdWithHttpInfo(productId), null),
+                ex -> fallbackProductDetail(productId, ex),
+                deadline);
+    }
+
+    /***
+     * Revalidates the product with the validators the upstream returned for it, so an unchanged product costs a 304
+     * without body. Products fetched without validators are fetched again
+     * @param productId
+     * @param current   the cached product with its validators
+     * @return the current product when the upstream reports it unchanged, otherwise the new one
+     */
     @Override
-    @Cacheable(value = "similar-ids", key = "#productId")
-    @CircuitBreaker(name = CIRCUIT_BRAKER_NAME, fallbackMethod = "fallbackSimilarIds")
-    @Retry(name = CIRCUIT_BRAKER_NAME)
-    public Set<String> fetchSimilarProductIds(String productId) {
+    public UpstreamProduct refreshUpstreamProductDetail(String productId, UpstreamProduct current) {
+        UpstreamValidators validators = current.validators();
+        if (!validators.isPresent()) {
+            return fetchUpstreamProductDetail(productId, Deadline.none());
+        }
+        return resilience.execute(UpstreamResilience.PRODUCT_DETAIL,
+                () -> requestProductDetail(productId, () -> revalidator.revalidate(productId, validators), current),
+                ex -> fallbackProductDetail(productId, ex),
+                Deadline.none());
+    }
+
+    private List<String> requestSimilarIds(String productId) {
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.ERROR;
         try {
-            Set<String> productSimilarids = productsApi.getProductSimilarids(productId);
+            List<String> productSimilarids = upstreamLimiters.forOperation(UpstreamResilience.SIMILAR_IDS)
+                    .call(() -> productsApi.getProductSimilarids(productId));
 
-            return productSimilarids;
+            outcome = Outcome.SUCCESS;
+            return distinctInOrder(productSimilarids);
         } catch (HttpClientErrorException.NotFound e) {
+            outcome = Outcome.NOT_FOUND;
             throw new ProductNotFoundException(productId);
         } catch (HttpClientErrorException e) {
+            outcome = Outcome.CLIENT_ERROR;
             throw new ExternalServiceException("Client error fetching similar IDs", e);
         } catch (HttpServerErrorException e) {
+            outcome = Outcome.SERVER_ERROR;
             throw new ExternalServiceException("Server error fetching similar IDs", e);
+        } catch (UpstreamOverloadedException e) {
+            outcome = Outcome.OVERLOADED;
+            throw e;
         } catch (Exception e) {
+            if (CancellableCall.isCurrentCancelled()) {
+                outcome = Outcome.CANCELLED;
+            }
             throw new ExternalServiceException("Unexpected error fetching similar IDs", e);
+        } finally {
+            metrics.recordCall(UpstreamResilience.SIMILAR_IDS, outcome, start);
         }
     }
 
 
-    @Override
-    @Cacheable(value = "product-details", key = "#productId")
-    @CircuitBreaker(name = CIRCUIT_BRAKER_NAME, fallbackMethod = "fallbackProductDetail")
-    @Retry(name = CIRCUIT_BRAKER_NAME)
-    public Product fetchProductDetail(String productId) {
+    private UpstreamProduct requestProductDetail(String productId, Supplier<ResponseEntity<ProductDetail>> request,
+                                                 UpstreamProduct current) {
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.ERROR;
         try {
-            ProductDetail productDetail = productsApi.getProductProductId(productId);
-
-            return new Product(productDetail.getId(), productDetail.getName(), productDetail.getPrice(), productDetail.getAvailability());
+            ResponseEntity<ProductDetail> response = upstreamLimiters.forOperation(UpstreamResilience.PRODUCT_DETAIL).call(request);
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && current != null) {
+                outcome = Outcome.NOT_MODIFIED;
+                return current;
+            }
+
+            ProductDetail productDetail = response.getBody();
+            Product product = new Product(productDetail.getId(), productDetail.getName(), productDetail.getPrice(),
+                    productDetail.getAvailability());
+            outcome = Outcome.SUCCESS;
+            return new UpstreamProduct(product, UpstreamValidators.of(response.getHeaders()));
         } catch (HttpClientErrorException.NotFound e) {
+            outcome = Outcome.NOT_FOUND;
             throw new ProductNotFoundException(productId);
         } catch (HttpClientErrorException e) {
+            outcome = Outcome.CLIENT_ERROR;
             throw new ExternalServiceException("Client error fetching product", e);
         } catch (HttpServerErrorException e) {
+            outcome = Outcome.SERVER_ERROR;
             throw new ExternalServiceException("Server error fetching product", e);
+        } catch (UpstreamOverloadedException e) {
+            outcome = Outcome.OVERLOADED;
+            throw e;
         } catch (Exception e) {
+            if (CancellableCall.isCurrentCancelled()) {
+                outcome = Outcome.CANCELLED;
+            }
             throw new ExternalServiceException("Unexpected error fetching product", e);
+        } finally {
+            metrics.recordCall(UpstreamResilience.PRODUCT_DETAIL, outcome, start);
         }
     }
 
     // FALLBACKS CIRCUIT BRAKER
 
     /***
-     * Fallback method for errors retrieving the similar products
+     * Fallback for similar IDs calls rejected by the circuit breaker, bulkhead or time limiter
      * @param productId
      * @param ex
-     * @return an empty set
+     * @return the {@link SimilarIds#unavailable()} sentinel: an empty list the callers answer with, which
+     * {@link #isFallback(Object)} recognizes by identity so it is never cached
      */
-    public Set<String> fallbackSimilarIds(String productId, Throwable ex) {
+    public List<String> fallbackSimilarIds(String productId, Throwable ex) {
         LOGGER.log(Level.WARNING, String.format("Fallback triggered for similar IDs of product %s: %s", productId, ex.getMessage()));
+        metrics.recordFallback(UpstreamResilience.SIMILAR_IDS);
 
-        return Collections.emptySet();
+        return FALLBACK_SIMILAR_IDS;
     }
 
     /***
-     * Fallback method for errors retrieving the product details
+     * Fallback for product detail calls rejected by the circuit breaker, bulkhead or time limiter
      * @param productId
      * @param ex
      * @return a null product
      */
-    public Product fallbackProductDetail(String productId, Throwable ex) {
+    public UpstreamProduct fallbackProductDetail(String productId, Throwable ex) {
         LOGGER.log(Level.WARNING, String.format("Fallback triggered for product details of %s: %s", productId, ex.getMessage()));
+        metrics.recordFallback(UpstreamResilience.PRODUCT_DETAIL);
 
         return null;
     }
 
+    /***
+     * @param ids the similar IDs returned upstream, ordered by similarity
+     * @return the IDs without duplicates, keeping the rank of their first occurrence, in their compact form
+     */
+    static List<String> distinctInOrder(List<String> ids) {
+        if (ids == null) {
+            return SimilarIds.of(List.of());
+        }
+        return SimilarIds.of(new LinkedHashSet<>(ids));
+    }
+
+    /***
+     * Tells whether a value is a fallback answer rather than real upstream data, so it is never cached
+     * @param value the value returned by this adapter
+     * @return true for the values produced by the fallback methods
+     */
+    public static boolean isFallback(Object value) {
+        return value == null || value == FALLBACK_SIMILAR_IDS;
+    }
+
 }
@@ -0,0 +1,50 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.generated.external.invoker.ApiClient;
+import com.jjas.similar_products.generated.external.model.ProductDetail;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+
+/***
+ * Sends the conditional GET /product/{productId} requests of the cache refreshes. The generated client treats any
+ * status other than 2xx as an error, so these requests go through its RestTemplate directly and a 304 comes back as a
+ * response without body.
+ */
+@Component
+public class ProductDetailRevalidator {
+
+    private final RestTemplate restTemplate;
+
+    private final ApiClient apiClient;
+
+    public ProductDetailRevalidator(@Qualifier("upstreamRestTemplate") RestTemplate restTemplate, ApiClient apiClient) {
+        this.restTemplate = restTemplate;
+        this.apiClient = apiClient;
+    }
+
+    /***
+     * @param productId
+     * @param validators the validators of the cached product detail
+     * @return the new product detail, or a 304 response without body when it did not change
+     */
+    ResponseEntity<ProductDetail> revalidate(String productId, UpstreamValidators validators) {
+        URI uri = UriComponentsBuilder.fromUriString(apiClient.getBasePath())
+                .path("/product/{productId}")
+                .buildAndExpand(productId)
+                .encode()
+                .toUri();
+        RequestEntity<Void> request = RequestEntity.get(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .headers(validators.conditionalHeaders())
+                .build();
+        return restTemplate.exchange(request, ProductDetail.class);
+    }
+
+}
@@ -0,0 +1,179 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarIds;
+import com.jjas.similar_products.domain.port.output.ReactiveExternalProductService;
+import com.jjas.similar_products.generated.external.model.ProductDetail;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.reactor.timelimiter.TimeLimiterOperator;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Component
+@Profile("reactive")
+public class ReactiveProductApiAdapter implements ReactiveExternalProductService {
+    private static final Logger LOGGER = Logger.getLogger(ReactiveProductApiAdapter.class.getName());
+
+    private static final ParameterizedTypeReference<List<String>> SIMILAR_IDS_TYPE = new ParameterizedTypeReference<>() {
+    };
+
+    private final WebClient webClient;
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final TimeLimiterRegistry timeLimiterRegistry;
+
+    private final RetryRegistry retryRegistry;
+
+    public ReactiveProductApiAdapter(WebClient externalApiWebClient,
+                                     CircuitBreakerRegistry circuitBreakerRegistry,
+                                     TimeLimiterRegistry timeLimiterRegistry,
+                                     RetryRegistry retryRegistry) {
+        this.webClient = externalApiWebClient;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.timeLimiterRegistry = timeLimiterRegistry;
+        this.retryRegistry = retryRegistry;
+    }
+
+    @Override
+    public Mono<List<String>> fetchSimilarProductIds(String productId, Deadline deadline) {
+        return webClient.get()
+                .uri("/product/{productId}/similarids", productId)
+                .retrieve()
+                .bodyToMono(SIMILAR_IDS_TYPE)
+                .map(ProductApiAdapter::distinctInOrder)
+                .onErrorMap(ex -> toDomainException(productId, ex, "similar IDs"))
+                .transform(within(UpstreamResilience.SIMILAR_IDS, deadline))
+                .transformDeferred(resilience(UpstreamResilience.SIMILAR_IDS))
+                .onErrorResume(ReactiveProductApiAdapter::isRejection, ex -> fallbackSimilarIds(productId, ex));
+    }
+
+    @Override
+    public Mono<Product> fetchProductDetail(String productId, Deadline deadline) {
+        return webClient.get()
+                .uri("/product/{productId}", productId)
+                .retrieve()
+                .bodyToMono(ProductDetail.class)
+                .map(detail -> new Product(detail.getId(), detail.getName(), detail.getPrice(), detail.getAvailability()))
+                .onErrorMap(ex -> toDomainException(productId, ex, "product"))
+                .transform(within(UpstreamResilience.PRODUCT_DETAIL, deadline))
+                .transformDeferred(resilience(UpstreamResilience.PRODUCT_DETAIL))
+                .onErrorResume(ex -> !(ex instanceof ProductNotFoundException), ex -> fallbackProductDetail(productId, ex));
+    }
+
+    /***
+     * Bounds every attempt of an upstream call, retries included, by the time left before the deadline, so no call
+     * is sent once it has run out. The resilience operators resubscribe to the returned Mono on every attempt, so the
+     * time left is read again each time
+     * @param operation the operation name
+     * @param deadline  the request deadline
+     * @return the operator
+     */
+    private static <T> Function<Mono<T>, Mono<T>> within(String operation, Deadline deadline) {
+        if (!deadline.isBounded()) {
+            return Function.identity();
+        }
+        return mono -> Mono.defer(() -> deadline.isExpired()
+                ? Mono.error(new DeadlineExceededException("Deadline reached before calling " + operation))
+                : mono.timeout(deadline.remaining(),
+                        Mono.error(() -> new DeadlineExceededException("Deadline reached waiting for " + operation))));
+    }
+
+    /***
+     * Applies the time limiter, circuit breaker and retry of an upstream operation, the same instances the blocking
+     * adapter uses. Bulkheads are left to the blocking path, the reactive one being bounded by its flatMap concurrency.
+     * @param operation the operation name
+     * @return the operator
+     */
+    private <T> Function<Mono<T>, Mono<T>> resilience(String operation) {
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(operation);
+        TimeLimiter timeLimiter = timeLimiterRegistry.timeLimiter(operation);
+        Retry retry = retryRegistry.retry(operation);
+        return mono -> mono
+                .transformDeferred(TimeLimiterOperator.of(timeLimiter))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(RetryOperator.of(retry));
+    }
+
+    /***
+     * @param ex
+     * @return whether the call was rejected by the resilience layer (open circuit or timeout), the errors the blocking
+     * adapter answers with its fallback
+     */
+    private static boolean isRejection(Throwable ex) {
+        return ex instanceof CallNotPermittedException || ex instanceof TimeoutException;
+    }
+
+    // FALLBACKS CIRCUIT BRAKER
+
+    /***
+     * Fallback for similar IDs calls rejected by the circuit breaker or time limiter, as in the blocking adapter: the
+     * product is answered without similar products instead of failing the request
+     * @param productId
+     * @param ex
+     * @return the {@link SimilarIds#unavailable()} sentinel
+     */
+    private Mono<List<String>> fallbackSimilarIds(String productId, Throwable ex) {
+        LOGGER.log(Level.WARNING, String.format("Fallback triggered for similar IDs of product %s: %s", productId, ex.getMessage()));
+
+        return Mono.just(SimilarIds.unavailable());
+    }
+
+    /***
+     * Fallback for errors retrieving the product details
+     * @param productId
+     * @param ex
+     * @return {@link Mono#empty()}, so the product is dropped from the response
+     */
+    private Mono<Product> fallbackProductDetail(String productId, Throwable ex) {
+        LOGGER.log(Level.WARNING, String.format("Fallback triggered for product details of %s: %s", productId, ex.getMessage()));
+
+        return Mono.empty();
+    }
+
+    /***
+     * Translates the WebClient errors into the domain exceptions used by the blocking adapter
+     * @param productId
+     * @param ex
+     * @param resource  the name of the fetched resource, used in the error message
+     * @return the domain exception
+     */
+    private static Throwable toDomainException(String productId, Throwable ex, String resource) {
+        if (ex instanceof ProductNotFoundException || ex instanceof ExternalServiceException) {
+            return ex;
+        }
+        if (ex instanceof WebClientResponseException.NotFound) {
+            return new ProductNotFoundException(productId);
+        }
+        if (ex instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError()) {
+            return new ExternalServiceException("Client error fetching " + resource, ex);
+        }
+        if (ex instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError()) {
+            return new ExternalServiceException("Server error fetching " + resource, ex);
+        }
+        return new ExternalServiceException("Unexpected error fetching " + resource, ex);
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.domain.model.Deadline;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/***
+ * Upstream calls started without waiting for their answer, so the attempts of a hedged call run on the bulkhead
+ * threads without a thread of their own waiting for each one. Cancelling an attempt aborts its HTTP request
+ */
+interface UpstreamAttempts {
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline
+     * @return the future similar IDs, the fallback when the call is rejected by the resilience layer
+     */
+    CompletableFuture<List<String>> startSimilarProductIds(String productId, Deadline deadline);
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline
+     * @return the future product with its validators, the fallback when the call is rejected by the resilience layer
+     */
+    CompletableFuture<UpstreamProduct> startProductDetail(String productId, Deadline deadline);
+}
@@ -0,0 +1,41 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.config.ProductApiProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+
+/***
+ * One {@link AdaptiveConcurrencyLimiter} per upstream operation, split like the circuit breakers and bulkheads of
+ * {@link UpstreamResilience}: the round trip times of slow product detail calls never lower the limit of the similar
+ * IDs calls, and the other way round.
+ */
+public class UpstreamConcurrencyLimiters implements MeterBinder {
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters;
+
+    public UpstreamConcurrencyLimiters(ProductApiProperties.ConcurrencyLimit properties) {
+        this.limiters = Map.of(
+                UpstreamResilience.SIMILAR_IDS, new AdaptiveConcurrencyLimiter(UpstreamResilience.SIMILAR_IDS, properties),
+                UpstreamResilience.PRODUCT_DETAIL, new AdaptiveConcurrencyLimiter(UpstreamResilience.PRODUCT_DETAIL, properties));
+    }
+
+    /***
+     * @param operation {@link UpstreamResilience#SIMILAR_IDS} or {@link UpstreamResilience#PRODUCT_DETAIL}
+     * @return the limiter of the operation
+     */
+    public AdaptiveConcurrencyLimiter forOperation(String operation) {
+        AdaptiveConcurrencyLimiter limiter = limiters.get(operation);
+        if (limiter == null) {
+            throw new IllegalArgumentException("Unknown upstream operation " + operation);
+        }
+        return limiter;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limiters.values().forEach(limiter -> limiter.bindTo(registry));
+    }
+
+}
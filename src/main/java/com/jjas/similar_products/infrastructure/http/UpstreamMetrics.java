@@ -0,0 +1,78 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/***
+ * Latency histograms of the calls to the upstream product API by operation and outcome, and counts of the fallback
+ * answers. Every call attempt is timed on its own, retries and hedges included, without the time it waited for a
+ * bulkhead thread. The meters are registered up front, so recording a call only looks up an array.
+ */
+@Component
+public class UpstreamMetrics {
+
+    enum Outcome {
+        SUCCESS, NOT_MODIFIED, NOT_FOUND, CLIENT_ERROR, SERVER_ERROR, OVERLOADED, CANCELLED, ERROR;
+
+        private final String tag = name().toLowerCase();
+    }
+
+    private final Map<String, Timer[]> timers;
+
+    private final Map<String, Counter> fallbacks;
+
+    public UpstreamMetrics(MeterRegistry registry) {
+        this.timers = Map.of(
+                UpstreamResilience.SIMILAR_IDS, timers(registry, UpstreamResilience.SIMILAR_IDS),
+                UpstreamResilience.PRODUCT_DETAIL, timers(registry, UpstreamResilience.PRODUCT_DETAIL));
+        this.fallbacks = Map.of(
+                UpstreamResilience.SIMILAR_IDS, fallbacks(registry, UpstreamResilience.SIMILAR_IDS),
+                UpstreamResilience.PRODUCT_DETAIL, fallbacks(registry, UpstreamResilience.PRODUCT_DETAIL));
+    }
+
+    /***
+     * @param operation   {@link UpstreamResilience#SIMILAR_IDS} or {@link UpstreamResilience#PRODUCT_DETAIL}
+     * @param outcome     how the call ended
+     * @param startNanos  the {@link System#nanoTime()} when the call started
+     */
+    void recordCall(String operation, Outcome outcome, long startNanos) {
+        timers.get(operation)[outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /***
+     * @param operation {@link UpstreamResilience#SIMILAR_IDS} or {@link UpstreamResilience#PRODUCT_DETAIL}
+     */
+    void recordFallback(String operation) {
+        fallbacks.get(operation).increment();
+    }
+
+    private static Timer[] timers(MeterRegistry registry, String operation) {
+        Outcome[] outcomes = Outcome.values();
+        Timer[] timers = new Timer[outcomes.length];
+        for (Outcome outcome : outcomes) {
+            timers[outcome.ordinal()] = Timer.builder("upstream.requests")
+                    .description("Calls to the upstream product API")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome.tag)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+        }
+        return timers;
+    }
+
+    private static Counter fallbacks(MeterRegistry registry, String operation) {
+        return Counter.builder("upstream.fallbacks")
+                .description("Upstream calls rejected by the circuit breaker, bulkhead or time limiter and answered by the fallback")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.domain.model.Product;
+
+/***
+ * A product detail as the upstream returned it, with the validators of the response
+ * @param product    the product
+ * @param validators the validators of the response, {@link UpstreamValidators#NONE} when it had none
+ */
+public record UpstreamProduct(Product product, UpstreamValidators validators) {
+
+    /***
+     * @param product a product, null when missing
+     * @return the product without validators, null when missing
+     */
+    public static UpstreamProduct withoutValidators(Product product) {
+        return product == null ? null : new UpstreamProduct(product, UpstreamValidators.NONE);
+    }
+
+    /***
+     * @param upstream an upstream product, null when missing
+     * @return its product, null when missing
+     */
+    static Product productOf(UpstreamProduct upstream) {
+        return upstream == null ? null : upstream.product();
+    }
+
+}
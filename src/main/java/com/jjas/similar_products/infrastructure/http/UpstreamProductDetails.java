@@ -0,0 +1,59 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+
+/***
+ * Product detail calls that also return the validators of the upstream response, so the caching layer can keep them
+ * with the cached product and revalidate it with a conditional request
+ */
+public interface UpstreamProductDetails {
+
+    /***
+     * Wraps a product service without validators, so every refresh fetches the product again
+     * @param service the product service
+     * @return the product details of the service
+     */
+    static UpstreamProductDetails of(ExternalProductService service) {
+        return new UpstreamProductDetails() {
+            @Override
+            public UpstreamProduct fetchUpstreamProductDetail(String productId) {
+                return UpstreamProduct.withoutValidators(service.fetchProductDetail(productId));
+            }
+
+            @Override
+            public UpstreamProduct fetchUpstreamProductDetail(String productId, Deadline deadline) {
+                return UpstreamProduct.withoutValidators(service.fetchProductDetail(productId, deadline));
+            }
+
+            @Override
+            public UpstreamProduct refreshUpstreamProductDetail(String productId, UpstreamProduct current) {
+                return UpstreamProduct.withoutValidators(service.refreshProductDetail(productId, current.product()));
+            }
+        };
+    }
+
+    /***
+     * @param productId
+     * @return the product with its validators, null for a fallback answer
+     */
+    default UpstreamProduct fetchUpstreamProductDetail(String productId) {
+        return fetchUpstreamProductDetail(productId, Deadline.none());
+    }
+
+    /***
+     * @param productId
+     * @param deadline  the request deadline, bounding the upstream call and its retries
+     * @return the product with its validators, null for a fallback answer
+     */
+    UpstreamProduct fetchUpstreamProductDetail(String productId, Deadline deadline);
+
+    /***
+     * @param productId
+     * @param current   the cached product with its validators
+     * @return the current instance when the upstream reports it unchanged, otherwise the new one, null for a fallback
+     * answer
+     */
+    UpstreamProduct refreshUpstreamProductDetail(String productId, UpstreamProduct current);
+
+}
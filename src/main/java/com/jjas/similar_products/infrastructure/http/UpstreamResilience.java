@@ -0,0 +1,277 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/***
+ * Isolates every upstream operation behind its own Resilience4j instances, named after the operation and configured
+ * in application.yml: retry( circuit breaker( time limiter( thread-pool bulkhead( call ) ) ) ).
+ * Slow product detail calls can fill their own bulkhead and open their own breaker, while the similar IDs calls keep
+ * their threads and their closed breaker. A call rejected by the resilience layer (open circuit, full bulkhead or
+ * timeout) is answered by the fallback; any other error reaches the caller.
+ * With virtual threads, every call runs on a new virtual thread instead, behind a semaphore bulkhead of the same name
+ * limiting the calls in flight, so no platform thread is held while the call blocks.
+ */
+@Component
+public class UpstreamResilience implements DisposableBean {
+
+    private static final Logger LOGGER = Logger.getLogger(UpstreamResilience.class.getName());
+
+    public static final String SIMILAR_IDS = "similarIds";
+
+    public static final String PRODUCT_DETAIL = "productDetail";
+
+    private static final List<Class<? extends Throwable>> REJECTIONS =
+            List.of(CallNotPermittedException.class, BulkheadFullException.class, TimeoutException.class);
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Map<String, Guard> guards;
+
+    /***
+     * @param upstreamCallExecutor the virtual threads running the calls, only present when virtual threads are
+     *                             enabled; the thread-pool bulkheads run them otherwise
+     */
+    @Autowired
+    public UpstreamResilience(CircuitBreakerRegistry circuitBreakerRegistry,
+                              ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry,
+                              BulkheadRegistry bulkheadRegistry,
+                              TimeLimiterRegistry timeLimiterRegistry,
+                              RetryRegistry retryRegistry,
+                              @Qualifier("resilienceScheduler") ScheduledExecutorService scheduler,
+                              @Qualifier("upstreamCallExecutor") ObjectProvider<ExecutorService> upstreamCallExecutor) {
+        ExecutorService virtualThreads = upstreamCallExecutor.getIfAvailable();
+        this.scheduler = scheduler;
+        this.guards = Map.of(
+                SIMILAR_IDS, guard(SIMILAR_IDS, circuitBreakerRegistry, threadPoolBulkheadRegistry, bulkheadRegistry,
+                        timeLimiterRegistry, retryRegistry, virtualThreads),
+                PRODUCT_DETAIL, guard(PRODUCT_DETAIL, circuitBreakerRegistry, threadPoolBulkheadRegistry, bulkheadRegistry,
+                        timeLimiterRegistry, retryRegistry, virtualThreads));
+    }
+
+    /***
+     * Runs the calls on the thread-pool bulkheads
+     */
+    public UpstreamResilience(CircuitBreakerRegistry circuitBreakerRegistry,
+                              ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry,
+                              TimeLimiterRegistry timeLimiterRegistry,
+                              RetryRegistry retryRegistry,
+                              ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+        this.guards = Map.of(
+                SIMILAR_IDS, guard(SIMILAR_IDS, circuitBreakerRegistry, threadPoolBulkheadRegistry, null,
+                        timeLimiterRegistry, retryRegistry, null),
+                PRODUCT_DETAIL, guard(PRODUCT_DETAIL, circuitBreakerRegistry, threadPoolBulkheadRegistry, null,
+                        timeLimiterRegistry, retryRegistry, null));
+    }
+
+    /***
+     * Runs the calls on virtual threads, behind the semaphore bulkheads
+     */
+    UpstreamResilience(CircuitBreakerRegistry circuitBreakerRegistry,
+                       BulkheadRegistry bulkheadRegistry,
+                       TimeLimiterRegistry timeLimiterRegistry,
+                       RetryRegistry retryRegistry,
+                       ScheduledExecutorService scheduler,
+                       ExecutorService virtualThreads) {
+        this.scheduler = scheduler;
+        this.guards = Map.of(
+                SIMILAR_IDS, guard(SIMILAR_IDS, circuitBreakerRegistry, null, bulkheadRegistry,
+                        timeLimiterRegistry, retryRegistry, virtualThreads),
+                PRODUCT_DETAIL, guard(PRODUCT_DETAIL, circuitBreakerRegistry, null, bulkheadRegistry,
+                        timeLimiterRegistry, retryRegistry, virtualThreads));
+    }
+
+    /***
+     * Runs an upstream call through the resilience instances of its operation, waiting for the result
+     * @param operation the operation name, {@link #SIMILAR_IDS} or {@link #PRODUCT_DETAIL}
+     * @param call      the upstream call
+     * @param fallback  the answer when the call is rejected by the resilience layer
+     * @return the call result or the fallback
+     */
+    public <T> T execute(String operation, Supplier<T> call, Function<Throwable, T> fallback) {
+        return execute(operation, call, fallback, Deadline.none());
+    }
+
+    /***
+     * Runs an upstream call through the resilience instances of its operation, waiting for the result at most until
+     * the deadline. No attempt or retry is started once the deadline is reached
+     * @param operation the operation name, {@link #SIMILAR_IDS} or {@link #PRODUCT_DETAIL}
+     * @param call      the upstream call
+     * @param fallback  the answer when the call is rejected by the resilience layer
+     * @param deadline  the request deadline
+     * @return the call result or the fallback
+     * @throws DeadlineExceededException when the deadline is reached before the call answered
+     */
+    public <T> T execute(String operation, Supplier<T> call, Function<Throwable, T> fallback, Deadline deadline) {
+        try {
+            return stage(operation, call, deadline).get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new DeadlineExceededException("Deadline reached waiting for " + operation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Interrupted waiting for " + operation);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (isRejection(cause)) {
+                return fallback.apply(cause);
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /***
+     * Starts an upstream call through the resilience instances of its operation, without waiting for it. Cancelling
+     * the returned future aborts the call: see {@link CancellableCall}
+     * @param operation the operation name, {@link #SIMILAR_IDS} or {@link #PRODUCT_DETAIL}
+     * @param call      the upstream call
+     * @param fallback  the answer when the call is rejected by the resilience layer
+     * @param deadline  the request deadline, no attempt or retry is started once it is reached
+     * @return the future call result or fallback
+     */
+    public <T> CompletableFuture<T> start(String operation, Supplier<T> call, Function<Throwable, T> fallback, Deadline deadline) {
+        CancellableCall cancellable = new CancellableCall();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                cancellable.cancel();
+            }
+        });
+        stage(operation, () -> cancellable.run(call), deadline).whenComplete((value, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (isRejection(cause)) {
+                result.complete(fallback.apply(cause));
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+        return result;
+    }
+
+    private <T> CompletableFuture<T> stage(String operation, Supplier<T> call, Deadline deadline) {
+        Guard guard = guards.get(operation);
+        Supplier<CompletionStage<T>> bulkheaded = () -> {
+            if (deadline.isExpired()) {
+                return CompletableFuture.failedFuture(new DeadlineExceededException("Deadline reached before calling " + operation));
+            }
+            try {
+                return guard.submit(call);
+            } catch (BulkheadFullException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        };
+        Supplier<CompletionStage<T>> timed = () -> guard.timeLimiter.executeCompletionStage(scheduler, bulkheaded);
+        Supplier<CompletionStage<T>> broken = () -> guard.circuitBreaker.executeCompletionStage(timed);
+        return guard.retry.executeCompletionStage(scheduler, broken).toCompletableFuture();
+    }
+
+    @Override
+    public void destroy() {
+        for (Guard guard : guards.values()) {
+            if (guard.threadPoolBulkhead == null) {
+                continue;
+            }
+            try {
+                guard.threadPoolBulkhead.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, String.format("Could not close bulkhead %s -> %s", guard.threadPoolBulkhead.getName(), e.getMessage()));
+            }
+        }
+    }
+
+    private static boolean isRejection(Throwable cause) {
+        return REJECTIONS.stream().anyMatch(rejection -> rejection.isInstance(cause));
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static Guard guard(String operation, CircuitBreakerRegistry circuitBreakerRegistry,
+                               ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry, BulkheadRegistry bulkheadRegistry,
+                               TimeLimiterRegistry timeLimiterRegistry, RetryRegistry retryRegistry,
+                               ExecutorService virtualThreads) {
+        return virtualThreads == null
+                ? new Guard(circuitBreakerRegistry.circuitBreaker(operation), threadPoolBulkheadRegistry.bulkhead(operation),
+                        null, null, timeLimiterRegistry.timeLimiter(operation), retryRegistry.retry(operation))
+                : new Guard(circuitBreakerRegistry.circuitBreaker(operation), null, bulkheadRegistry.bulkhead(operation),
+                        virtualThreads, timeLimiterRegistry.timeLimiter(operation), retryRegistry.retry(operation));
+    }
+
+    /***
+     * The instances of an operation, with either a thread-pool bulkhead or a semaphore bulkhead and the virtual
+     * threads running the calls
+     */
+    private record Guard(CircuitBreaker circuitBreaker, ThreadPoolBulkhead threadPoolBulkhead, Bulkhead bulkhead,
+                         ExecutorService virtualThreads, TimeLimiter timeLimiter, Retry retry) {
+
+        /***
+         * Starts a call on the bulkhead
+         * @throws BulkheadFullException when the bulkhead is full
+         */
+        <T> CompletionStage<T> submit(Supplier<T> call) {
+            if (threadPoolBulkhead != null) {
+                return threadPoolBulkhead.executeSupplier(call);
+            }
+            bulkhead.acquirePermission();
+            try {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return call.get();
+                    } finally {
+                        bulkhead.onComplete();
+                    }
+                }, virtualThreads);
+            } catch (RuntimeException e) {
+                bulkhead.releasePermission();
+                throw e;
+            }
+        }
+    }
+}
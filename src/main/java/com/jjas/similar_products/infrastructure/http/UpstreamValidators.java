@@ -0,0 +1,48 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import org.springframework.http.HttpHeaders;
+
+/***
+ * Validators the upstream returned with a product detail, kept with the cached product so its refresh can be a
+ * conditional request
+ * @param etag         the ETag header, null when absent
+ * @param lastModified the Last-Modified header in epoch milliseconds, -1 when absent
+ */
+public record UpstreamValidators(String etag, long lastModified) {
+
+    public static final UpstreamValidators NONE = new UpstreamValidators(null, -1);
+
+    /***
+     * @param headers the response headers of a product detail
+     * @return the validators of the response, {@link #NONE} when it has none
+     */
+    static UpstreamValidators of(HttpHeaders headers) {
+        String etag = headers.getETag();
+        long lastModified;
+        try {
+            lastModified = headers.getLastModified();
+        } catch (IllegalArgumentException e) {
+            lastModified = -1;
+        }
+        return etag == null && lastModified < 0 ? NONE : new UpstreamValidators(etag, lastModified);
+    }
+
+    boolean isPresent() {
+        return this != NONE;
+    }
+
+    /***
+     * @return the If-None-Match and If-Modified-Since headers validating the product detail
+     */
+    HttpHeaders conditionalHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (etag != null) {
+            headers.setIfNoneMatch(etag);
+        }
+        if (lastModified >= 0) {
+            headers.setIfModifiedSince(lastModified);
+        }
+        return headers;
+    }
+
+}
@@ -0,0 +1,7 @@
+package com.jjas.similar_products.infrastructure.http.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String msg) {
+        super(msg);
+    }
+}
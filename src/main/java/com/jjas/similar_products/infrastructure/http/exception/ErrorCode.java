@@ -6,6 +6,8 @@ public enum ErrorCode {
     VALIDATION_ERROR,
     TYPE_MISMATCH,
     UPSTREAM_FAILURE,
+    UPSTREAM_OVERLOADED,
+    DEADLINE_EXCEEDED,
     METHOD_NOT_ALLOWED,
     UNEXPECTED_ERROR
 }
@@ -2,6 +2,7 @@ package com.jjas.similar_products.infrastructure.http.exception;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +17,7 @@ import org.springframework.web.servlet.resource.NoResourceFoundException;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
+@Profile("!reactive")
 public class GlobalExceptionHandler {
 
     /***
@@ -26,9 +28,20 @@ public class GlobalExceptionHandler {
      * @param code application-specific error code to set as the title
      */
     private static void enrichException(ProblemDetail pd, HttpServletRequest req, ErrorCode code) {
+        enrichException(pd, req.getRequestURI(), code);
+    }
+
+    /***
+     * Enriches the ProblemDetail with common metadata (title, path, timestamp, traceId).
+     *
+     * @param pd   the ProblemDetail to enrich
+     * @param path the path of the current request
+     * @param code application-specific error code to set as the title
+     */
+    static void enrichException(ProblemDetail pd, String path, ErrorCode code) {
         pd.setTitle(code.name());
-        pd.setInstance(java.net.URI.create(req.getRequestURI()));
-        pd.setProperty("path", req.getRequestURI());
+        pd.setInstance(java.net.URI.create(path));
+        pd.setProperty("path", path);
         pd.setProperty("timestamp", java.time.OffsetDateTime.now());
         pd.setProperty("code", code.name()); // útil para clientes
         String traceId = org.slf4j.MDC.get("traceId");
@@ -133,6 +146,38 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(pd);
     }
 
+    /***
+     * Handles upstream calls rejected locally because the upstream is saturated and returns a standardized 503
+     * error response, so clients can tell shed load from an upstream failure.
+     *
+     * @param ex  the thrown UpstreamOverloadedException
+     * @param req the current HTTP request
+     * @return a ResponseEntity containing the ProblemDetail for UPSTREAM_OVERLOADED
+     */
+    @ExceptionHandler(UpstreamOverloadedException.class)
+    public ResponseEntity<ProblemDetail> handleUpstreamOverloaded(UpstreamOverloadedException ex, HttpServletRequest req) {
+        ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        enrichException(pd, req, ErrorCode.UPSTREAM_OVERLOADED);
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(pd);
+    }
+
+    /***
+     * Handles requests whose time budget ran out before the similar IDs were known and returns a standardized 504
+     * error response. Once the similar IDs are known, a deadline only shortens the response instead.
+     *
+     * @param ex  the thrown DeadlineExceededException
+     * @param req the current HTTP request
+     * @return a ResponseEntity containing the ProblemDetail for DEADLINE_EXCEEDED
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ProblemDetail> handleDeadlineExceeded(DeadlineExceededException ex, HttpServletRequest req) {
+        ProblemDetail pd = ProblemDetail.forStatusAndDetail(HttpStatus.GATEWAY_TIMEOUT, ex.getMessage());
+        enrichException(pd, req, ErrorCode.DEADLINE_EXCEEDED);
+
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(pd);
+    }
+
     /***
      * Handles cases where no matching handler or resource is found and returns a standardized 404 error response.
      *
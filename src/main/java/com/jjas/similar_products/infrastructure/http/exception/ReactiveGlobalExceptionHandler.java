@@ -0,0 +1,105 @@
+package com.jjas.similar_products.infrastructure.http.exception;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+
+import static com.jjas.similar_products.infrastructure.http.exception.GlobalExceptionHandler.enrichException;
+
+@RestControllerAdvice
+@Profile("reactive")
+public class ReactiveGlobalExceptionHandler {
+
+    /***
+     * Handles the Product Not Found Exception and returns a standardized 404 error response.
+     *
+     * @param ex       the thrown ProductNotFoundException
+     * @param exchange the current server exchange
+     * @return a ResponseEntity containing the ProblemDetail for NOT_FOUND
+     */
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ResponseEntity<ProblemDetail> handleNotFound(ProductNotFoundException ex, ServerWebExchange exchange) {
+        return problem(HttpStatus.NOT_FOUND, ex.getMessage(), exchange, ErrorCode.NOT_FOUND);
+    }
+
+    /***
+     * Handles the Invalid Input Exception and returns a standardized 400 error response.
+     *
+     * @param ex       the thrown InvalidInputException
+     * @param exchange the current server exchange
+     * @return a ResponseEntity containing the ProblemDetail for INVALID_INPUT
+     */
+    @ExceptionHandler(InvalidInputException.class)
+    public ResponseEntity<ProblemDetail> handleInvalidInput(InvalidInputException ex, ServerWebExchange exchange) {
+        return problem(HttpStatus.BAD_REQUEST, ex.getMessage(), exchange, ErrorCode.INVALID_INPUT);
+    }
+
+    /***
+     * Handles failures caused by upstream services and returns a standardized 502 error response.
+     *
+     * @param ex       the thrown ExternalServiceException
+     * @param exchange the current server exchange
+     * @return a ResponseEntity containing the ProblemDetail for UPSTREAM_FAILURE
+     */
+    @ExceptionHandler(ExternalServiceException.class)
+    public ResponseEntity<ProblemDetail> handleUpstream(ExternalServiceException ex, ServerWebExchange exchange) {
+        return problem(HttpStatus.BAD_GATEWAY, ex.getMessage(), exchange, ErrorCode.UPSTREAM_FAILURE);
+    }
+
+    /***
+     * Handles requests whose time budget ran out before the similar IDs were known and returns a standardized 504
+     * error response. Once the similar IDs are known, the deadline only shortens the stream instead.
+     *
+     * @param ex       the thrown DeadlineExceededException
+     * @param exchange the current server exchange
+     * @return a ResponseEntity containing the ProblemDetail for DEADLINE_EXCEEDED
+     */
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<ProblemDetail> handleDeadlineExceeded(DeadlineExceededException ex, ServerWebExchange exchange) {
+        return problem(HttpStatus.GATEWAY_TIMEOUT, ex.getMessage(), exchange, ErrorCode.DEADLINE_EXCEEDED);
+    }
+
+    /***
+     * Handles the framework status errors (no handler, method not allowed...) keeping their status code.
+     *
+     * @param ex       the thrown ResponseStatusException
+     * @param exchange the current server exchange
+     * @return a ResponseEntity containing the ProblemDetail for the matching error code
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ProblemDetail> handleResponseStatus(ResponseStatusException ex, ServerWebExchange exchange) {
+        HttpStatusCode status = ex.getStatusCode();
+        ErrorCode code = switch (status.value()) {
+            case 400 -> ErrorCode.INVALID_INPUT;
+            case 404 -> ErrorCode.NOT_FOUND;
+            case 405 -> ErrorCode.METHOD_NOT_ALLOWED;
+            default -> ErrorCode.UNEXPECTED_ERROR;
+        };
+        return problem(status, ex.getReason() != null ? ex.getReason() : ex.getMessage(), exchange, code);
+    }
+
+    /***
+     * Handles unexpected unhandled exceptions and returns a standardized 500 error response.
+     *
+     * @param ex       the thrown generic Exception
+     * @param exchange the current server exchange
+     * @return a ResponseEntity containing the ProblemDetail for UNEXPECTED_ERROR
+     */
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ProblemDetail> handleGeneric(Exception ex, ServerWebExchange exchange) {
+        return problem(HttpStatus.INTERNAL_SERVER_ERROR, "Unexpected error", exchange, ErrorCode.UNEXPECTED_ERROR);
+    }
+
+    private static ResponseEntity<ProblemDetail> problem(HttpStatusCode status, String detail, ServerWebExchange exchange, ErrorCode code) {
+        ProblemDetail pd = ProblemDetail.forStatusAndDetail(status, detail);
+        enrichException(pd, exchange.getRequest().getPath().value(), code);
+
+        return ResponseEntity.status(status).body(pd);
+    }
+}
@@ -0,0 +1,7 @@
+package com.jjas.similar_products.infrastructure.http.exception;
+
+public class UpstreamOverloadedException extends ExternalServiceException {
+    public UpstreamOverloadedException(String msg) {
+        super(msg, null);
+    }
+}
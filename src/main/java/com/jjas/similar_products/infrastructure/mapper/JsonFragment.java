@@ -0,0 +1,23 @@
+package com.jjas.similar_products.infrastructure.mapper;
+
+/***
+ * The UTF-8 JSON of the response DTO of a product, kept with the product together with a 64-bit FNV-1a hash of it,
+ * so the entity tag of a response is derived from its products without reading their JSON again
+ * @param json the UTF-8 JSON object
+ * @param hash the FNV-1a hash of the JSON
+ */
+public record JsonFragment(byte[] json, long hash) {
+
+    static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    static final long FNV_PRIME = 0x100000001b3L;
+
+    static JsonFragment of(byte[] json) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : json) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        return new JsonFragment(json, hash);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.jjas.similar_products.infrastructure.mapper;
+
+import com.jjas.similar_products.domain.model.Product;
+
+import java.util.function.Function;
+
+/***
+ * Keeps the JSON of the products held by a cache, so a cached product is serialized once however many responses hold
+ * it
+ */
+public interface JsonFragmentCache {
+
+    /***
+     * @param product    a product
+     * @param serializer serializes the product to the JSON of its response DTO
+     * @return the JSON kept for the product when it is the instance held by the cache, otherwise the product
+     * serialized by this call
+     */
+    JsonFragment fragment(Product product, Function<Product, JsonFragment> serializer);
+
+}
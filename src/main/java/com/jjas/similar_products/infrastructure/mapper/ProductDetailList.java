@@ -0,0 +1,121 @@
+package com.jjas.similar_products.infrastructure.mapper;
+
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/***
+ * Immutable list of the response DTOs of some products, built over the products themselves. Read as a list it maps
+ * every product on access, to a new DTO. Written as a JSON array it joins the pre-serialized JSON of every product,
+ * skipping the mapping and Jackson altogether. The fragments are resolved once per list, so the length, the entity
+ * tag and the body of a response serialize a product not held by the cache only once. Concurrent writers of a shared
+ * list may each resolve a fragment, and all of them write the same JSON.
+ */
+public final class ProductDetailList extends AbstractList<ProductDetail> implements RandomAccess {
+
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    private final List<Product> products;
+
+    private final ProductJson productJson;
+
+    private final JsonFragment[] fragments;
+
+    /***
+     * @param products    the products, an immutable list
+     * @param productJson
+     */
+    ProductDetailList(List<Product> products, ProductJson productJson) {
+        this(products, productJson, new JsonFragment[products.size()]);
+    }
+
+    private ProductDetailList(List<Product> products, ProductJson productJson, JsonFragment[] fragments) {
+        this.products = products;
+        this.productJson = productJson;
+        this.fragments = fragments;
+    }
+
+    @Override
+    public ProductDetail get(int index) {
+        return productJson.toDto(products.get(index));
+    }
+
+    @Override
+    public int size() {
+        return products.size();
+    }
+
+    /***
+     * @return a view of the given range, still written from the pre-serialized JSON
+     */
+    @Override
+    public List<ProductDetail> subList(int fromIndex, int toIndex) {
+        return new ProductDetailList(products.subList(fromIndex, toIndex), productJson,
+                Arrays.copyOfRange(fragments, fromIndex, toIndex));
+    }
+
+    /***
+     * @return the length in bytes of the JSON array written by {@link #writeTo(OutputStream)}
+     */
+    public long contentLength() {
+        if (products.isEmpty()) {
+            return EMPTY_ARRAY.length;
+        }
+        long length = 1 + products.size();
+        for (int i = 0; i < products.size(); i++) {
+            length += fragment(i).json().length;
+        }
+        return length;
+    }
+
+    /***
+     * @return a strong entity tag of the JSON array written by {@link #writeTo(OutputStream)}, folding the hashes of
+     * the pre-serialized JSON of the products in order
+     */
+    public String etag() {
+        long hash = JsonFragment.FNV_OFFSET_BASIS;
+        for (int i = 0; i < products.size(); i++) {
+            long fragmentHash = fragment(i).hash();
+            for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+                hash = (hash ^ ((fragmentHash >>> shift) & 0xff)) * JsonFragment.FNV_PRIME;
+            }
+        }
+        return "\"" + Integer.toHexString(products.size()) + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    /***
+     * Writes the JSON array of the products, joining their pre-serialized JSON
+     * @param out the response body
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (products.isEmpty()) {
+            out.write(EMPTY_ARRAY);
+            return;
+        }
+        out.write('[');
+        for (int i = 0; i < products.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(fragment(i).json());
+        }
+        out.write(']');
+    }
+
+    private JsonFragment fragment(int index) {
+        JsonFragment fragment = fragments[index];
+        if (fragment == null) {
+            fragment = productJson.jsonFragment(products.get(index));
+            fragments[index] = fragment;
+        }
+        return fragment;
+    }
+
+}
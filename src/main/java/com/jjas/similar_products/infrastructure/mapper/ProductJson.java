@@ -0,0 +1,99 @@
+package com.jjas.similar_products.infrastructure.mapper;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import com.jjas.similar_products.infrastructure.rest.RequestTiming;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Function;
+
+/***
+ * Serializes every product once into the UTF-8 JSON of its response DTO, with the ObjectMapper of the HTTP layer, and
+ * keeps it in the {@link JsonFragmentCache} with the cached product, together with a hash, which the entity tags of the
+ * responses are derived from. Cached products are the same instances on every request, so their responses are written
+ * by joining those fragments. Products not held by the cache are serialized on every call.
+ */
+@Component
+public class ProductJson {
+
+    private final ProductMapper productMapper;
+
+    private final ObjectWriter writer;
+
+    private final JsonFragmentCache fragments;
+
+    private final Function<Product, JsonFragment> serializer = this::serialize;
+
+    @Autowired
+    public ProductJson(ProductMapper productMapper, ObjectMapper objectMapper, ObjectProvider<JsonFragmentCache> fragments) {
+        this(productMapper, objectMapper, fragments.getIfAvailable(() -> (product, serializer) -> serializer.apply(product)));
+    }
+
+    /***
+     * Serializes every product on every call
+     */
+    public ProductJson(ProductMapper productMapper, ObjectMapper objectMapper) {
+        this(productMapper, objectMapper, (product, serializer) -> serializer.apply(product));
+    }
+
+    /***
+     * Serializes every product once for each product the given cache holds
+     */
+    public ProductJson(ProductMapper productMapper, ObjectMapper objectMapper, JsonFragmentCache fragments) {
+        this.productMapper = productMapper;
+        this.writer = objectMapper.writerFor(ProductDetail.class);
+        this.fragments = fragments;
+    }
+
+    /***
+     * @param products the products, in response order
+     * @return the response DTOs of the products, written from their pre-serialized JSON
+     */
+    public List<ProductDetail> render(List<Product> products) {
+        return new ProductDetailList(List.copyOf(products), this);
+    }
+
+    /***
+     * @param product
+     * @return the UTF-8 JSON object of the response DTO of the product, shared by every response holding it
+     */
+    public byte[] fragment(Product product) {
+        return jsonFragment(product).json();
+    }
+
+    JsonFragment jsonFragment(Product product) {
+        return fragments.fragment(product, serializer);
+    }
+
+    ProductDetail toDto(Product product) {
+        return productMapper.toDto(product);
+    }
+
+    /***
+     * Maps and serializes a product not serialized before, reporting both steps to the timing of the request
+     * @param product
+     * @return the JSON of the response DTO of the product
+     */
+    private JsonFragment serialize(Product product) {
+        RequestTiming timing = RequestTiming.current();
+        try {
+            long start = timing.now();
+            ProductDetail dto = productMapper.toDto(product);
+            timing.mapping(start);
+            start = timing.now();
+            JsonFragment fragment = JsonFragment.of(writer.writeValueAsBytes(dto));
+            timing.serialization(start);
+            return fragment;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Could not serialize product " + product.getId(), e);
+        }
+    }
+
+}
@@ -2,22 +2,38 @@ package com.jjas.similar_products.infrastructure.mapper;
 
 import com.jjas.similar_products.domain.model.Product;
 import com.jjas.similar_products.generated.similar.model.ProductDetail;
-import org.mapstruct.IterableMapping;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @Mapper(componentModel = "spring")
-public interface ProductMapper {
+public abstract class ProductMapper {
 
     @Mapping(target = "id", source = "id")
     @Mapping(target = "name", source = "name")
     @Mapping(target = "price", source = "price")
     @Mapping(target = "availability", source = "availability")
-    ProductDetail toDto(Product p);
+    protected abstract ProductDetail map(Product p);
 
+    /***
+     * @param p the product
+     * @return a new response DTO of the product, null when the product is null
+     */
+    public ProductDetail toDto(Product p) {
+        return p == null ? null : map(p);
+    }
 
-    @IterableMapping(elementTargetType = ProductDetail.class)
-    Set<ProductDetail> toDtoSet(Set<Product> products);
+    public List<ProductDetail> toDtoList(List<Product> products) {
+        if (products == null) {
+            return null;
+        }
+        List<ProductDetail> dtos = new ArrayList<>(products.size());
+        for (Product product : products) {
+            dtos.add(toDto(product));
+        }
+        return Collections.unmodifiableList(dtos);
+    }
 }
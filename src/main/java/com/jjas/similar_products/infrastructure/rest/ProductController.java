@@ -1,32 +1,149 @@
 package com.jjas.similar_products.infrastructure.rest;
 
-import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.config.DeadlineProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
 import com.jjas.similar_products.domain.port.input.ProductUseCase;
 import com.jjas.similar_products.generated.similar.api.ProductApi;
 import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import com.jjas.similar_products.generated.similar.model.SimilarProductsBatchRequest;
+import com.jjas.similar_products.infrastructure.cache.SimilarProductsResponseCache;
+import com.jjas.similar_products.infrastructure.http.exception.InvalidInputException;
+import com.jjas.similar_products.infrastructure.mapper.ProductDetailList;
+import com.jjas.similar_products.infrastructure.mapper.ProductJson;
 import com.jjas.similar_products.infrastructure.mapper.ProductMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 
-import java.util.Set;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/product")
+@Profile("!reactive")
 @RequiredArgsConstructor
 public class ProductController implements ProductApi {
 
+    private static final int MAX_BATCH_SIZE = 100;
+
     private final ProductUseCase productUseCase;
 
     private final ProductMapper productMapper;
 
+    private final ProductJson productJson;
+
+    private final SimilarProductsResponseCache responseCache;
+
+    private final DeadlineProperties deadlineProperties;
+
+    private final ServerTiming serverTiming;
+
+    /***
+     * Returns the similar products with a strong ETag derived from the pre-serialized JSON of the products, so Spring
+     * answers a matching If-None-Match with 304 and no body. A cached response may be kept by clients for as long
+     * as it stays in the response cache; any other response has to be revalidated. A timed request gets the
+     * Server-Timing header when the client asked for it, and its phases are logged. The ETag is computed before the
+     * header, since it serializes the products not serialized before
+     */
     @GetMapping("/{productId}/similar")
-    public ResponseEntity<Set<ProductDetail>> getProductSimilar(@PathVariable String productId) {
-        Set<Product> productList = productUseCase.findSimilarProducts(productId);
-        return ResponseEntity.ok(productMapper.toDtoSet(productList));
+    public ResponseEntity<List<ProductDetail>> getProductSimilar(@PathVariable String productId,
+                                                                 @RequestParam(value = "limit", required = false) Integer limit,
+                                                                 @RequestParam(value = "offset", required = false) Integer offset,
+                                                                 @RequestHeader(value = "X-Request-Timeout", required = false) Integer requestTimeout,
+                                                                 @RequestHeader(value = "X-Server-Timing", required = false) Boolean serverTimingRequested) {
+        Page page = pageOf(offset, limit);
+        Deadline deadline = deadlineProperties.deadlineOf(requestTimeout);
+        boolean requested = Boolean.TRUE.equals(serverTimingRequested);
+        try (RequestTiming timing = serverTiming.start(requested)) {
+            timing.responseCached(true);
+            List<ProductDetail> body = responseCache.get(productId, page,
+                    () -> {
+                        timing.responseCached(false);
+                        return productUseCase.findSimilarProducts(productId, page, deadline, timing);
+                    },
+                    productJson::render);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(((ProductDetailList) body).etag())
+                    .cacheControl(cacheControlOf(productId));
+            if (timing.isEnabled()) {
+                if (requested) {
+                    response.header(ServerTiming.HEADER, serverTiming.header(timing));
+                }
+                serverTiming.log(productId, timing);
+            }
+            return response.body(body);
+        }
+    }
+
+    /***
+     * Streams the similar products as NDJSON or server-sent events, writing every product as soon as its details
+     * arrive. Each product is written before the next one is requested, so a slow client slows down the fan-out
+     * instead of filling the memory of the server
+     */
+    @GetMapping(value = "/{productId}/similar", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<ProductDetail> streamProductSimilar(@PathVariable String productId,
+                                                   @RequestParam(value = "limit", required = false) Integer limit,
+                                                   @RequestParam(value = "offset", required = false) Integer offset,
+                                                   @RequestHeader(value = "X-Request-Timeout", required = false) Integer requestTimeout) {
+        Page page = pageOf(offset, limit);
+        List<ProductDetail> cached = responseCache.getIfPresent(productId);
+        if (cached != null) {
+            return Flux.fromIterable(page.slice(cached));
+        }
+        Deadline deadline = deadlineProperties.deadlineOf(requestTimeout);
+        return productUseCase.streamSimilarProducts(productId, page, deadline)
+                .map(productMapper::toDto);
+    }
+
+    @PostMapping(value = "/similar", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, List<ProductDetail>>> postProductSimilar(@RequestBody SimilarProductsBatchRequest request,
+                                                                           @RequestHeader(value = "X-Request-Timeout", required = false) Integer requestTimeout) {
+        List<String> productIds = request.getProductIds();
+        if (productIds == null || productIds.isEmpty() || productIds.size() > MAX_BATCH_SIZE) {
+            throw new InvalidInputException(String.format("productIds must contain between 1 and %d product IDs", MAX_BATCH_SIZE));
+        }
+        if (productIds.stream().anyMatch(id -> id == null || id.isBlank())) {
+            throw new InvalidInputException("productIds must not contain blank product IDs");
+        }
+
+        Deadline deadline = deadlineProperties.deadlineOf(requestTimeout);
+        Map<String, List<ProductDetail>> body = responseCache.getAll(productIds,
+                missing -> productUseCase.findSimilarProductsBatch(missing, deadline),
+                productJson::render);
+        return ResponseEntity.ok(body);
+    }
+
+    private CacheControl cacheControlOf(String productId) {
+        Duration freshness = responseCache.freshnessOf(productId);
+        return freshness.isZero() ? CacheControl.noCache() : CacheControl.maxAge(freshness);
+    }
+
+    /***
+     * @param offset the offset query parameter, null when absent
+     * @param limit  the limit query parameter, null when absent
+     * @return the requested page of the ranked similar products
+     */
+    static Page pageOf(Integer offset, Integer limit) {
+        if (offset == null && limit == null) {
+            return Page.all();
+        }
+        if ((offset != null && offset < 0) || (limit != null && limit < 1)) {
+            throw new InvalidInputException("offset must be zero or more and limit one or more");
+        }
+        return Page.of(offset == null ? 0 : offset, limit == null ? Integer.MAX_VALUE : limit);
     }
 
 }
@@ -0,0 +1,50 @@
+package com.jjas.similar_products.infrastructure.rest;
+
+import com.jjas.similar_products.infrastructure.mapper.ProductDetailList;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/***
+ * Writes the {@link ProductDetailList} response bodies as JSON by joining the pre-serialized JSON of their products
+ * straight into the response buffer. Spring Boot places it ahead of the Jackson converter, which keeps writing every
+ * other body.
+ */
+@Component
+public class ProductDetailListHttpMessageConverter extends AbstractHttpMessageConverter<ProductDetailList> {
+
+    public ProductDetailListHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ProductDetailList.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected ProductDetailList readInternal(Class<? extends ProductDetailList> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Product detail lists are never read", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(ProductDetailList body, MediaType contentType) {
+        return body.contentLength();
+    }
+
+    @Override
+    protected void writeInternal(ProductDetailList body, HttpOutputMessage outputMessage) throws IOException {
+        body.writeTo(outputMessage.getBody());
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.jjas.similar_products.infrastructure.rest;
+
+import com.jjas.similar_products.config.DeadlineProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
+import com.jjas.similar_products.domain.port.input.ReactiveProductUseCase;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import com.jjas.similar_products.infrastructure.mapper.ProductMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/product")
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveProductController {
+
+    private final ReactiveProductUseCase productUseCase;
+
+    private final ProductMapper productMapper;
+
+    private final DeadlineProperties deadlineProperties;
+
+    /***
+     * The deadline is passed down to every upstream call, so the stream completes with the products resolved by then,
+     * or fails with 504 when the similar IDs were not known in time
+     */
+    @GetMapping(value = "/{productId}/similar",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<ProductDetail> getProductSimilar(@PathVariable String productId,
+                                                 @RequestParam(value = "limit", required = false) Integer limit,
+                                                 @RequestParam(value = "offset", required = false) Integer offset,
+                                                 @RequestHeader(value = "X-Request-Timeout", required = false) Integer requestTimeout) {
+        Page page = ProductController.pageOf(offset, limit);
+        Deadline deadline = deadlineProperties.deadlineOf(requestTimeout);
+        return productUseCase.findSimilarProducts(productId, page, deadline)
+                .map(productMapper::toDto);
+    }
+
+}
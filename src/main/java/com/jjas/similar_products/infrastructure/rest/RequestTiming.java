@@ -0,0 +1,205 @@
+package com.jjas.similar_products.infrastructure.rest;
+
+import com.jjas.similar_products.domain.port.output.RequestPhases;
+
+/***
+ * Phases of a single similar products request: the response cache, the similar IDs lookup, the fan-out of the
+ * product detail lookups with the slowest one, and the mapping and serialization of the products. The controller
+ * passes it to the use case as its {@link RequestPhases}, and binds it to the request thread for the cache and
+ * serialization layers while the request is timed; otherwise they get a shared instance that records nothing and
+ * never reads the clock.
+ */
+public final class RequestTiming implements RequestPhases, AutoCloseable {
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private static final RequestTiming NONE = new RequestTiming(false);
+
+    private final boolean enabled;
+
+    private final long startNanos;
+
+    private Boolean responseCached;
+
+    private long similarIdsNanos = -1;
+
+    private Boolean similarIdsCached;
+
+    private long fanOutNanos = -1;
+
+    private int details;
+
+    private String slowestId;
+
+    private long slowestNanos = -1;
+
+    private long mappingNanos;
+
+    private long serializationNanos;
+
+    private RequestTiming(boolean enabled) {
+        this.enabled = enabled;
+        this.startNanos = enabled ? System.nanoTime() : 0;
+    }
+
+    /***
+     * @return a timing that records nothing
+     */
+    public static RequestTiming none() {
+        return NONE;
+    }
+
+    /***
+     * @return the timing of the request served by the current thread, or an instance recording nothing
+     */
+    public static RequestTiming current() {
+        RequestTiming timing = CURRENT.get();
+        return timing == null ? NONE : timing;
+    }
+
+    /***
+     * Starts timing the request served by the current thread, until the returned timing is closed
+     * @return the timing of the request
+     */
+    public static RequestTiming start() {
+        RequestTiming timing = new RequestTiming(true);
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /***
+     * @return the current time in nanoseconds, or 0 without reading the clock when the request is not timed
+     */
+    @Override
+    public long now() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void responseCached(boolean cached) {
+        if (enabled) {
+            responseCached = cached;
+        }
+    }
+
+    @Override
+    public void similarIds(long startNanos) {
+        if (enabled) {
+            similarIdsNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    public void similarIdsCached(boolean cached) {
+        if (enabled) {
+            similarIdsCached = cached;
+        }
+    }
+
+    /***
+     * Records one product detail lookup of the fan-out, called from the thread running it
+     * @param productId
+     * @param startNanos the time the lookup started, from {@link #now()}
+     */
+    @Override
+    public void detail(String productId, long startNanos) {
+        if (!enabled) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        synchronized (this) {
+            details++;
+            if (elapsed > slowestNanos) {
+                slowestNanos = elapsed;
+                slowestId = productId;
+            }
+        }
+    }
+
+    @Override
+    public void fanOut(long startNanos) {
+        if (enabled) {
+            fanOutNanos = (fanOutNanos < 0 ? 0 : fanOutNanos) + System.nanoTime() - startNanos;
+        }
+    }
+
+    public void mapping(long startNanos) {
+        if (enabled) {
+            mappingNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    public void serialization(long startNanos) {
+        if (enabled) {
+            serializationNanos += System.nanoTime() - startNanos;
+        }
+    }
+
+    public long elapsedNanos() {
+        return enabled ? System.nanoTime() - startNanos : 0;
+    }
+
+    /***
+     * @return whether the response came from the response cache, null when it was not looked up
+     */
+    public Boolean getResponseCached() {
+        return responseCached;
+    }
+
+    /***
+     * @return the duration of the similar IDs lookup, -1 when there was none
+     */
+    public long getSimilarIdsNanos() {
+        return similarIdsNanos;
+    }
+
+    /***
+     * @return whether the similar IDs came from the cache, null when unknown
+     */
+    public Boolean getSimilarIdsCached() {
+        return similarIdsCached;
+    }
+
+    /***
+     * @return the duration of the product detail fan-out, -1 when there was none
+     */
+    public long getFanOutNanos() {
+        return fanOutNanos;
+    }
+
+    public synchronized int getDetails() {
+        return details;
+    }
+
+    public synchronized String getSlowestId() {
+        return slowestId;
+    }
+
+    /***
+     * @return the duration of the slowest product detail lookup, -1 when there was none
+     */
+    public synchronized long getSlowestNanos() {
+        return slowestNanos;
+    }
+
+    public long getMappingNanos() {
+        return mappingNanos;
+    }
+
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    /***
+     * Stops timing the request on the current thread
+     */
+    @Override
+    public void close() {
+        if (enabled && CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.jjas.similar_products.infrastructure.rest;
+
+import com.jjas.similar_products.config.ServerTimingProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/***
+ * Decides which requests are timed and reports their phases, as a Server-Timing response header
+ * (https://www.w3.org/TR/server-timing/) for the clients asking for it, and as a single key=value log record for
+ * every timed request. A request that is not timed only costs the check of its header and a random draw.
+ */
+@Component
+public class ServerTiming {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final Logger LOGGER = Logger.getLogger(ServerTiming.class.getName());
+
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private final boolean enabled;
+
+    private final double sampleRate;
+
+    public ServerTiming(ServerTimingProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.sampleRate = Math.max(0, Math.min(1, properties.getSampleRate()));
+    }
+
+    /***
+     * @param requested whether the client sent the X-Server-Timing header
+     * @return the timing of the request, bound to the current thread, or one recording nothing when the request is
+     * neither requested nor sampled
+     */
+    public RequestTiming start(boolean requested) {
+        if (enabled && (requested || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate))) {
+            return RequestTiming.start();
+        }
+        return RequestTiming.none();
+    }
+
+    /***
+     * @param timing the timing of a request
+     * @return the Server-Timing header value of its phases, in milliseconds
+     */
+    public String header(RequestTiming timing) {
+        StringBuilder header = new StringBuilder(160);
+        if (timing.getResponseCached() != null) {
+            metric(header, "cache", -1, timing.getResponseCached() ? "hit" : "miss");
+        }
+        if (timing.getSimilarIdsNanos() >= 0) {
+            metric(header, "ids", timing.getSimilarIdsNanos(), hitOrMiss(timing.getSimilarIdsCached()));
+        }
+        if (timing.getFanOutNanos() >= 0) {
+            metric(header, "fanout", timing.getFanOutNanos(), timing.getDetails() + " details");
+        }
+        if (timing.getSlowestNanos() >= 0) {
+            metric(header, "slowest", timing.getSlowestNanos(), timing.getSlowestId());
+        }
+        metric(header, "map", timing.getMappingNanos(), null);
+        metric(header, "ser", timing.getSerializationNanos(), null);
+        metric(header, "total", timing.elapsedNanos(), null);
+        return header.toString();
+    }
+
+    /***
+     * Logs the phases of a timed request as a single key=value record, durations in milliseconds
+     * @param productId the requested product
+     * @param timing    the timing of the request
+     */
+    public void log(String productId, RequestTiming timing) {
+        if (!timing.isEnabled() || !LOGGER.isLoggable(Level.INFO)) {
+            return;
+        }
+        LOGGER.log(Level.INFO, String.format(Locale.ROOT,
+                "server-timing productId=%s total=%.3f cache=%s ids=%.3f idsCache=%s fanOut=%.3f details=%d slowestId=%s slowest=%.3f map=%.3f ser=%.3f",
+                productId, millis(timing.elapsedNanos()), hitOrMiss(timing.getResponseCached()),
+                millis(timing.getSimilarIdsNanos()), hitOrMiss(timing.getSimilarIdsCached()),
+                millis(timing.getFanOutNanos()), timing.getDetails(), timing.getSlowestId(),
+                millis(timing.getSlowestNanos()), millis(timing.getMappingNanos()), millis(timing.getSerializationNanos())));
+    }
+
+    /***
+     * Appends a metric, with its duration when not negative and its description when not null. The description is
+     * quoted, so product IDs are written as they are apart from quotes and backslashes
+     */
+    private static void metric(StringBuilder header, String name, long nanos, String description) {
+        if (!header.isEmpty()) {
+            header.append(", ");
+        }
+        header.append(name);
+        if (nanos >= 0) {
+            header.append(";dur=").append(String.format(Locale.ROOT, "%.3f", millis(nanos)));
+        }
+        if (description != null) {
+            header.append(";desc=\"").append(description.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+    }
+
+    private static String hitOrMiss(Boolean cached) {
+        return cached == null ? null : cached ? "hit" : "miss";
+    }
+
+    private static double millis(long nanos) {
+        return nanos < 0 ? -1 : nanos / NANOS_PER_MILLI;
+    }
+
+}
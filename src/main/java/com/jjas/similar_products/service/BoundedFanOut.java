@@ -0,0 +1,207 @@
+package com.jjas.similar_products.service;
+
+import com.jjas.similar_products.config.FanOutProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/***
+ * Runs a blocking task for every element of a collection concurrently, bounding how many tasks of a single call
+ * and of all calls together may be in flight at the same time. Publishes the number of tasks of every call, the
+ * per-request fan-out size, and the tasks in flight.
+ */
+@Component
+public class BoundedFanOut implements MeterBinder {
+
+    private static final Logger LOGGER = Logger.getLogger(BoundedFanOut.class.getName());
+
+    private final Executor executor;
+
+    private final Semaphore globalPermits;
+
+    private final Scheduler scheduler;
+
+    private final int maxInFlightPerRequest;
+
+    private final int maxInFlightGlobal;
+
+    private volatile DistributionSummary fanOutSize;
+
+    public BoundedFanOut(@Qualifier("fanOutExecutor") Executor executor, FanOutProperties properties) {
+        this.executor = executor;
+        this.scheduler = Schedulers.fromExecutor(executor);
+        this.maxInFlightGlobal = Math.max(1, properties.getMaxInFlightGlobal());
+        this.globalPermits = new Semaphore(maxInFlightGlobal);
+        this.maxInFlightPerRequest = Math.max(1, properties.getMaxInFlightPerRequest());
+    }
+
+    /***
+     * Applies the task to every item and waits for all of them to finish
+     * @param items the inputs
+     * @param task  the task to run for each input
+     * @return the results in input order, with null for every task that failed
+     */
+    public <T, R> List<R> map(Collection<T> items, Function<T, R> task) {
+        return map(items, task, Deadline.none());
+    }
+
+    /***
+     * Applies the task to every item and waits for all of them to finish, or for the deadline. Tasks are no longer
+     * started once the deadline is reached, and the ones still running are left behind without being waited for
+     * @param items    the inputs
+     * @param task     the task to run for each input
+     * @param deadline the deadline of the request
+     * @return the results in input order, with null for every task that failed or did not finish in time
+     */
+    public <T, R> List<R> map(Collection<T> items, Function<T, R> task, Deadline deadline) {
+        recordFanOutSize(items.size());
+        Semaphore requestPermits = new Semaphore(maxInFlightPerRequest);
+        List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+
+        for (T item : items) {
+            if (!acquire(requestPermits, deadline)) {
+                break;
+            }
+            boolean acquired;
+            try {
+                acquired = acquire(globalPermits, deadline);
+            } catch (RuntimeException e) {
+                requestPermits.release();
+                throw e;
+            }
+            if (!acquired) {
+                requestPermits.release();
+                break;
+            }
+            futures.add(submit(item, task).whenComplete((result, ex) -> {
+                globalPermits.release();
+                requestPermits.release();
+            }));
+        }
+
+        await(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)), deadline);
+
+        List<R> results = new ArrayList<>(items.size());
+        futures.forEach(future -> results.add(future.getNow(null)));
+        while (results.size() < items.size()) {
+            results.add(null);
+        }
+        if (deadline.isExpired()) {
+            long done = futures.stream().filter(CompletableFuture::isDone).count();
+            LOGGER.log(Level.WARNING, String.format("Fan-out deadline reached with %d of %d tasks done", done, items.size()));
+        }
+        return results;
+    }
+
+    /***
+     * Applies the task to every item, emitting each result as soon as its task finishes. At most the per-request
+     * limit of tasks run at once, and a new task only starts when a result has been consumed downstream, so a slow
+     * consumer holds back the upstream calls instead of buffering their results
+     * @param items the inputs
+     * @param task  the task to run for each input
+     * @return the results in completion order, without the failed or null ones
+     */
+    public <T, R> Flux<R> stream(Collection<T> items, Function<T, R> task) {
+        recordFanOutSize(items.size());
+        return Flux.fromIterable(items)
+                .flatMap(item -> Mono.fromCallable(() -> runWithGlobalPermit(item, task))
+                        .subscribeOn(scheduler)
+                        .onErrorResume(ex -> {
+                            LOGGER.log(Level.WARNING, String.format("Fan-out task failed for %s -> %s", item, ex.getMessage()));
+                            return Mono.empty();
+                        }), maxInFlightPerRequest, 1);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        fanOutSize = DistributionSummary.builder("fanout.size")
+                .description("Tasks of one fan-out, the product details one request looks up at once")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(1000.0)
+                .register(registry);
+        Gauge.builder("fanout.in.flight", globalPermits, permits -> maxInFlightGlobal - permits.availablePermits())
+                .description("Fan-out tasks in flight over all the requests")
+                .register(registry);
+    }
+
+    private void recordFanOutSize(int size) {
+        DistributionSummary summary = fanOutSize;
+        if (summary != null) {
+            summary.record(size);
+        }
+    }
+
+    private <T, R> R runWithGlobalPermit(T item, Function<T, R> task) {
+        acquire(globalPermits, Deadline.none());
+        try {
+            return task.apply(item);
+        } finally {
+            globalPermits.release();
+        }
+    }
+
+    private <T, R> CompletableFuture<R> submit(T item, Function<T, R> task) {
+        try {
+            return CompletableFuture.supplyAsync(() -> task.apply(item), executor)
+                    .exceptionally(ex -> {
+                        LOGGER.log(Level.WARNING, String.format("Fan-out task failed for %s -> %s", item, ex.getMessage()));
+                        return null;
+                    });
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, String.format("Fan-out task rejected for %s -> %s", item, e.getMessage()));
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /***
+     * @return false when the deadline is reached before a permit is available
+     */
+    private static boolean acquire(Semaphore semaphore, Deadline deadline) {
+        try {
+            if (!deadline.isBounded()) {
+                semaphore.acquire();
+                return true;
+            }
+            return semaphore.tryAcquire(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a fan-out slot", e);
+        }
+    }
+
+    /***
+     * Waits for the tasks without cancelling them when the deadline is reached, so their permits are still released
+     */
+    private static void await(CompletableFuture<Void> all, Deadline deadline) {
+        try {
+            all.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // results are read one by one, the unfinished ones being null
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the fan-out tasks", e);
+        }
+    }
+
+}
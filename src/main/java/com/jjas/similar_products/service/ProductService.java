@@ -1,15 +1,30 @@
 package com.jjas.similar_products.service;
 
+import com.jjas.similar_products.config.FanOutProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
 import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarProducts;
 import com.jjas.similar_products.domain.port.input.ProductUseCase;
 import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.domain.port.output.RequestPhases;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 @Service
 public class ProductService implements ProductUseCase {
@@ -18,41 +33,186 @@ public class ProductService implements ProductUseCase {
 
     private final ExternalProductService externalProductService;
 
-    public ProductService(ExternalProductService externalProductService) {
+    private final BoundedFanOut fanOut;
+
+    private final int overFetch;
+
+    public ProductService(ExternalProductService externalProductService, BoundedFanOut fanOut, FanOutProperties fanOutProperties) {
         this.externalProductService = Objects.requireNonNull(externalProductService, "ExternalProductService cannot be null");
+        this.fanOut = Objects.requireNonNull(fanOut, "BoundedFanOut cannot be null");
+        this.overFetch = Math.max(0, fanOutProperties.getOverFetch());
     }
 
     /***
-     * Get a list of related products from a product ID
+     * Get a list of related products from a product ID, ordered by similarity. Only the details of the requested
+     * page are fetched, plus a few extra ones to replace the lookups that fail. They are fetched concurrently, so the
+     * latency follows the slowest single lookup instead of the sum of all of them. When the deadline is reached, the
+     * products retrieved so far are returned. The similar IDs lookup and the fan-out are reported to the phases of the
+     * request.
      * @param productId
-     * @return the list of Products
+     * @param page      the window of the ranked similar products
+     * @param deadline  the request deadline
+     * @param phases    records the lookups of the request
+     * @return the similar IDs and the list of Products that could be retrieved
      */
     @Override
-    public Set<Product> findSimilarProducts(String productId) {
+    public SimilarProducts findSimilarProducts(String productId, Page page, Deadline deadline, RequestPhases phases) {
         Objects.requireNonNull(productId, "Product ID cannot be null");
         LOGGER.log(Level.INFO, String.format("Finding similar products from: " + productId));
 
-        Set<String> similarProductIds = externalProductService.fetchSimilarProductIds(productId);
+        long similarIdsStart = phases.now();
+        List<String> similarProductIds = externalProductService.fetchSimilarProductIds(productId, deadline);
+        phases.similarIds(similarIdsStart);
+        List<String> candidates = page.getOffset() >= similarProductIds.size()
+                ? List.of()
+                : similarProductIds.subList(page.getOffset(), similarProductIds.size());
+
+        List<Product> products = new ArrayList<>();
+        long fanOutStart = phases.now();
+        int next = 0;
+        while (products.size() < page.getLimit() && next < candidates.size() && !deadline.isExpired()) {
+            long wanted = (long) page.getLimit() - products.size() + (page.isAll() ? 0 : overFetch);
+            int end = (int) Math.min(candidates.size(), next + wanted);
+            fanOut.map(candidates.subList(next, end), id -> fetchProduct(id, deadline, phases), deadline).stream()
+                    .filter(Objects::nonNull)
+                    .forEach(products::add);
+            next = end;
+        }
+        if (next > 0) {
+            phases.fanOut(fanOutStart);
+        }
 
-        return similarProductIds.stream()
-                .map(this::fetchProduct)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        List<Product> window = products.size() > page.getLimit() ? products.subList(0, page.getLimit()) : products;
+        return new SimilarProducts(productId, similarProductIds, List.copyOf(window));
+    }
+
+    /***
+     * Stream the related products of a product ID. Product details are fetched concurrently and emitted as soon as
+     * each one arrives, so a slow product only delays itself.
+     * @param productId
+     * @param page      the window of the ranked similar products
+     * @param deadline  the request deadline
+     * @return the Products that could be retrieved, in the order they arrive
+     */
+    @Override
+    public Flux<Product> streamSimilarProducts(String productId, Page page, Deadline deadline) {
+        Objects.requireNonNull(productId, "Product ID cannot be null");
+        LOGGER.log(Level.INFO, String.format("Streaming similar products from: " + productId));
+
+        List<String> similarProductIds = externalProductService.fetchSimilarProductIds(productId, deadline);
+        List<String> candidates = page.isAll()
+                ? similarProductIds
+                : Page.of(page.getOffset(), (int) Math.min(Integer.MAX_VALUE, (long) page.getLimit() + overFetch)).slice(similarProductIds);
+
+        Flux<Product> products = fanOut.stream(candidates, id -> fetchProduct(id, deadline)).take(page.getLimit());
+        return deadline.isBounded() ? products.take(deadline.remaining()) : products;
+    }
+
+    /***
+     * Get the related products of several products. The similar IDs of all of them are fetched first, then every
+     * distinct product detail is fetched once, however many of the requested products it is similar to. Products not
+     * found upstream are left out; any other failure to get similar IDs fails the whole batch, as it fails the single
+     * product lookup.
+     * @param productIds
+     * @param deadline   the request deadline
+     * @return the similar products by product ID, in request order
+     * @throws DeadlineExceededException when the deadline is reached before all the similar IDs are known
+     */
+    @Override
+    public Map<String, SimilarProducts> findSimilarProductsBatch(List<String> productIds, Deadline deadline) {
+        Objects.requireNonNull(productIds, "Product IDs cannot be null");
+        List<String> distinctIds = List.copyOf(new LinkedHashSet<>(productIds));
+        LOGGER.log(Level.INFO, String.format("Finding similar products of %d products", distinctIds.size()));
+
+        Set<String> notFound = ConcurrentHashMap.newKeySet();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<List<String>> similarIds = fanOut.map(distinctIds, id -> fetchSimilarIds(id, deadline, notFound, failure), deadline);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        for (int i = 0; i < distinctIds.size(); i++) {
+            if (similarIds.get(i) == null && !notFound.contains(distinctIds.get(i))) {
+                throw new DeadlineExceededException("Deadline reached before the similar IDs of " + distinctIds.get(i) + " were known");
+            }
+        }
+
+        Set<String> detailIds = new LinkedHashSet<>();
+        similarIds.stream().filter(Objects::nonNull).forEach(detailIds::addAll);
+        List<String> distinctDetailIds = List.copyOf(detailIds);
+        List<Product> details = fanOut.map(distinctDetailIds, id -> fetchProduct(id, deadline), deadline);
+
+        Map<String, Product> productsById = new HashMap<>();
+        for (int i = 0; i < distinctDetailIds.size(); i++) {
+            if (details.get(i) != null) {
+                productsById.put(distinctDetailIds.get(i), details.get(i));
+            }
+        }
+
+        Map<String, SimilarProducts> result = new LinkedHashMap<>();
+        for (int i = 0; i < distinctIds.size(); i++) {
+            List<String> ids = similarIds.get(i);
+            if (ids == null) {
+                continue;
+            }
+            List<Product> products = ids.stream()
+                    .map(productsById::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            result.put(distinctIds.get(i), new SimilarProducts(distinctIds.get(i), ids, products));
+        }
+        return result;
+    }
+
+    /***
+     * Fetch the similar IDs of a product of a batch
+     * @param productId
+     * @param deadline  the request deadline
+     * @param notFound  collects the products not found upstream
+     * @param failure   keeps the first other failure, which fails the batch
+     * @return the similar IDs, or null when they could not be retrieved
+     */
+    private List<String> fetchSimilarIds(String productId, Deadline deadline, Set<String> notFound,
+                                         AtomicReference<RuntimeException> failure) {
+        try {
+            return externalProductService.fetchSimilarProductIds(productId, deadline);
+        } catch (ProductNotFoundException ex) {
+            notFound.add(productId);
+            return null;
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, String.format("Error retrieving similar IDs: %s -> %s", productId, ex.getMessage()));
+            failure.compareAndSet(null, ex);
+            return null;
+        }
     }
 
     /***
      * Fetch a product by its ID
      * @param productId
+     * @param deadline  the request deadline
      * @return a Product
      */
-    private Product fetchProduct(String productId) {
+    private Product fetchProduct(String productId, Deadline deadline) {
+        return fetchProduct(productId, deadline, RequestPhases.none());
+    }
+
+    /***
+     * Fetch a product by its ID, reporting the lookup to the phases of the request
+     * @param productId
+     * @param deadline  the request deadline
+     * @param phases    records the lookups of the request
+     * @return a Product, or null when it could not be retrieved
+     */
+    private Product fetchProduct(String productId, Deadline deadline, RequestPhases phases) {
+        long start = phases.now();
         try {
             LOGGER.log(Level.INFO, String.format("Finding product detail of " + productId));
 
-            return externalProductService.fetchProductDetail(productId);
+            return externalProductService.fetchProductDetail(productId, deadline);
         } catch (Exception ex) {
             LOGGER.log(Level.WARNING, String.format("Error retrieving product: %s -> %s", productId, ex.getMessage()));
             return null;
+        } finally {
+            phases.detail(productId, start);
         }
     }
 
@@ -0,0 +1,76 @@
+package com.jjas.similar_products.service;
+
+import com.jjas.similar_products.config.FanOutProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.port.input.ReactiveProductUseCase;
+import com.jjas.similar_products.domain.port.output.ReactiveExternalProductService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+@Service
+@Profile("reactive")
+public class ReactiveProductService implements ReactiveProductUseCase {
+
+    private static final Logger LOGGER = Logger.getLogger(ReactiveProductService.class.getName());
+
+    private final ReactiveExternalProductService externalProductService;
+
+    private final int maxInFlightPerRequest;
+
+    private final int overFetch;
+
+    public ReactiveProductService(ReactiveExternalProductService externalProductService, FanOutProperties fanOutProperties) {
+        this.externalProductService = Objects.requireNonNull(externalProductService, "ReactiveExternalProductService cannot be null");
+        this.maxInFlightPerRequest = Math.max(1, fanOutProperties.getMaxInFlightPerRequest());
+        this.overFetch = Math.max(0, fanOutProperties.getOverFetch());
+    }
+
+    /***
+     * Get the related products from a product ID without blocking. Product details are requested concurrently,
+     * up to the configured in-flight limit per request, and the ones that fail are skipped. Only the details of the
+     * requested page are fetched, plus a few extra ones to replace the lookups that fail. Every upstream call and
+     * retry only gets the time left before the deadline.
+     * @param productId
+     * @param page      the window of the ranked similar products
+     * @param deadline  the request deadline
+     * @return the Products, ordered by similarity
+     */
+    @Override
+    public Flux<Product> findSimilarProducts(String productId, Page page, Deadline deadline) {
+        Objects.requireNonNull(productId, "Product ID cannot be null");
+        LOGGER.log(Level.INFO, String.format("Finding similar products from: " + productId));
+
+        return externalProductService.fetchSimilarProductIds(productId, deadline)
+                .map(ids -> page.isAll()
+                        ? ids
+                        : Page.of(page.getOffset(), (int) Math.min(Integer.MAX_VALUE, (long) page.getLimit() + overFetch)).slice(ids))
+                .flatMapMany(Flux::fromIterable)
+                .flatMapSequential(id -> fetchProduct(id, deadline), maxInFlightPerRequest)
+                .take(page.getLimit());
+    }
+
+    /***
+     * Fetch a product by its ID
+     * @param productId
+     * @param deadline  the request deadline
+     * @return the Product, or empty when it could not be retrieved
+     */
+    private Mono<Product> fetchProduct(String productId, Deadline deadline) {
+        LOGGER.log(Level.INFO, String.format("Finding product detail of " + productId));
+
+        return externalProductService.fetchProductDetail(productId, deadline)
+                .onErrorResume(ex -> {
+                    LOGGER.log(Level.WARNING, String.format("Error retrieving product: %s -> %s", productId, ex.getMessage()));
+                    return Mono.empty();
+                });
+    }
+
+}
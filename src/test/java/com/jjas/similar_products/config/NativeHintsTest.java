@@ -0,0 +1,29 @@
+package com.jjas.similar_products.config;
+
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsTest {
+
+    @Test
+    @DisplayName("the generated models read and written by Jackson are registered for reflection")
+    void shouldRegisterTheGeneratedModels() {
+        //GIVEN
+        RuntimeHints hints = new RuntimeHints();
+
+        //WHEN
+        new NativeHints().registerHints(hints, getClass().getClassLoader());
+
+        //THEN
+        assertThat(RuntimeHintsPredicates.reflection().onType(ProductDetail.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(ProductDetail.class, "getName")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection()
+                .onMethod(com.jjas.similar_products.generated.external.model.ProductDetail.class, "setPrice")).accepts(hints);
+    }
+
+}
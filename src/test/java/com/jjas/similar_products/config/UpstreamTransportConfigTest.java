@@ -0,0 +1,84 @@
+package com.jjas.similar_products.config;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.jjas.similar_products.infrastructure.http.ConnectionReuseMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamTransportConfigTest {
+
+    @RegisterExtension
+    static WireMockExtension wm = WireMockExtension.newInstance()
+            .options(WireMockConfiguration.wireMockConfig().dynamicPort())
+            .build();
+
+    private final UpstreamTransportConfig config = new UpstreamTransportConfig();
+
+    private final ConnectionReuseMetrics metrics = new ConnectionReuseMetrics();
+
+    private final ProductApiProperties properties = new ProductApiProperties();
+
+    private PoolingHttpClientConnectionManager connectionManager;
+
+    @BeforeEach
+    void setUp() {
+        wm.stubFor(get(urlPathEqualTo("/product/1")).willReturn(okJson("{\"id\":\"1\"}")));
+        connectionManager = config.upstreamConnectionManager(properties, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionManager.close();
+    }
+
+    @Test
+    @DisplayName("apache transport reuses keep-alive connections and reports it")
+    void shouldReuseConnectionsWithApacheTransport() {
+        //GIVEN
+        properties.setTransport(ProductApiProperties.Transport.APACHE);
+        RestTemplate restTemplate = new RestTemplate(config.upstreamRequestFactory(properties, connectionManager, metrics));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        config.upstreamConnectionPoolMetrics(connectionManager).bindTo(registry);
+
+        //WHEN
+        for (int i = 0; i < 5; i++) {
+            restTemplate.getForObject(wm.baseUrl() + "/product/1", String.class);
+        }
+
+        //THEN
+        assertThat(metrics.getRequests()).isEqualTo(5);
+        assertThat(metrics.getConnectionsOpened()).isEqualTo(1);
+        assertThat(registry.get("upstream.http.connections.reuse.ratio").gauge().value()).isEqualTo(0.8);
+        assertThat(registry.get("httpcomponents.httpclient.pool.total.max").gauge().value()).isEqualTo(200);
+    }
+
+    @Test
+    @DisplayName("transport is selected by configuration")
+    void shouldSelectTransportFromProperties() {
+        properties.setTransport(ProductApiProperties.Transport.JDK);
+        assertThat(config.upstreamRequestFactory(properties, connectionManager, metrics))
+                .isInstanceOf(JdkClientHttpRequestFactory.class);
+
+        properties.setTransport(ProductApiProperties.Transport.SIMPLE);
+        assertThat(config.upstreamRequestFactory(properties, connectionManager, metrics))
+                .isInstanceOf(SimpleClientHttpRequestFactory.class);
+
+        properties.setTransport(ProductApiProperties.Transport.APACHE);
+        assertThat(config.upstreamRequestFactory(properties, connectionManager, metrics))
+                .isInstanceOf(HttpComponentsClientHttpRequestFactory.class);
+    }
+}
@@ -0,0 +1,102 @@
+package com.jjas.similar_products.domain.model;
+
+import com.jjas.similar_products.generated.external.model.ProductDetail;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ProductTest.class.getName());
+
+    @Test
+    @DisplayName("price and availability are read back as they were given, unknown ones included")
+    void shouldKeepPriceAndAvailability() {
+        //GIVEN
+        Product product = new Product("1", "Shirt", new BigDecimal("12.30"), false);
+        Product incomplete = new Product("2", null, null, null);
+
+        //THEN
+        assertThat(product.getPrice()).isEqualByComparingTo("12.30").hasToString("12.30");
+        assertThat(product.getUnscaledPrice()).isEqualTo(1230);
+        assertThat(product.getPriceScale()).isEqualTo(2);
+        assertThat(product.getAvailability()).isFalse();
+        assertThat(incomplete.hasPrice()).isFalse();
+        assertThat(incomplete.getPrice()).isNull();
+        assertThat(incomplete.getAvailability()).isNull();
+    }
+
+    @Test
+    @DisplayName("prices that do not fit in a scaled long are kept as given")
+    void shouldKeepPricesOutOfRange() {
+        //GIVEN
+        BigDecimal large = new BigDecimal("123456789012345678901234.5");
+        BigDecimal tiny = new BigDecimal("1E-200");
+
+        //WHEN
+        Product product = new Product("1", "Shirt", large, true);
+        Product tinyProduct = new Product("2", "Dress", tiny, true);
+
+        //THEN
+        assertThat(product.getPrice()).isEqualTo(large);
+        assertThat(product.hasPrice()).isTrue();
+        assertThat(product.hasCompactPrice()).isFalse();
+        assertThat(tinyProduct.getPrice()).isEqualTo(tiny);
+        assertThat(new Product("3", "Boots", BigDecimal.TEN, true).hasCompactPrice()).isTrue();
+    }
+
+    @Test
+    @DisplayName("renaming a product copies it, unless the name is the same instance")
+    void shouldCopyWhenRenamed() {
+        //GIVEN
+        Product product = new Product("1", "Shirt", new BigDecimal("12.30"), false);
+        String name = new String("Shirt");
+
+        //WHEN
+        Product renamed = product.withName(name);
+
+        //THEN
+        assertThat(product.withName(product.getName())).isSameAs(product);
+        assertThat(renamed).isNotSameAs(product);
+        assertThat(renamed.getName()).isSameAs(name);
+        assertThat(renamed.getPrice()).isEqualByComparingTo("12.30");
+        assertThat(renamed.getAvailability()).isFalse();
+        assertThat(product.getName()).isNotSameAs(name);
+    }
+
+    @Test
+    @DisplayName("100 cached products sharing 10 names take at least 48 bytes less each than the BigDecimal bean")
+    void shouldTakeLessHeapThanABigDecimalBean() {
+        //GIVEN
+        List<ProductDetail> beans = new ArrayList<>();
+        List<Product> products = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            names.add("Product name " + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            String name = new String(names.get(i % 10));
+            BigDecimal price = new BigDecimal(String.format("%d.99", i));
+            beans.add(new ProductDetail().id(String.valueOf(i)).name(name).price(price).availability(i % 2 == 0));
+            products.add(new Product(String.valueOf(i), names.get(i % 10), price, i % 2 == 0));
+        }
+
+        //WHEN
+        long beanBytes = GraphLayout.parseInstance(beans.toArray()).totalSize();
+        long productBytes = GraphLayout.parseInstance(products.toArray()).totalSize();
+        LOGGER.log(Level.INFO, String.format("100 products: BigDecimal bean %d bytes, Product %d bytes, %d bytes per product saved",
+                beanBytes, productBytes, (beanBytes - productBytes) / 100));
+
+        //THEN
+        assertThat((beanBytes - productBytes) / 100).isGreaterThanOrEqualTo(48);
+    }
+
+}
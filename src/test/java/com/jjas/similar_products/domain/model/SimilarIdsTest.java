@@ -0,0 +1,72 @@
+package com.jjas.similar_products.domain.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SimilarIdsTest {
+
+    private static final Logger LOGGER = Logger.getLogger(SimilarIdsTest.class.getName());
+
+    @Test
+    @DisplayName("numeric IDs are packed and read back in rank order")
+    void shouldKeepNumericIdsInOrder() {
+        //GIVEN
+        List<String> ids = List.of("42", "7", "0", "123456789012345678");
+
+        //WHEN
+        SimilarIds similarIds = SimilarIds.of(ids);
+
+        //THEN
+        assertThat(similarIds).containsExactly("42", "7", "0", "123456789012345678");
+        assertThat(similarIds).isEqualTo(ids);
+        assertThat(similarIds.dictionarySize()).isZero();
+    }
+
+    @Test
+    @DisplayName("non canonical numbers and other IDs fall back to the dictionary")
+    void shouldKeepOtherIdsInTheDictionary() {
+        //GIVEN
+        List<String> ids = List.of("2", "007", "sku-9", "-3", "1234567890123456789", "3");
+
+        //WHEN
+        SimilarIds similarIds = SimilarIds.of(ids);
+
+        //THEN
+        assertThat(similarIds).containsExactly("2", "007", "sku-9", "-3", "1234567890123456789", "3");
+        assertThat(similarIds.dictionarySize()).isEqualTo(4);
+        assertThat(similarIds.indexOf("sku-9")).isEqualTo(2);
+        assertThatThrownBy(() -> similarIds.get(6)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> similarIds.add("4")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    @DisplayName("heap footprint of 20 numeric IDs is well below the generated client Set")
+    void shouldTakeLessHeapThanASetOfStrings() {
+        //GIVEN
+        Set<String> current = new LinkedHashSet<>();
+        IntStream.range(0, 20).forEach(i -> current.add(String.valueOf(1_000_000 + i * 37)));
+
+        //WHEN
+        long setBytes = GraphLayout.parseInstance(current).totalSize();
+        long listBytes = GraphLayout.parseInstance(List.copyOf(current)).totalSize();
+        long compactBytes = GraphLayout.parseInstance(SimilarIds.of(current)).totalSize();
+        LOGGER.log(Level.INFO, String.format("20 similar IDs: LinkedHashSet %d bytes, List %d bytes, SimilarIds %d bytes",
+                setBytes, listBytes, compactBytes));
+
+        //THEN
+        assertThat(compactBytes * 4).isLessThan(setBytes);
+        assertThat(compactBytes).isLessThan(listBytes);
+    }
+
+}
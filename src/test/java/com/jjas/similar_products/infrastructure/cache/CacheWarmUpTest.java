@@ -0,0 +1,223 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.infrastructure.http.UpstreamValidators;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmUpTest {
+
+    private static final Logger LOGGER = Logger.getLogger(CacheWarmUpTest.class.getName());
+
+    private static final int PRODUCTS = 200;
+
+    private static final int FIRST_MINUTE_REQUESTS = 2_000;
+
+    @Mock
+    ExternalProductService delegate;
+
+    @TempDir
+    Path directory;
+
+    private final ExecutorService loaderExecutor = Executors.newFixedThreadPool(4);
+
+    private ProductCacheProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ProductCacheProperties();
+        properties.getWarmUp().setEnabled(true);
+        properties.getWarmUp().setSnapshotFile(directory.resolve("snapshot.bin").toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        loaderExecutor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("a restart restored from snapshot serves the first minute from cache, unlike a cold start")
+    void shouldStartWarmFromSnapshot() {
+        //GIVEN
+        when(delegate.fetchProductDetail(anyString())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        CachingProductApiAdapter previousRun = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        for (int i = 0; i < PRODUCTS; i++) {
+            previousRun.fetchProductDetail(String.valueOf(i));
+        }
+        new CacheWarmUp(previousRun, properties).writeSnapshot();
+        clearInvocations(delegate);
+
+        //WHEN
+        CachingProductApiAdapter cold = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        double coldHitRate = firstMinuteHitRate(cold);
+
+        CachingProductApiAdapter warm = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        CacheWarmUp.WarmUpResult result = new CacheWarmUp(warm, properties).warmUp();
+        clearInvocations(delegate);
+        double warmHitRate = firstMinuteHitRate(warm);
+
+        //THEN
+        LOGGER.log(Level.INFO, String.format("Warm-up of %d entries took %d ms; first minute hit rate cold=%.3f warm=%.3f",
+                result.restored(), result.elapsed().toMillis(), coldHitRate, warmHitRate));
+        assertThat(result.restored()).isEqualTo(PRODUCTS);
+        assertThat(result.elapsed()).isLessThan(Duration.ofSeconds(5));
+        assertThat(warmHitRate).isEqualTo(1.0);
+        assertThat(warmHitRate).isGreaterThan(coldHitRate);
+        verify(delegate, never()).fetchProductDetail(anyString());
+    }
+
+    @Test
+    @DisplayName("hot product IDs and their similar products are prefetched with bounded concurrency")
+    void shouldPrefetchHotKeysWithBoundedConcurrency() throws Exception {
+        //GIVEN
+        Path hotKeys = Files.writeString(directory.resolve("hot-keys.txt"), "# hottest first\n1\n2\n\n3\n4\n5\n6\n");
+        properties.getWarmUp().setHotKeysFile(hotKeys.toString());
+        properties.getWarmUp().setConcurrency(2);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(delegate.fetchSimilarProductIds(anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return List.of("10" + invocation.getArgument(0));
+        });
+        when(delegate.fetchProductDetail(anyString())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+
+        //WHEN
+        CacheWarmUp.WarmUpResult result = new CacheWarmUp(adapter, properties).warmUp();
+
+        //THEN
+        assertThat(result.prefetched()).isEqualTo(6);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(2);
+        assertThat(adapter.getSimilarIdsCache().synchronous().estimatedSize()).isEqualTo(6);
+        assertThat(adapter.getProductDetailsCache().synchronous().getIfPresent("103")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("snapshots older than the maximum age are ignored")
+    void shouldIgnoreStaleSnapshot() {
+        //GIVEN
+        when(delegate.fetchProductDetail(anyString())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        CachingProductApiAdapter previousRun = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        previousRun.fetchProductDetail("1");
+        new CacheWarmUp(previousRun, properties).writeSnapshot();
+        properties.getWarmUp().setSnapshotMaxAge(Duration.ZERO);
+
+        //WHEN
+        CachingProductApiAdapter restarted = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        CacheWarmUp.WarmUpResult result = new CacheWarmUp(restarted, properties).warmUp();
+
+        //THEN
+        assertThat(result.restored()).isZero();
+        assertThat(restarted.getProductDetailsCache().synchronous().estimatedSize()).isZero();
+    }
+
+    @Test
+    @DisplayName("snapshot entries keep the lifetime they had left, and the expired or undecodable ones are skipped")
+    void shouldSkipExpiredAndUndecodableEntries() throws Exception {
+        //GIVEN
+        Instant now = Instant.now();
+        ProductCodec codec = new ProductCodec();
+        Map<String, CacheSnapshot.Entry> entries = new LinkedHashMap<>();
+        entries.put("1", new CacheSnapshot.Entry(codec.encode(new CachedProduct(product("1"), UpstreamValidators.NONE)), now.minus(Duration.ofMinutes(11)).toEpochMilli()));
+        entries.put("2", new CacheSnapshot.Entry(new byte[]{1, 2}, now.toEpochMilli()));
+        entries.put("3", new CacheSnapshot.Entry(codec.encode(new CachedProduct(product("3"), UpstreamValidators.NONE)), now.minus(Duration.ofMinutes(9)).toEpochMilli()));
+        new CacheSnapshot(now, Map.of(ProductCacheProperties.PRODUCT_DETAILS, entries))
+                .writeTo(Path.of(properties.getWarmUp().getSnapshotFile()));
+
+        //WHEN
+        CachingProductApiAdapter restarted = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        int restored = new CacheWarmUp(restarted, properties).restoreSnapshot();
+
+        //THEN
+        assertThat(restored).isEqualTo(1);
+        assertThat(restarted.getProductDetailsCache().synchronous().asMap()).containsOnlyKeys("3");
+        assertThat(restarted.getProductDetailsCache().synchronous().policy().expireVariably()
+                .flatMap(expiration -> expiration.getExpiresAfter("3")))
+                .hasValueSatisfying(remaining -> assertThat(remaining).isBetween(Duration.ofSeconds(50), Duration.ofMinutes(1)));
+    }
+
+    @Test
+    @DisplayName("restored products share their interned names with the products loaded from upstream")
+    void shouldInternRestoredNames() throws Exception {
+        //GIVEN
+        Instant now = Instant.now();
+        new CacheSnapshot(now, Map.of(ProductCacheProperties.PRODUCT_DETAILS, Map.of("1", new CacheSnapshot.Entry(
+                new ProductCodec().encode(new CachedProduct(product("1"), UpstreamValidators.NONE)), now.toEpochMilli()))))
+                .writeTo(Path.of(properties.getWarmUp().getSnapshotFile()));
+        when(delegate.fetchProductDetail("2")).thenReturn(new Product("2", new String("Product 1"), BigDecimal.ONE, true));
+        CachingProductApiAdapter restarted = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        new CacheWarmUp(restarted, properties).restoreSnapshot();
+
+        //WHEN
+        Product loaded = restarted.fetchProductDetail("2");
+
+        //THEN
+        assertThat(loaded.getName()).isSameAs(restarted.fetchProductDetail("1").getName());
+    }
+
+    @Test
+    @DisplayName("a snapshot keeps the time its entries were written to the cache")
+    void shouldSnapshotWriteTimes() throws Exception {
+        //GIVEN
+        when(delegate.fetchProductDetail(anyString())).thenAnswer(invocation -> product(invocation.getArgument(0)));
+        CachingProductApiAdapter previousRun = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        long before = System.currentTimeMillis();
+        previousRun.fetchProductDetail("1");
+
+        //WHEN
+        new CacheWarmUp(previousRun, properties).writeSnapshot();
+
+        //THEN
+        CacheSnapshot snapshot = CacheSnapshot.readFrom(Path.of(properties.getWarmUp().getSnapshotFile()));
+        assertThat(snapshot.entriesOf(ProductCacheProperties.PRODUCT_DETAILS).get("1").writtenAt())
+                .isBetween(before - 1_000, snapshot.getCreatedAt().toEpochMilli());
+    }
+
+    /***
+     * Replays the traffic of the first minute after startup, uniformly spread over the known products
+     */
+    private static double firstMinuteHitRate(CachingProductApiAdapter adapter) {
+        Random random = new Random(42);
+        for (int i = 0; i < FIRST_MINUTE_REQUESTS; i++) {
+            adapter.fetchProductDetail(String.valueOf(random.nextInt(PRODUCTS)));
+        }
+        return adapter.getProductDetailsCache().synchronous().stats().hitRate();
+    }
+
+    private static Product product(String id) {
+        return new Product(id, "Product " + id, new BigDecimal("9.99"), true);
+    }
+}
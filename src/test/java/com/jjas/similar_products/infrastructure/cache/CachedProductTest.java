@@ -0,0 +1,46 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.infrastructure.http.UpstreamValidators;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragment;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachedProductTest {
+
+    @Test
+    @DisplayName("the JSON is built once, from the cached product")
+    void shouldKeepTheJson() {
+        //GIVEN
+        Product product = new Product("1", "Shirt", BigDecimal.TEN, true);
+        CachedProduct cached = new CachedProduct(product, UpstreamValidators.NONE);
+
+        //WHEN
+        JsonFragment json = cached.json(p -> new JsonFragment(p.getId().getBytes(StandardCharsets.UTF_8), 1L));
+
+        //THEN
+        assertThat(cached.json(p -> new JsonFragment(new byte[0], 0L))).isSameAs(json);
+        assertThat(json.json()).isEqualTo("1".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("the upstream form carries the product and its validators, to revalidate it")
+    void shouldRevalidateWithItsValidators() {
+        //GIVEN
+        UpstreamValidators validators = new UpstreamValidators("\"v1\"", -1);
+        Product product = new Product("1", "Shirt", BigDecimal.TEN, true);
+
+        //WHEN
+        CachedProduct cached = new CachedProduct(product, validators);
+
+        //THEN
+        assertThat(cached.upstream().product()).isSameAs(product);
+        assertThat(cached.upstream().validators()).isSameAs(validators);
+    }
+
+}
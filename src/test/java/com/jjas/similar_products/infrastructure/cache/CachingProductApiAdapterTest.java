@@ -0,0 +1,315 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarIds;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.infrastructure.http.UpstreamValidators;
+import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingProductApiAdapterTest {
+
+    @Mock
+    ExternalProductService delegate;
+
+    private final ExecutorService loaderExecutor = Executors.newFixedThreadPool(4);
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        loaderExecutor.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("concurrent misses for the same product share one upstream call")
+    void shouldCoalesceConcurrentMisses() throws Exception {
+        //GIVEN
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), loaderExecutor);
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        CountDownLatch start = new CountDownLatch(1);
+        when(delegate.fetchProductDetail("2")).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return product;
+        });
+
+        //WHEN
+        List<Future<Product>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            results.add(callers.submit(() -> {
+                start.await();
+                return adapter.fetchProductDetail("2");
+            }));
+        }
+        start.countDown();
+
+        //THEN
+        for (Future<Product> result : results) {
+            assertThat(result.get()).isSameAs(product);
+        }
+        verify(delegate, times(1)).fetchProductDetail("2");
+    }
+
+    @Test
+    @DisplayName("hits are served from cache")
+    void shouldServeHitsFromCache() {
+        //GIVEN
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), loaderExecutor);
+        when(delegate.fetchSimilarProductIds("1")).thenReturn(List.of("2", "3"));
+
+        //WHEN
+        adapter.fetchSimilarProductIds("1");
+        List<String> ids = adapter.fetchSimilarProductIds("1");
+
+        //THEN
+        assertThat(ids).containsExactly("2", "3").isInstanceOf(SimilarIds.class);
+        verify(delegate, times(1)).fetchSimilarProductIds("1");
+    }
+
+    @Test
+    @DisplayName("cached products sharing a name share one String")
+    void shouldInternProductNames() {
+        //GIVEN
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), loaderExecutor);
+        when(delegate.fetchProductDetail("2")).thenReturn(new Product("2", new String("Dress"), BigDecimal.ONE, true));
+        when(delegate.fetchProductDetail("3")).thenReturn(new Product("3", new String("Dress"), BigDecimal.TEN, false));
+
+        //WHEN
+        Product product2 = adapter.fetchProductDetail("2");
+        Product product3 = adapter.fetchProductDetail("3");
+
+        //THEN
+        assertThat(product3.getName()).isSameAs(product2.getName());
+        assertThat(product3.getPrice()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    @DisplayName("upstream exceptions are rethrown unwrapped and not cached")
+    void shouldRethrowUpstreamExceptionsWithoutCaching() {
+        //GIVEN
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), loaderExecutor);
+        when(delegate.fetchProductDetail("9")).thenThrow(new ExternalServiceException("down", null));
+
+        //THEN
+        assertThatThrownBy(() -> adapter.fetchProductDetail("9")).isInstanceOf(ExternalServiceException.class);
+        assertThatThrownBy(() -> adapter.fetchProductDetail("9")).isInstanceOf(ExternalServiceException.class);
+        verify(delegate, times(2)).fetchProductDetail("9");
+    }
+
+    @Test
+    @DisplayName("products not found are remembered in the negative cache")
+    void shouldCacheNotFoundProducts() {
+        //GIVEN
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), loaderExecutor);
+        when(delegate.fetchProductDetail("5")).thenThrow(new ProductNotFoundException("5"));
+
+        //THEN
+        assertThatThrownBy(() -> adapter.fetchProductDetail("5")).isInstanceOf(ProductNotFoundException.class);
+        assertThatThrownBy(() -> adapter.fetchProductDetail("5")).isInstanceOf(ProductNotFoundException.class);
+        verify(delegate, times(1)).fetchProductDetail("5");
+    }
+
+    @Test
+    @DisplayName("negative caching can be disabled per cache")
+    void shouldNotCacheNotFoundWhenNegativeTtlIsZero() {
+        //GIVEN
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.settingsOf(ProductCacheProperties.PRODUCT_DETAILS).setNegativeTtl(Duration.ZERO);
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        when(delegate.fetchProductDetail("5")).thenThrow(new ProductNotFoundException("5"));
+
+        //THEN
+        assertThatThrownBy(() -> adapter.fetchProductDetail("5")).isInstanceOf(ProductNotFoundException.class);
+        assertThatThrownBy(() -> adapter.fetchProductDetail("5")).isInstanceOf(ProductNotFoundException.class);
+        verify(delegate, times(2)).fetchProductDetail("5");
+    }
+
+    @Test
+    @DisplayName("fallback answers are returned but never stored")
+    void shouldNotStoreFallbackResults() {
+        //GIVEN
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), loaderExecutor);
+        when(delegate.fetchProductDetail("6")).thenReturn(null);
+
+        //WHEN
+        Product first = adapter.fetchProductDetail("6");
+        Product second = adapter.fetchProductDetail("6");
+
+        //THEN
+        assertThat(first).isNull();
+        assertThat(second).isNull();
+        verify(delegate, times(2)).fetchProductDetail("6");
+        assertThat(adapter.getProductDetailsCache().synchronous().getIfPresent("6")).isNull();
+    }
+
+    @Test
+    @DisplayName("refresh-ahead reloads in background and keeps the old value when only a fallback is available")
+    void shouldRefreshAheadKeepingOldValueOnFallback() throws Exception {
+        //GIVEN
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.settingsOf(ProductCacheProperties.PRODUCT_DETAILS).setSpec("maximumSize=100,refreshAfterWrite=PT0.1S");
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        when(delegate.fetchProductDetail("2")).thenReturn(product);
+        when(delegate.refreshProductDetail("2", product)).thenReturn(null);
+
+        //WHEN
+        adapter.fetchProductDetail("2");
+        Thread.sleep(200);
+        Product stale = adapter.fetchProductDetail("2");
+        Thread.sleep(200);
+
+        //THEN
+        assertThat(stale).isSameAs(product);
+        assertThat(adapter.fetchProductDetail("2")).isSameAs(product);
+        verify(delegate, atLeast(1)).refreshProductDetail("2", product);
+    }
+
+    @Test
+    @DisplayName("a refresh the upstream reports unchanged keeps the cached product and its dependent responses")
+    void shouldKeepDependentsWhenRefreshIsUnchanged() throws Exception {
+        //GIVEN
+        List<String> removed = new ArrayList<>();
+        ProductCacheListener listener = new ProductCacheListener() {
+            @Override
+            public void onSimilarIdsRemoved(String productId) {
+            }
+
+            @Override
+            public void onProductDetailRemoved(String productId) {
+                removed.add(productId);
+            }
+        };
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, new ProductCacheProperties(), Runnable::run,
+                List.of(listener), SecondLevelCacheTier.disabled());
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        Product changed = new Product("2", "Dress", new BigDecimal("17.99"), true);
+        when(delegate.fetchProductDetail("2")).thenReturn(product);
+        when(delegate.refreshProductDetail("2", product)).thenReturn(product).thenReturn(changed);
+
+        //WHEN
+        adapter.fetchProductDetail("2");
+        adapter.getProductDetailsCache().synchronous().refresh("2").get();
+        List<String> removedWhenUnchanged = List.copyOf(removed);
+        adapter.getProductDetailsCache().synchronous().refresh("2").get();
+
+        //THEN
+        assertThat(removedWhenUnchanged).isEmpty();
+        assertThat(removed).containsExactly("2");
+        assertThat(adapter.fetchProductDetail("2")).isSameAs(changed);
+    }
+
+    @Test
+    @DisplayName("disabled cache goes straight to the upstream adapter")
+    void shouldBypassWhenDisabled() {
+        //GIVEN
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.setEnabled(false);
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, properties, loaderExecutor);
+        when(delegate.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2"));
+
+        //WHEN
+        adapter.fetchSimilarProductIds("1");
+        adapter.fetchSimilarProductIds("1");
+
+        //THEN
+        verify(delegate, times(2)).fetchSimilarProductIds(eq("1"), any());
+        assertThat(adapter.getSimilarIdsCache().synchronous().estimatedSize()).isZero();
+    }
+
+    @Test
+    @DisplayName("after a restart heap misses are served from the second level without calling upstream")
+    void shouldServeFromSecondLevelAfterRestart(@TempDir Path directory) {
+        //GIVEN
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.getSecondLevel().setEnabled(true);
+        properties.getSecondLevel().setDirectory(directory.toString());
+        properties.getSecondLevel().setDataSizeMb(1);
+        properties.getSecondLevel().setIndexSlots(1024);
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        when(delegate.fetchProductDetail("2")).thenReturn(product);
+        when(delegate.fetchSimilarProductIds("1")).thenReturn(List.of("2"));
+
+        SecondLevelCacheTier firstRun = new SecondLevelCacheTier(properties);
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, properties, loaderExecutor, List.of(), firstRun);
+        adapter.fetchSimilarProductIds("1");
+        adapter.fetchProductDetail("2");
+        firstRun.destroy();
+
+        //WHEN
+        SecondLevelCacheTier secondRun = new SecondLevelCacheTier(properties);
+        CachingProductApiAdapter restarted = new CachingProductApiAdapter(delegate, properties, loaderExecutor, List.of(), secondRun);
+        List<String> similarIds = restarted.fetchSimilarProductIds("1");
+        Product detail = restarted.fetchProductDetail("2");
+        secondRun.destroy();
+
+        //THEN
+        assertThat(similarIds).containsExactly("2");
+        assertThat(detail).usingRecursiveComparison().isEqualTo(product);
+        verify(delegate, times(1)).fetchSimilarProductIds("1");
+        verify(delegate, times(1)).fetchProductDetail("2");
+    }
+
+    @Test
+    @DisplayName("a second level entry older than the heap expiry is served once, then refreshed from upstream")
+    void shouldRefreshStaleSecondLevelEntries(@TempDir Path directory) throws Exception {
+        //GIVEN
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.getSecondLevel().setEnabled(true);
+        properties.getSecondLevel().setDirectory(directory.toString());
+        properties.getSecondLevel().setDataSizeMb(1);
+        properties.getSecondLevel().setIndexSlots(1024);
+        Product stale = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        try (MappedFileStore store = MappedFileStore.open(directory, ProductCacheProperties.PRODUCT_DETAILS, 1024 * 1024, 1024)) {
+            store.put("2", new ProductCodec().encode(new CachedProduct(stale, UpstreamValidators.NONE)),
+                    Instant.now().minus(Duration.ofHours(1)).toEpochMilli());
+        }
+        when(delegate.refreshProductDetail(eq("2"), any())).thenReturn(new Product("2", "Dress", new BigDecimal("17.99"), true));
+        SecondLevelCacheTier tier = new SecondLevelCacheTier(properties);
+        CachingProductApiAdapter adapter = new CachingProductApiAdapter(delegate, properties, Runnable::run, List.of(), tier);
+
+        //WHEN
+        Product served = adapter.fetchProductDetail("2");
+        Product refreshed = adapter.fetchProductDetail("2");
+        tier.destroy();
+
+        //THEN
+        assertThat(served.getPrice()).isEqualByComparingTo("19.99");
+        assertThat(refreshed.getPrice()).isEqualByComparingTo("17.99");
+        verify(delegate, never()).fetchProductDetail(anyString());
+        verify(delegate, times(1)).refreshProductDetail(eq("2"), any());
+    }
+
+}
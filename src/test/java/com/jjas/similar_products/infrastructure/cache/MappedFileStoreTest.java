@@ -0,0 +1,235 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.infrastructure.http.UpstreamValidators;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappedFileStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("entries survive closing and reopening the store")
+    void shouldSurviveReopen() throws Exception {
+        //GIVEN
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            store.put("1", bytes("shirt"), 10L);
+            store.put("2", bytes("dress"), 20L);
+        }
+
+        //WHEN
+        try (MappedFileStore reopened = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+
+            //THEN
+            assertThat(reopened.get("1").value()).isEqualTo(bytes("shirt"));
+            assertThat(reopened.get("2").writtenAt()).isEqualTo(20L);
+            assertThat(reopened.get("3")).isNull();
+            assertThat(reopened.used()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("a put replaces the previous value and a remove hides it")
+    void shouldReplaceAndRemove() throws Exception {
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            //GIVEN
+            store.put("1", bytes("shirt"), 10L);
+            store.put("2", bytes("dress"), 10L);
+
+            //WHEN
+            store.put("1", bytes("boots"), 30L);
+            store.remove("2");
+
+            //THEN
+            assertThat(store.get("1").value()).isEqualTo(bytes("boots"));
+            assertThat(store.get("2")).isNull();
+            assertThat(store.used()).isEqualTo(2);
+        }
+    }
+
+    @Test
+    @DisplayName("the store is cleared instead of failing when the index fills up")
+    void shouldClearWhenFull() throws Exception {
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 16)) {
+            //WHEN
+            for (int i = 0; i < 13; i++) {
+                store.put(String.valueOf(i), bytes("product-" + i), i);
+            }
+
+            //THEN
+            assertThat(store.used()).isEqualTo(1);
+            assertThat(store.get("12").value()).isEqualTo(bytes("product-12"));
+            assertThat(store.get("0")).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("the files are recreated when the configured sizes change")
+    void shouldResetOnSizeChange() throws Exception {
+        //GIVEN
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            store.put("1", bytes("shirt"), 10L);
+        }
+
+        //WHEN
+        try (MappedFileStore reopened = MappedFileStore.open(directory, "products", 2 * 1024 * 1024, 1024)) {
+
+            //THEN
+            assertThat(reopened.get("1")).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("a record torn by a crash clears the store instead of failing the lookup")
+    void shouldClearOnTornRecord() throws Exception {
+        //GIVEN
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            store.put("1", bytes("shirt"), System.currentTimeMillis());
+            store.put("2", bytes("dress"), System.currentTimeMillis());
+        }
+        // value length of the first record: header, key length, key "1", write time
+        overwriteInt(directory.resolve("products.data"), 16 + 2 + 1 + 8, Integer.MAX_VALUE);
+
+        try (MappedFileStore reopened = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            SecondLevelCache<String> cache = new SecondLevelCache<>(reopened, new StringCodec(), Duration.ofHours(1), Clock.systemUTC());
+            assertThatThrownBy(() -> reopened.get("1")).isInstanceOf(MappedFileStore.CorruptStoreException.class);
+
+            //WHEN
+            SecondLevelCache.Hit<String> torn = cache.get("1");
+
+            //THEN
+            assertThat(torn).isNull();
+            assertThat(reopened.used()).isZero();
+            assertThat(cache.get("2")).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("the files are recreated when they were written with another format version")
+    void shouldResetOnFormatVersionChange() throws Exception {
+        //GIVEN
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            store.put("1", bytes("shirt"), 10L);
+        }
+        overwriteInt(directory.resolve("products.data"), 4, 2);
+
+        //WHEN
+        try (MappedFileStore reopened = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+
+            //THEN
+            assertThat(reopened.get("1")).isNull();
+            assertThat(reopened.used()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("second level entries are stale after the expiry of the heap cache promoting them, capped at the TTL")
+    void shouldBeStaleAfterHeapExpiry() {
+        //GIVEN
+        ProductCacheProperties properties = new ProductCacheProperties();
+        properties.getSecondLevel().setTtl(Duration.ofHours(24));
+        properties.getCaches().get(ProductCacheProperties.SIMILAR_IDS).setSpec("maximumSize=10,expireAfterWrite=PT2H");
+        ProductCacheProperties.CacheSettings unbounded = new ProductCacheProperties.CacheSettings();
+        unbounded.setSpec("maximumSize=10");
+        properties.getCaches().put("unbounded", unbounded);
+
+        //WHEN
+        SecondLevelCacheTier tier = new SecondLevelCacheTier(properties);
+
+        //THEN
+        assertThat(tier.freshnessOf(ProductCacheProperties.PRODUCT_DETAILS)).isEqualTo(Duration.ofMinutes(10));
+        assertThat(tier.freshnessOf(ProductCacheProperties.SIMILAR_IDS)).isEqualTo(Duration.ofHours(2));
+        assertThat(tier.freshnessOf("unbounded")).isEqualTo(Duration.ofHours(24));
+    }
+
+    @Test
+    @DisplayName("entries past their freshness are returned as stale until the TTL, then ignored")
+    void shouldFlagStaleEntries() throws Exception {
+        //GIVEN
+        long now = 10 * 60 * 60 * 1000L;
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        try (MappedFileStore store = MappedFileStore.open(directory, "products", 1024 * 1024, 1024)) {
+            SecondLevelCache<String> cache = new SecondLevelCache<>(store, new StringCodec(), Duration.ofHours(2),
+                    Duration.ofMinutes(10), clock);
+            store.put("fresh", bytes("shirt"), now - Duration.ofMinutes(5).toMillis());
+            store.put("stale", bytes("dress"), now - Duration.ofMinutes(30).toMillis());
+            store.put("expired", bytes("boots"), now - Duration.ofHours(3).toMillis());
+
+            //WHEN
+            SecondLevelCache.Hit<String> fresh = cache.get("fresh");
+            SecondLevelCache.Hit<String> stale = cache.get("stale");
+
+            //THEN
+            assertThat(fresh).isEqualTo(new SecondLevelCache.Hit<>("shirt", false));
+            assertThat(stale).isEqualTo(new SecondLevelCache.Hit<>("dress", true));
+            assertThat(cache.get("expired")).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("codecs round-trip products and similar IDs")
+    void shouldRoundTripValues() throws Exception {
+        //GIVEN
+        ProductCodec productCodec = new ProductCodec();
+        SimilarIdsCodec similarIdsCodec = new SimilarIdsCodec();
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        Product incomplete = new Product("3", null, null, null);
+        Product large = new Product("4", "Boots", new BigDecimal("123456789012345678901234.5"), false);
+        List<String> ids = List.of("4", "2", "3");
+
+        //WHEN
+        Product decoded = productCodec.decode(productCodec.encode(new CachedProduct(product, UpstreamValidators.NONE))).product();
+        Product decodedIncomplete = productCodec.decode(productCodec.encode(new CachedProduct(incomplete, UpstreamValidators.NONE))).product();
+        Product decodedLarge = productCodec.decode(productCodec.encode(new CachedProduct(large, UpstreamValidators.NONE))).product();
+        List<String> decodedIds = similarIdsCodec.decode(similarIdsCodec.encode(ids));
+
+        //THEN
+        assertThat(decoded).usingRecursiveComparison().isEqualTo(product);
+        assertThat(decodedIncomplete).usingRecursiveComparison().isEqualTo(incomplete);
+        assertThat(decodedLarge.getPrice()).isEqualTo(large.getPrice());
+        assertThat(decodedIds).containsExactly("4", "2", "3");
+    }
+
+    private static void overwriteInt(Path file, int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class StringCodec implements ValueCodec<String> {
+
+        @Override
+        public byte[] encode(String value) {
+            return bytes(value);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
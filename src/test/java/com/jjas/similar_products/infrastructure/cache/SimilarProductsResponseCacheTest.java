@@ -0,0 +1,166 @@
+package com.jjas.similar_products.infrastructure.cache;
+
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarIds;
+import com.jjas.similar_products.domain.model.SimilarProducts;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SimilarProductsResponseCacheTest {
+
+    private final SimilarProductsResponseCache cache = new SimilarProductsResponseCache(new ProductCacheProperties());
+
+    private final AtomicInteger assemblies = new AtomicInteger();
+
+    private final Function<List<Product>, List<ProductDetail>> mapper = products -> products.stream()
+            .map(p -> new ProductDetail().id(p.getId()).name(p.getName()).price(p.getPrice()).availability(p.getAvailability()))
+            .toList();
+
+    private Supplier<SimilarProducts> assembler(String productId, String... similarIds) {
+        return () -> {
+            assemblies.incrementAndGet();
+            List<Product> products = List.of(similarIds).stream()
+                    .map(id -> new Product(id, "Prod " + id, BigDecimal.ONE, true))
+                    .toList();
+            return new SimilarProducts(productId, List.of(similarIds), products);
+        };
+    }
+
+    @Test
+    @DisplayName("repeated lookups are served from the assembled response")
+    void shouldServeHitsWithoutAssembling() {
+        cache.get("1", assembler("1", "2", "3"), mapper);
+        List<ProductDetail> body = cache.get("1", assembler("1", "2", "3"), mapper);
+
+        assertThat(body).extracting(ProductDetail::getId).containsExactlyInAnyOrder("2", "3");
+        assertThat(assemblies).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("removing a product detail only invalidates the responses containing it")
+    void shouldInvalidateOnlyDependentResponses() {
+        cache.get("1", assembler("1", "2", "3"), mapper);
+        cache.get("4", assembler("4", "5"), mapper);
+
+        cache.onProductDetailRemoved("3");
+
+        assertThat(cache.getResponses().getIfPresent("1")).isNull();
+        assertThat(cache.getResponses().getIfPresent("4")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("removing the similar IDs of a product invalidates its response")
+    void shouldInvalidateOnSimilarIdsRemoved() {
+        cache.get("1", assembler("1", "2"), mapper);
+
+        cache.onSimilarIdsRemoved("1");
+
+        assertThat(cache.getResponses().getIfPresent("1")).isNull();
+    }
+
+    @Test
+    @DisplayName("incomplete results are returned but not cached")
+    void shouldNotCacheIncompleteResults() {
+        Supplier<SimilarProducts> partial = () -> {
+            assemblies.incrementAndGet();
+            return new SimilarProducts("1", List.of("2", "3"), List.of(new Product("2", "Prod 2", BigDecimal.ONE, true)));
+        };
+
+        List<ProductDetail> body = cache.get("1", partial, mapper);
+        cache.get("1", partial, mapper);
+
+        assertThat(body).hasSize(1);
+        assertThat(assemblies).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("results built on the fallback answer of the similar IDs are returned but not cached")
+    void shouldNotCacheFallbackResults() {
+        Supplier<SimilarProducts> fallback = () -> {
+            assemblies.incrementAndGet();
+            return new SimilarProducts("1", SimilarIds.unavailable(), List.of());
+        };
+
+        List<ProductDetail> body = cache.get("1", fallback, mapper);
+        Map<String, List<ProductDetail>> bodies = cache.getAll(List.of("1", "4"),
+                missing -> Map.of("1", fallback.get(), "4", new SimilarProducts("4", SimilarIds.unavailable(), List.of())), mapper);
+
+        assertThat(body).isEmpty();
+        assertThat(bodies).containsOnlyKeys("1", "4");
+        assertThat(cache.getResponses().asMap()).isEmpty();
+        assertThat(cache.freshnessOf("1")).isZero();
+    }
+
+    @Test
+    @DisplayName("a response assembled while a constituent was invalidated is not cached")
+    void shouldNotCacheResponsesRacingWithInvalidation() {
+        Supplier<SimilarProducts> racing = () -> {
+            SimilarProducts result = assembler("1", "2").get();
+            cache.onProductDetailRemoved("2");
+            return result;
+        };
+
+        cache.get("1", racing, mapper);
+
+        assertThat(cache.getResponses().getIfPresent("1")).isNull();
+    }
+
+    @Test
+    @DisplayName("a response assembled while its similar IDs were invalidated is not cached")
+    void shouldNotCacheResponsesRacingWithSimilarIdsInvalidation() {
+        Supplier<SimilarProducts> racing = () -> {
+            SimilarProducts result = assembler("1", "2").get();
+            cache.onSimilarIdsRemoved("1");
+            return result;
+        };
+
+        cache.get("1", racing, mapper);
+
+        assertThat(cache.getResponses().getIfPresent("1")).isNull();
+    }
+
+    @Test
+    @DisplayName("removals of entries a response was not built from do not keep it out of the cache")
+    void shouldCacheResponsesRacingWithUnrelatedInvalidations() {
+        Supplier<SimilarProducts> racing = () -> {
+            SimilarProducts result = assembler("1", "2").get();
+            cache.onProductDetailRemoved("3");
+            cache.onSimilarIdsRemoved("4");
+            return result;
+        };
+
+        cache.get("1", racing, mapper);
+
+        assertThat(cache.getResponses().getIfPresent("1")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("a batch lookup only assembles the products missing from the cache, in a single call")
+    void shouldAssembleOnlyBatchMisses() {
+        cache.get("1", assembler("1", "2", "3"), mapper);
+        List<List<String>> batches = new ArrayList<>();
+
+        Map<String, List<ProductDetail>> bodies = cache.getAll(List.of("1", "4", "6"), missing -> {
+            batches.add(missing);
+            return Map.of("4", assembler("4", "5").get(), "6", assembler("6", "3").get());
+        }, mapper);
+
+        assertThat(batches).containsExactly(List.of("4", "6"));
+        assertThat(bodies).containsOnlyKeys("1", "4", "6");
+        assertThat(bodies.get("6")).extracting(ProductDetail::getId).containsExactly("3");
+        assertThat(cache.getResponses().getIfPresent("4")).isNotNull();
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.config.ProductApiProperties;
+import com.jjas.similar_products.infrastructure.http.exception.UpstreamOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("the limit grows while latency is stable and shrinks when it rises")
+    void shouldAdaptLimitToLatency() {
+        //GIVEN
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(UpstreamResilience.SIMILAR_IDS, enabledLimit());
+
+        //WHEN
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(millis(10), limiter.getLimit(), false);
+        }
+        int grown = limiter.getLimit();
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(millis(60), limiter.getLimit(), false);
+        }
+        int shrunk = limiter.getLimit();
+
+        //THEN
+        assertThat(grown).isGreaterThan(20);
+        assertThat(shrunk).isLessThan(grown);
+    }
+
+    @Test
+    @DisplayName("failures back off multiplicatively down to the minimum limit")
+    void shouldBackOffOnDrops() {
+        //GIVEN
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(UpstreamResilience.SIMILAR_IDS, enabledLimit());
+
+        //WHEN
+        limiter.onSample(millis(10), 20, true);
+        int afterOneDrop = limiter.getLimit();
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(millis(10), 20, true);
+        }
+
+        //THEN
+        assertThat(afterOneDrop).isEqualTo(18);
+        assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("the limit does not grow while the upstream is not saturated")
+    void shouldNotGrowWhenUnderused() {
+        //GIVEN
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(UpstreamResilience.SIMILAR_IDS, enabledLimit());
+
+        //WHEN
+        for (int i = 0; i < 100; i++) {
+            limiter.onSample(millis(10), 2, false);
+        }
+
+        //THEN
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("slow product detail calls do not lower the limit of the similar IDs calls")
+    void shouldLimitEveryOperationSeparately() {
+        //GIVEN
+        UpstreamConcurrencyLimiters limiters = new UpstreamConcurrencyLimiters(enabledLimit());
+        AdaptiveConcurrencyLimiter similarIds = limiters.forOperation(UpstreamResilience.SIMILAR_IDS);
+        AdaptiveConcurrencyLimiter productDetail = limiters.forOperation(UpstreamResilience.PRODUCT_DETAIL);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiters.bindTo(registry);
+        for (int i = 0; i < 100; i++) {
+            similarIds.onSample(millis(10), similarIds.getLimit(), false);
+            productDetail.onSample(millis(10), productDetail.getLimit(), false);
+        }
+        int similarIdsLimit = similarIds.getLimit();
+
+        //WHEN
+        for (int i = 0; i < 100; i++) {
+            productDetail.onSample(millis(200), productDetail.getLimit(), i % 10 == 0);
+        }
+
+        //THEN
+        assertThat(productDetail.getLimit()).isLessThan(similarIdsLimit);
+        assertThat(similarIds.getLimit()).isEqualTo(similarIdsLimit);
+        assertThat(registry.get("upstream.concurrency.limit").tag("operation", UpstreamResilience.SIMILAR_IDS).gauge().value())
+                .isEqualTo(similarIdsLimit);
+        assertThat(registry.get("upstream.concurrency.limit").tag("operation", UpstreamResilience.PRODUCT_DETAIL).gauge().value())
+                .isEqualTo(productDetail.getLimit());
+    }
+
+    @Test
+    @DisplayName("calls over the limit are rejected after a short wait")
+    void shouldRejectExcessQuickly() throws Exception {
+        //GIVEN
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(UpstreamResilience.SIMILAR_IDS, fixedLimit(1));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<String> holder = callers.submit(() -> limiter.call(() -> {
+            started.countDown();
+            await(finish);
+            return "first";
+        }));
+        started.await();
+
+        //WHEN
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> limiter.call(() -> "second")).isInstanceOf(UpstreamOverloadedException.class);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        finish.countDown();
+
+        //THEN
+        assertThat(holder.get()).isEqualTo("first");
+        assertThat(waitedMs).isLessThan(500);
+        assertThat(limiter.getRejections()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("a queued call proceeds when a slot frees up within the wait")
+    void shouldQueueBriefly() throws Exception {
+        //GIVEN
+        ProductApiProperties.ConcurrencyLimit properties = fixedLimit(1);
+        properties.setMaxQueueWaitMs(2_000);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(UpstreamResilience.SIMILAR_IDS, properties);
+        CountDownLatch started = new CountDownLatch(1);
+        callers.submit(() -> limiter.call(() -> {
+            started.countDown();
+            sleep(50);
+            return "first";
+        }));
+        started.await();
+
+        //WHEN
+        String result = limiter.call(() -> "second");
+
+        //THEN
+        assertThat(result).isEqualTo("second");
+        assertThat(limiter.getRejections()).isZero();
+    }
+
+    private static ProductApiProperties.ConcurrencyLimit fixedLimit(int limit) {
+        ProductApiProperties.ConcurrencyLimit properties = enabledLimit();
+        properties.setInitialLimit(limit);
+        properties.setMinLimit(limit);
+        properties.setMaxLimit(limit);
+        return properties;
+    }
+
+    private static long millis(long value) {
+        return TimeUnit.MILLISECONDS.toNanos(value);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ProductApiProperties.ConcurrencyLimit enabledLimit() {
+        ProductApiProperties.ConcurrencyLimit properties = new ProductApiProperties.ConcurrencyLimit();
+        properties.setEnabled(true);
+        return properties;
+    }
+}
@@ -0,0 +1,288 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.config.ProductApiProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HedgingProductApiAdapterTest {
+
+    @Mock
+    ExternalProductService delegate;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private ProductApiProperties.Hedging properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ProductApiProperties.Hedging();
+        properties.setEnabled(true);
+        properties.setMinSamples(20);
+        properties.setMinDelayMs(20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("a slow first attempt is hedged and the fastest answer wins")
+    void shouldHedgeSlowRequest() {
+        //GIVEN
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(executor), properties);
+        Product product = new Product("1000", "Slow", new BigDecimal("9.99"), true);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.fetchProductDetail(eq("1000"), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 21) {
+                Thread.sleep(2_500);
+            }
+            return product;
+        });
+        warmUp(adapter, "1000", 20);
+
+        //WHEN
+        long start = System.nanoTime();
+        Product result = adapter.fetchProductDetail("1000");
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        //THEN
+        assertThat(result).isSameAs(product);
+        assertThat(elapsedMs).isLessThan(1_000);
+        assertThat(adapter.hedgesSent()).isEqualTo(1);
+        assertThat(adapter.hedgesWon()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("the hedge budget caps the extra requests")
+    void shouldRespectHedgeBudget() {
+        //GIVEN
+        properties.setBudgetPercent(5);
+        properties.setMaxBurst(1);
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(executor), properties);
+        Product product = new Product("1", "Shirt", new BigDecimal("9.99"), true);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.fetchProductDetail(eq("1"), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() > 20) {
+                Thread.sleep(60);
+            }
+            return product;
+        });
+        warmUp(adapter, "1", 20);
+
+        //WHEN
+        for (int i = 0; i < 3; i++) {
+            adapter.fetchProductDetail("1");
+        }
+
+        //THEN
+        assertThat(adapter.hedgesSent()).isEqualTo(1);
+        verify(delegate, times(20 + 3 + 1)).fetchProductDetail(eq("1"), any());
+    }
+
+    @Test
+    @DisplayName("no hedge is sent when the executor has no thread left, and calls then run in the caller thread")
+    void shouldSkipHedgesWhenTheExecutorIsFull() throws Exception {
+        //GIVEN
+        ThreadPoolExecutor bounded = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS, new SynchronousQueue<>());
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(bounded), properties);
+        Product product = new Product("1", "Shirt", new BigDecimal("9.99"), true);
+        AtomicInteger calls = new AtomicInteger();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        when(delegate.fetchProductDetail(eq("1"), any())).thenAnswer(invocation -> {
+            threads.add(Thread.currentThread().getName());
+            if (calls.incrementAndGet() == 21) {
+                Thread.sleep(300);
+            }
+            return product;
+        });
+        warmUp(adapter, "1", 20);
+
+        //WHEN
+        Future<Product> slow = executor.submit(() -> adapter.fetchProductDetail("1"));
+        Thread.sleep(100);
+        Product inCaller = adapter.fetchProductDetail("1");
+
+        //THEN
+        assertThat(slow.get()).isSameAs(product);
+        assertThat(inCaller).isSameAs(product);
+        assertThat(adapter.hedgesSent()).isZero();
+        assertThat(threads.get(threads.size() - 1)).isEqualTo(Thread.currentThread().getName());
+        bounded.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("a not found answer is returned without waiting for a hedge")
+    void shouldNotHedgeNotFound() {
+        //GIVEN
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(executor), properties);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.fetchProductDetail(eq("404"), any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() > 20) {
+                throw new ProductNotFoundException("404");
+            }
+            return new Product("404", "Gone", BigDecimal.ONE, false);
+        });
+        warmUp(adapter, "404", 20);
+
+        //WHEN - THEN
+        assertThatThrownBy(() -> adapter.fetchProductDetail("404")).isInstanceOf(ProductNotFoundException.class);
+        assertThat(adapter.hedgesSent()).isZero();
+    }
+
+    @Test
+    @DisplayName("disabled hedging calls the upstream once in the caller thread")
+    void shouldCallOnceWhenDisabled() {
+        //GIVEN
+        properties.setEnabled(false);
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(executor), properties);
+        when(delegate.fetchProductDetail(eq("1"), any())).thenAnswer(invocation -> {
+            Thread.sleep(30);
+            return new Product("1", "Shirt", BigDecimal.ONE, true);
+        });
+        warmUp(adapter, "1", 25);
+
+        //WHEN
+        adapter.fetchProductDetail("1");
+
+        //THEN
+        assertThat(adapter.hedgesSent()).isZero();
+        verify(delegate, times(26)).fetchProductDetail(eq("1"), any());
+    }
+
+    @Test
+    @DisplayName("a fallback answer of the hedge does not win the race, the slow attempt does")
+    void shouldNotLetAFallbackWinTheRace() {
+        //GIVEN
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(executor), properties);
+        Product product = new Product("1", "Shirt", new BigDecimal("9.99"), true);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.fetchProductDetail(eq("1"), any())).thenAnswer(invocation -> {
+            int call = calls.incrementAndGet();
+            if (call == 21) {
+                Thread.sleep(300);
+            }
+            return call == 22 ? null : product;
+        });
+        warmUp(adapter, "1", 20);
+
+        //WHEN
+        Product result = adapter.fetchProductDetail("1");
+
+        //THEN
+        assertThat(result).isSameAs(product);
+        assertThat(adapter.hedgesSent()).isEqualTo(1);
+        assertThat(adapter.hedgesWon()).isZero();
+    }
+
+    @Test
+    @DisplayName("a fallback answer is returned when every attempt answered with one")
+    void shouldReturnTheFallbackWhenNoAttemptIsLeft() {
+        //GIVEN
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attemptsOn(executor), properties);
+        Product product = new Product("1", "Shirt", new BigDecimal("9.99"), true);
+        AtomicInteger calls = new AtomicInteger();
+        when(delegate.fetchProductDetail(eq("1"), any())).thenAnswer(invocation -> {
+            int call = calls.incrementAndGet();
+            if (call == 21) {
+                Thread.sleep(300);
+            }
+            return call > 20 ? null : product;
+        });
+        warmUp(adapter, "1", 20);
+
+        //WHEN
+        Product result = adapter.fetchProductDetail("1");
+
+        //THEN
+        assertThat(result).isNull();
+        assertThat(adapter.hedgesSent()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("the losing attempt is cancelled once the hedge answered")
+    void shouldCancelTheLosingAttempt() {
+        //GIVEN
+        Product product = new Product("1", "Shirt", new BigDecimal("9.99"), true);
+        CompletableFuture<UpstreamProduct> slow = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        UpstreamAttempts attempts = new UpstreamAttempts() {
+            @Override
+            public CompletableFuture<List<String>> startSimilarProductIds(String productId, Deadline deadline) {
+                return CompletableFuture.completedFuture(List.of());
+            }
+
+            @Override
+            public CompletableFuture<UpstreamProduct> startProductDetail(String productId, Deadline deadline) {
+                return calls.incrementAndGet() == 1 ? slow : CompletableFuture.completedFuture(UpstreamProduct.withoutValidators(product));
+            }
+        };
+        HedgingProductApiAdapter adapter = new HedgingProductApiAdapter(delegate, UpstreamProductDetails.of(delegate), attempts, properties);
+        warmUp(adapter, "1", 20);
+
+        //WHEN
+        Product result = adapter.fetchProductDetail("1");
+
+        //THEN
+        assertThat(result).isSameAs(product);
+        assertThat(slow).isCancelled();
+        assertThat(adapter.hedgesWon()).isEqualTo(1);
+    }
+
+    /***
+     * Attempts running the mocked upstream calls on an executor, in place of the bulkhead threads
+     */
+    private UpstreamAttempts attemptsOn(ExecutorService executor) {
+        return new UpstreamAttempts() {
+            @Override
+            public CompletableFuture<List<String>> startSimilarProductIds(String productId, Deadline deadline) {
+                return CompletableFuture.supplyAsync(() -> delegate.fetchSimilarProductIds(productId, deadline), executor);
+            }
+
+            @Override
+            public CompletableFuture<UpstreamProduct> startProductDetail(String productId, Deadline deadline) {
+                return CompletableFuture.supplyAsync(
+                        () -> UpstreamProduct.withoutValidators(delegate.fetchProductDetail(productId, deadline)), executor);
+            }
+        };
+    }
+
+    /***
+     * Sends the requests the adapter needs to learn the upstream latency before hedging
+     */
+    private static void warmUp(HedgingProductApiAdapter adapter, String productId, int requests) {
+        for (int i = 0; i < requests; i++) {
+            adapter.fetchProductDetail(productId);
+        }
+    }
+}
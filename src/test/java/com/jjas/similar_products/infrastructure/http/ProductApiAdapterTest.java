@@ -1,26 +1,36 @@
 package com.jjas.similar_products.infrastructure.http;
 
+import com.jjas.similar_products.config.ProductApiProperties;
+import com.jjas.similar_products.domain.model.Deadline;
 import com.jjas.similar_products.domain.model.Product;
 import com.jjas.similar_products.generated.external.api.DefaultApi;
 import com.jjas.similar_products.generated.external.model.ProductDetail;
 import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
 import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import io.github.resilience4j.retry.RetryConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 
 import java.math.BigDecimal;
-import java.util.Set;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,17 +39,36 @@ class ProductApiAdapterTest {
     @Mock
     DefaultApi defaultApi;
 
+    @Mock
+    ProductDetailRevalidator revalidator;
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Spy
+    UpstreamMetrics metrics = new UpstreamMetrics(registry);
+
+    @Spy
+    UpstreamConcurrencyLimiters upstreamLimiters = new UpstreamConcurrencyLimiters(new ProductApiProperties.ConcurrencyLimit());
+
+    @Spy
+    UpstreamResilience resilience = UpstreamResilienceTest.resilience(RetryConfig.custom().maxAttempts(1).build());
+
     @InjectMocks
     ProductApiAdapter adapter;
 
+    @AfterEach
+    void tearDown() {
+        resilience.destroy();
+    }
+
     @Test
     @DisplayName("fetchSimilarProductIds returns product ID set")
     void shouldGetSimilarIds() {
         //GIVEN
-        when(defaultApi.getProductSimilarids(eq("1"))).thenReturn(Set.of("2", "3"));
+        when(defaultApi.getProductSimilarids(eq("1"))).thenReturn(List.of("2", "3"));
 
         //WHEN
-        Set<String> ids = adapter.fetchSimilarProductIds("1");
+        List<String> ids = adapter.fetchSimilarProductIds("1");
 
         //THEN
         assertThat(ids).containsExactlyInAnyOrder("2", "3");
@@ -54,7 +83,7 @@ class ProductApiAdapterTest {
                 .name("Prod 2")
                 .price(new BigDecimal("12.34"))
                 .availability(true);
-        when(defaultApi.getProductProductId(eq("2"))).thenReturn(ext);
+        when(defaultApi.getProductProductIdWithHttpInfo(eq("2"))).thenReturn(ResponseEntity.ok(ext));
 
         //WHEN
         Product domain = adapter.fetchProductDetail("2");
@@ -70,7 +99,7 @@ class ProductApiAdapterTest {
     @DisplayName("404 -> ProductNotFoundException")
     void shouldGetProductDetail404() {
         //GIVEN
-        when(defaultApi.getProductProductId(eq("9")))
+        when(defaultApi.getProductProductIdWithHttpInfo(eq("9")))
                 .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "not found", null, null, null));
 
         //THEN
@@ -82,12 +111,72 @@ class ProductApiAdapterTest {
     @DisplayName("5xx -> ExternalServiceException")
     void shouldGetProductDetail5xx() {
         //GIVEN
-        when(defaultApi.getProductProductId(eq("1")))
+        when(defaultApi.getProductProductIdWithHttpInfo(eq("1")))
                 .thenThrow(new HttpServerErrorException(HttpStatus.BAD_GATEWAY, "BG"));
 
         //THEN
         assertThatThrownBy(() -> adapter.fetchProductDetail("1"))
                 .isInstanceOf(ExternalServiceException.class);
     }
-    
+
+    @Test
+    @DisplayName("refreshUpstreamProductDetail revalidates with the upstream ETag and keeps the product on 304")
+    void shouldRevalidateWithTheUpstreamEtag() {
+        //GIVEN
+        ProductDetail ext = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
+        when(defaultApi.getProductProductIdWithHttpInfo(eq("2"))).thenReturn(ResponseEntity.ok().eTag("\"v1\"").body(ext));
+        when(revalidator.revalidate(eq("2"), eq(new UpstreamValidators("\"v1\"", -1))))
+                .thenReturn(ResponseEntity.status(HttpStatus.NOT_MODIFIED).build())
+                .thenReturn(ResponseEntity.ok().eTag("\"v2\"").body(ext.price(new BigDecimal("9.99"))));
+        UpstreamProduct cached = adapter.fetchUpstreamProductDetail("2", Deadline.none());
+
+        //WHEN
+        UpstreamProduct unchanged = adapter.refreshUpstreamProductDetail("2", cached);
+        UpstreamProduct changed = adapter.refreshUpstreamProductDetail("2", cached);
+
+        //THEN
+        assertThat(unchanged).isSameAs(cached);
+        assertThat(changed.product().getPrice()).isEqualByComparingTo("9.99");
+        assertThat(changed.validators()).isEqualTo(new UpstreamValidators("\"v2\"", -1));
+        verify(defaultApi, times(1)).getProductProductIdWithHttpInfo("2");
+    }
+
+    @Test
+    @DisplayName("refreshUpstreamProductDetail fetches the product again when the upstream sent no validators")
+    void shouldRefetchWithoutValidators() {
+        //GIVEN
+        ProductDetail ext = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
+        when(defaultApi.getProductProductIdWithHttpInfo(eq("2"))).thenReturn(ResponseEntity.ok(ext));
+        UpstreamProduct cached = adapter.fetchUpstreamProductDetail("2", Deadline.none());
+
+        //WHEN
+        UpstreamProduct refreshed = adapter.refreshUpstreamProductDetail("2", cached);
+
+        //THEN
+        assertThat(cached.validators()).isSameAs(UpstreamValidators.NONE);
+        assertThat(refreshed.product()).isNotSameAs(cached.product()).usingRecursiveComparison().isEqualTo(cached.product());
+        verify(defaultApi, times(2)).getProductProductIdWithHttpInfo("2");
+        verifyNoInteractions(revalidator);
+    }
+
+    @Test
+    @DisplayName("every upstream call is timed by operation and outcome")
+    void shouldTimeUpstreamCallsByOutcome() {
+        //GIVEN
+        when(defaultApi.getProductSimilarids(eq("1"))).thenReturn(List.of("2"));
+        when(defaultApi.getProductProductIdWithHttpInfo(eq("9")))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.NOT_FOUND, "not found", null, null, null));
+
+        //WHEN
+        adapter.fetchSimilarProductIds("1");
+        assertThatThrownBy(() -> adapter.fetchProductDetail("9")).isInstanceOf(ProductNotFoundException.class);
+        adapter.fallbackProductDetail("9", new RuntimeException("open"));
+
+        //THEN
+        assertThat(registry.get("upstream.requests").tags("operation", "similarIds", "outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("upstream.requests").tags("operation", "productDetail", "outcome", "not_found").timer().count()).isEqualTo(1);
+        assertThat(registry.get("upstream.requests").tags("operation", "productDetail", "outcome", "success").timer().count()).isZero();
+        assertThat(registry.get("upstream.fallbacks").tag("operation", "productDetail").counter().count()).isEqualTo(1);
+    }
+
 }
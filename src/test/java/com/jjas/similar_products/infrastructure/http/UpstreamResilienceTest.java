@@ -0,0 +1,213 @@
+package com.jjas.similar_products.infrastructure.http;
+
+import com.jjas.similar_products.config.VirtualThreads;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.jjas.similar_products.infrastructure.http.UpstreamResilience.PRODUCT_DETAIL;
+import static com.jjas.similar_products.infrastructure.http.UpstreamResilience.SIMILAR_IDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamResilienceTest {
+
+    private final UpstreamResilience resilience = resilience(RetryConfig.custom().maxAttempts(1).build());
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        resilience.destroy();
+    }
+
+    @Test
+    @DisplayName("a saturated product detail bulkhead does not slow down similar IDs calls")
+    void shouldIsolateBulkheads() throws Exception {
+        //GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            callers.submit(() -> resilience.execute(PRODUCT_DETAIL, () -> await(release), ex -> "fallback"));
+        }
+        Thread.sleep(100);
+
+        //WHEN
+        String rejected = resilience.execute(PRODUCT_DETAIL, () -> "detail", ex -> "fallback");
+        long start = System.nanoTime();
+        String similarIds = resilience.execute(SIMILAR_IDS, () -> "ids", ex -> "fallback");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        //THEN
+        assertThat(rejected).isEqualTo("fallback");
+        assertThat(similarIds).isEqualTo("ids");
+        assertThat(elapsedMs).isLessThan(200);
+    }
+
+    @Test
+    @DisplayName("a call still running at the deadline is not waited for")
+    void shouldStopWaitingAtTheDeadline() {
+        //GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        Deadline deadline = Deadline.after(Duration.ofMillis(100));
+
+        //WHEN
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> resilience.execute(PRODUCT_DETAIL, () -> await(release), ex -> "fallback", deadline))
+                .isInstanceOf(DeadlineExceededException.class);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        //THEN
+        assertThat(elapsedMs).isLessThan(250);
+    }
+
+    @Test
+    @DisplayName("failing product detail calls open their own breaker only")
+    void shouldIsolateCircuitBreakers() {
+        //GIVEN
+        for (int i = 0; i < 4; i++) {
+            try {
+                resilience.execute(PRODUCT_DETAIL, () -> {
+                    throw new IllegalStateException("upstream down");
+                }, ex -> "fallback");
+            } catch (IllegalStateException ignored) {
+                // the failures are what opens the breaker
+            }
+        }
+
+        //WHEN
+        String detail = resilience.execute(PRODUCT_DETAIL, () -> "detail", ex -> "fallback");
+        String similarIds = resilience.execute(SIMILAR_IDS, () -> "ids", ex -> "fallback");
+
+        //THEN
+        assertThat(detail).isEqualTo("fallback");
+        assertThat(similarIds).isEqualTo("ids");
+    }
+
+    @Test
+    @DisplayName("calls slower than the time limit get the fallback")
+    void shouldTimeOutSlowCalls() {
+        //GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+
+        //WHEN
+        long start = System.nanoTime();
+        String result = resilience.execute(PRODUCT_DETAIL, () -> await(release), ex -> "fallback");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        release.countDown();
+
+        //THEN
+        assertThat(result).isEqualTo("fallback");
+        assertThat(elapsedMs).isLessThan(800);
+    }
+
+    @Test
+    @DisplayName("cancelling a started call aborts its request and interrupts its bulkhead thread")
+    void shouldAbortCancelledCalls() throws Exception {
+        //GIVEN
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch aborted = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<String> call = resilience.start(PRODUCT_DETAIL, () -> {
+            CancellableCall.register(aborted::countDown);
+            started.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            throw new IllegalStateException("request aborted");
+        }, ex -> "fallback", Deadline.none());
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+
+        //WHEN
+        call.cancel(true);
+
+        //THEN
+        assertThat(aborted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(interrupted.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(call).isCancelled();
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    @DisplayName("with virtual threads every call runs on a new virtual thread, behind a semaphore bulkhead")
+    void shouldRunCallsOnVirtualThreads() throws Exception {
+        //GIVEN
+        ExecutorService virtualThreads = VirtualThreads.newExecutor("upstream-bulkhead-");
+        UpstreamResilience virtual = new UpstreamResilience(
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(2).maxWaitDuration(Duration.ZERO).build()),
+                TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofSeconds(1)).build()),
+                RetryRegistry.of(RetryConfig.custom().maxAttempts(1).build()),
+                Executors.newSingleThreadScheduledExecutor(),
+                virtualThreads);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            callers.submit(() -> virtual.execute(PRODUCT_DETAIL, () -> await(release), ex -> "fallback"));
+        }
+        Thread.sleep(100);
+
+        //WHEN
+        String rejected = virtual.execute(PRODUCT_DETAIL, () -> "detail", ex -> "fallback");
+        String thread = virtual.execute(SIMILAR_IDS, () -> Thread.currentThread().toString(), ex -> "fallback");
+        release.countDown();
+
+        //THEN
+        assertThat(rejected).isEqualTo("fallback");
+        assertThat(thread).startsWith("VirtualThread[").contains("upstream-bulkhead-");
+        virtualThreads.shutdownNow();
+    }
+
+    /***
+     * Small instances so saturation is easy to reach: 2 threads and 2 queued calls per bulkhead, a breaker opening
+     * after 4 failed calls and a 300 ms time limit
+     */
+    static UpstreamResilience resilience(RetryConfig retryConfig) {
+        return new UpstreamResilience(
+                CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                        .slidingWindowSize(4)
+                        .minimumNumberOfCalls(4)
+                        .build()),
+                ThreadPoolBulkheadRegistry.of(ThreadPoolBulkheadConfig.custom()
+                        .coreThreadPoolSize(1)
+                        .maxThreadPoolSize(2)
+                        .queueCapacity(2)
+                        .build()),
+                TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(Duration.ofMillis(300)).build()),
+                RetryRegistry.of(retryConfig),
+                Executors.newSingleThreadScheduledExecutor());
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "detail";
+    }
+}
@@ -52,6 +52,26 @@ class GlobalExceptionHandlerTest {
                 .andExpect(jsonPath("$.detail", is("External service error")));
     }
 
+    @Test
+    @DisplayName("Should return 503 ProblemDetail for UpstreamOverloadedException")
+    void testUpstreamOverloadedException() throws Exception {
+        mockMvc.perform(get("/test/upstream-overloaded"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.title", is("UPSTREAM_OVERLOADED")))
+                .andExpect(jsonPath("$.status", is(503)))
+                .andExpect(jsonPath("$.detail", is("Upstream concurrency limit reached")));
+    }
+
+    @Test
+    @DisplayName("Should return 504 ProblemDetail for DeadlineExceededException")
+    void testDeadlineExceededException() throws Exception {
+        mockMvc.perform(get("/test/deadline-exceeded"))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(jsonPath("$.title", is("DEADLINE_EXCEEDED")))
+                .andExpect(jsonPath("$.status", is(504)))
+                .andExpect(jsonPath("$.detail", is("Deadline reached waiting for similarIds")));
+    }
+
     @Test
     @DisplayName("Should return 500 ProblemDetail for generic exception")
     void testGenericException() throws Exception {
@@ -23,6 +23,16 @@ class TestExceptionController {
         throw new ExternalServiceException("External service error", null);
     }
 
+    @GetMapping("/test/upstream-overloaded")
+    public void upstreamOverloaded() {
+        throw new UpstreamOverloadedException("Upstream concurrency limit reached");
+    }
+
+    @GetMapping("/test/deadline-exceeded")
+    public void deadlineExceeded() {
+        throw new DeadlineExceededException("Deadline reached waiting for similarIds");
+    }
+
     @PostMapping("/test/method-not-allowed")
     public void methodNotAllowed() {
         throw new MethodNotAllowedException("Method not allowed Error", null);
@@ -0,0 +1,116 @@
+package com.jjas.similar_products.infrastructure.mapper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<Product> products = List.of(
+            new Product("2", "Dress \"red\"", new BigDecimal("19.90"), true),
+            new Product("3", null, null, null),
+            new Product("4", "Boots", new BigDecimal("39.99"), false));
+
+    private final Map<Product, JsonFragment> cached = new IdentityHashMap<>();
+
+    /***
+     * Keeps the JSON of the products above, as the product details cache does for the products it holds
+     */
+    private final ProductJson productJson = new ProductJson(new ProductMapperImpl(), objectMapper,
+            (product, serializer) -> products.contains(product) ? cached.computeIfAbsent(product, serializer) : serializer.apply(product));
+
+    @Test
+    @DisplayName("joined fragments are the same JSON Jackson writes for the DTO list")
+    void shouldWriteTheSameJsonAsJackson() throws Exception {
+        //GIVEN
+        List<ProductDetail> body = productJson.render(products);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        //WHEN
+        ((ProductDetailList) body).writeTo(out);
+
+        //THEN
+        String expected = objectMapper.writeValueAsString(new ProductMapperImpl().toDtoList(products));
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(expected);
+        assertThat(((ProductDetailList) body).contentLength()).isEqualTo(expected.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(objectMapper.writeValueAsString(body)).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("every product is serialized once and pages keep writing from the fragments")
+    void shouldSerializeEveryProductOnce() throws Exception {
+        //GIVEN
+        List<ProductDetail> body = productJson.render(products);
+        byte[] fragment = productJson.fragment(products.get(1));
+
+        //WHEN
+        List<ProductDetail> page = body.subList(1, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((ProductDetailList) page).writeTo(out);
+
+        //THEN
+        assertThat(productJson.fragment(products.get(1))).isSameAs(fragment);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo(
+                "[{\"id\":\"3\",\"name\":null,\"price\":null,\"availability\":null},"
+                        + "{\"id\":\"4\",\"name\":\"Boots\",\"price\":39.99,\"availability\":false}]");
+        assertThat(productJson.render(List.of()).subList(0, 0)).isInstanceOf(ProductDetailList.class);
+    }
+
+    @Test
+    @DisplayName("a product not held by the cache is serialized once per response, for its length, ETag and body")
+    void shouldSerializeUncachedProductsOncePerResponse() throws Exception {
+        //GIVEN
+        AtomicInteger serialized = new AtomicInteger();
+        ProductJson uncached = new ProductJson(new ProductMapperImpl(), objectMapper, (product, serializer) -> {
+            serialized.incrementAndGet();
+            return serializer.apply(product);
+        });
+        ProductDetailList body = (ProductDetailList) uncached.render(products);
+
+        //WHEN
+        body.contentLength();
+        body.etag();
+        body.writeTo(new ByteArrayOutputStream());
+        ((ProductDetailList) body.subList(0, 2)).writeTo(new ByteArrayOutputStream());
+
+        //THEN
+        assertThat(serialized).hasValue(products.size());
+    }
+
+    @Test
+    @DisplayName("the ETag follows the JSON written, not the product instances")
+    void shouldTagEqualJsonWithTheSameEtag() {
+        //GIVEN
+        List<Product> copies = List.of(
+                new Product("2", "Dress \"red\"", new BigDecimal("19.90"), true),
+                new Product("3", null, null, null),
+                new Product("4", "Boots", new BigDecimal("39.99"), false));
+        List<Product> repriced = List.of(products.get(0), products.get(1),
+                new Product("4", "Boots", new BigDecimal("39.90"), false));
+
+        //WHEN
+        String etag = ((ProductDetailList) productJson.render(products)).etag();
+
+        //THEN
+        assertThat(((ProductDetailList) productJson.render(copies)).etag()).isEqualTo(etag);
+        assertThat(((ProductDetailList) productJson.render(repriced)).etag()).isNotEqualTo(etag);
+        assertThat(((ProductDetailList) productJson.render(products.subList(0, 2))).etag()).isNotEqualTo(etag);
+        assertThat(((ProductDetailList) productJson.render(products).subList(0, 2)).etag())
+                .isEqualTo(((ProductDetailList) productJson.render(products.subList(0, 2))).etag());
+    }
+
+}
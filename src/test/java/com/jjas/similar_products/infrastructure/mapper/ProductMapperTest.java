@@ -0,0 +1,48 @@
+package com.jjas.similar_products.infrastructure.mapper;
+
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.generated.similar.model.ProductDetail;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductMapperTest {
+
+    private final ProductMapper mapper = new ProductMapperImpl();
+
+    @Test
+    @DisplayName("maps every field, leaving unknown ones null")
+    void shouldMapEveryField() {
+        //GIVEN
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+        Product incomplete = new Product("3", null, null, null);
+
+        //WHEN
+        ProductDetail dto = mapper.toDto(product);
+        ProductDetail incompleteDto = mapper.toDto(incomplete);
+
+        //THEN
+        assertThat(dto).isEqualTo(new ProductDetail().id("2").name("Dress").price(new BigDecimal("19.99")).availability(true));
+        assertThat(incompleteDto).isEqualTo(new ProductDetail().id("3"));
+        assertThat(mapper.toDtoList(List.of(product, incomplete))).containsExactly(dto, incompleteDto);
+    }
+
+    @Test
+    @DisplayName("every call builds its own DTO, so no response shares a mutable one")
+    void shouldNotShareDtos() {
+        //GIVEN
+        Product product = new Product("2", "Dress", new BigDecimal("19.99"), true);
+
+        //WHEN
+        ProductDetail first = mapper.toDto(product);
+        ProductDetail second = mapper.toDto(product);
+
+        //THEN
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+    }
+
+}
@@ -1,31 +1,62 @@
 package com.jjas.similar_products.infrastructure.rest;
 
+import com.jjas.similar_products.config.DeadlineProperties;
+import com.jjas.similar_products.config.ProductCacheProperties;
+import com.jjas.similar_products.config.ServerTimingProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
 import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarProducts;
 import com.jjas.similar_products.domain.port.input.ProductUseCase;
 import com.jjas.similar_products.generated.similar.model.ProductDetail;
 import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
 import com.jjas.similar_products.infrastructure.http.exception.InvalidInputException;
 import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import com.jjas.similar_products.infrastructure.cache.SimilarProductsResponseCache;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragment;
+import com.jjas.similar_products.infrastructure.mapper.JsonFragmentCache;
+import com.jjas.similar_products.infrastructure.mapper.ProductJson;
 import com.jjas.similar_products.infrastructure.mapper.ProductMapper;
 import jakarta.annotation.Resource;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
 
 import java.math.BigDecimal;
-import java.util.Set;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = ProductController.class)
+@Import({SimilarProductsResponseCache.class, ProductCacheProperties.class, DeadlineProperties.class, ProductJson.class,
+        ProductDetailListHttpMessageConverter.class, ServerTiming.class, ServerTimingProperties.class})
+@TestPropertySource(properties = "similar-products.server-timing.enabled=true")
 class ProductControllerTest {
 
     @Resource
@@ -37,6 +68,27 @@ class ProductControllerTest {
     @MockBean
     private ProductMapper productMapper;
 
+    @Resource
+    private SimilarProductsResponseCache responseCache;
+
+    @BeforeEach
+    void setUp() {
+        responseCache.getResponses().invalidateAll();
+    }
+
+    /***
+     * Keeps the JSON of every product instance, as the product details cache does for the products it holds
+     */
+    @TestConfiguration
+    static class CachedFragments {
+
+        @Bean
+        JsonFragmentCache jsonFragmentCache() {
+            Map<Product, JsonFragment> fragments = Collections.synchronizedMap(new IdentityHashMap<>());
+            return (product, serializer) -> fragments.computeIfAbsent(product, serializer);
+        }
+    }
+
     @Test
     @DisplayName("GET /product/{id}/similar -> 200 with valid ProductDetail List")
     void shouldGetSimilarOk() throws Exception {
@@ -44,8 +96,8 @@ class ProductControllerTest {
         Product domain = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
         ProductDetail dto = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
 
-        Mockito.when(productUseCase.findSimilarProducts(eq(id))).thenReturn(Set.of(domain));
-        Mockito.when(productMapper.toDtoSet(eq(Set.of(domain)))).thenReturn(Set.of(dto));
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any())).thenReturn(new SimilarProducts(id, List.of("2"), List.of(domain)));
+        Mockito.when(productMapper.toDto(domain)).thenReturn(dto);
 
         mockMvc.perform(get("/product/{id}/similar", id).accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -60,7 +112,7 @@ class ProductControllerTest {
     @Test
     @DisplayName("GET -> 404 when ProductNotFoundException")
     void shouldGetSimilarNotFound() throws Exception {
-        Mockito.when(productUseCase.findSimilarProducts("999"))
+        Mockito.when(productUseCase.findSimilarProducts(eq("999"), any(), any(), any()))
                 .thenThrow(new ProductNotFoundException("not found"));
 
         mockMvc.perform(get("/product/{id}/similar", "999"))
@@ -71,7 +123,7 @@ class ProductControllerTest {
     @Test
     @DisplayName("GET -> 400 when no valid input")
     void shouldGetSimilarBadRequest() throws Exception {
-        Mockito.when(productUseCase.findSimilarProducts("bad"))
+        Mockito.when(productUseCase.findSimilarProducts(eq("bad"), any(), any(), any()))
                 .thenThrow(new InvalidInputException("bad"));
 
         mockMvc.perform(get("/product/{id}/similar", "bad"))
@@ -82,7 +134,7 @@ class ProductControllerTest {
     @Test
     @DisplayName("GET -> 502 when external service fails")
     void shouldGetSimilarBadGateway() throws Exception {
-        Mockito.when(productUseCase.findSimilarProducts("1"))
+        Mockito.when(productUseCase.findSimilarProducts(eq("1"), any(), any(), any()))
                 .thenThrow(new ExternalServiceException("down", null));
 
         mockMvc.perform(get("/product/{id}/similar", "1"))
@@ -90,4 +142,187 @@ class ProductControllerTest {
                 .andExpect(jsonPath("$.title", is("UPSTREAM_FAILURE")));
     }
 
+    @Test
+    @DisplayName("GET twice -> second response written from the cached response and the pre-serialized products")
+    void shouldServeRepeatedRequestsFromResponseCache() throws Exception {
+        String id = "1";
+        Product domain = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
+        ProductDetail dto = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
+
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any())).thenReturn(new SimilarProducts(id, List.of("2"), List.of(domain)));
+        Mockito.when(productMapper.toDto(domain)).thenReturn(dto);
+
+        mockMvc.perform(get("/product/{id}/similar", id)).andExpect(status().isOk());
+        mockMvc.perform(get("/product/{id}/similar", id))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", 62))
+                .andExpect(content().json("[{\"id\":\"2\",\"name\":\"Prod 2\",\"price\":12.34,\"availability\":true}]", true));
+
+        Mockito.verify(productUseCase, Mockito.times(1)).findSimilarProducts(eq(id), any(), any(), any());
+        Mockito.verify(productMapper, Mockito.times(1)).toDto(domain);
+    }
+
+    @Test
+    @DisplayName("GET with the ETag of the cached response -> 304 without body, max-age following the cache TTL")
+    void shouldAnswerNotModifiedToAMatchingEtag() throws Exception {
+        String id = "1";
+        Product domain = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
+        ProductDetail dto = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
+
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any())).thenReturn(new SimilarProducts(id, List.of("2"), List.of(domain)));
+        Mockito.when(productMapper.toDto(domain)).thenReturn(dto);
+
+        MvcResult first = mockMvc.perform(get("/product/{id}/similar", id))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = first.getResponse().getHeader("ETag");
+        long maxAge = Long.parseLong(first.getResponse().getHeader("Cache-Control").replace("max-age=", ""));
+
+        mockMvc.perform(get("/product/{id}/similar", id).header("If-None-Match", "\"other\", " + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().bytes(new byte[0]));
+        mockMvc.perform(get("/product/{id}/similar", id).param("limit", "1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        assertThat(etag).matches("\"[0-9a-f]+-[0-9a-f]+\"");
+        assertThat(maxAge).isBetween(590L, 600L);
+    }
+
+    @Test
+    @DisplayName("GET of an incomplete response -> another ETag and no-cache, as it is not cached")
+    void shouldNotLetClientsCacheIncompleteResponses() throws Exception {
+        String id = "1";
+        Product domain = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
+        Product other = new Product("3", "Prod 3", new BigDecimal("12.34"), true);
+
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any()))
+                .thenReturn(new SimilarProducts(id, List.of("2", "3"), List.of(domain)))
+                .thenReturn(new SimilarProducts(id, List.of("2", "3"), List.of(domain, other)));
+        Mockito.when(productMapper.toDto(any())).thenReturn(new ProductDetail());
+
+        MvcResult incomplete = mockMvc.perform(get("/product/{id}/similar", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn();
+        mockMvc.perform(get("/product/{id}/similar", id).header("If-None-Match", incomplete.getResponse().getHeader("ETag")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", startsWith("max-age=")));
+    }
+
+    @Test
+    @DisplayName("GET with X-Server-Timing -> Server-Timing header with the phases, only when asked for")
+    void shouldBreakDownTimedRequests() throws Exception {
+        String id = "1";
+        Product domain = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
+        ProductDetail dto = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
+
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any())).thenReturn(new SimilarProducts(id, List.of("2"), List.of(domain)));
+        Mockito.when(productMapper.toDto(domain)).thenReturn(dto);
+
+        mockMvc.perform(get("/product/{id}/similar", id).header("X-Server-Timing", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", matchesPattern(
+                        "cache;desc=\"miss\", map;dur=[0-9.]+, ser;dur=[0-9.]+, total;dur=[0-9.]+")));
+        mockMvc.perform(get("/product/{id}/similar", id).header("X-Server-Timing", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Server-Timing", startsWith("cache;desc=\"hit\", map;dur=0.000, ser;dur=0.000")));
+        mockMvc.perform(get("/product/{id}/similar", id))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Server-Timing"));
+    }
+
+    @Test
+    @DisplayName("GET with X-Request-Timeout -> the use case gets a bounded deadline, capped by max-timeout")
+    void shouldPassRequestTimeoutAsDeadline() throws Exception {
+        String id = "1";
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any())).thenReturn(new SimilarProducts(id, List.of(), List.of()));
+
+        mockMvc.perform(get("/product/{id}/similar", id).header("X-Request-Timeout", "60000"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<Deadline> deadline = ArgumentCaptor.forClass(Deadline.class);
+        Mockito.verify(productUseCase).findSimilarProducts(eq(id), any(), deadline.capture(), any());
+        assertThat(deadline.getValue().isBounded()).isTrue();
+        assertThat(deadline.getValue().remaining()).isLessThanOrEqualTo(Duration.ofSeconds(10));
+    }
+
+    @Test
+    @DisplayName("GET with a non positive X-Request-Timeout -> 400")
+    void shouldRejectNonPositiveRequestTimeout() throws Exception {
+        mockMvc.perform(get("/product/{id}/similar", "1").header("X-Request-Timeout", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title", is("INVALID_INPUT")));
+    }
+
+    @Test
+    @DisplayName("GET with limit and offset -> the use case gets the requested page")
+    void shouldPassLimitAndOffsetAsPage() throws Exception {
+        String id = "1";
+        Mockito.when(productUseCase.findSimilarProducts(eq(id), any(), any(), any())).thenReturn(new SimilarProducts(id, List.of(), List.of()));
+
+        mockMvc.perform(get("/product/{id}/similar", id).param("limit", "2").param("offset", "3"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<Page> page = ArgumentCaptor.forClass(Page.class);
+        Mockito.verify(productUseCase).findSimilarProducts(eq(id), page.capture(), any(), any());
+        assertThat(page.getValue().getOffset()).isEqualTo(3);
+        assertThat(page.getValue().getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("GET with a non positive limit -> 400")
+    void shouldRejectNonPositiveLimit() throws Exception {
+        mockMvc.perform(get("/product/{id}/similar", "1").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title", is("INVALID_INPUT")));
+    }
+
+    @Test
+    @DisplayName("POST /product/similar -> 200 with the similar products by product ID")
+    void shouldPostSimilarBatchOk() throws Exception {
+        Product domain = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
+        ProductDetail dto = new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true);
+
+        Mockito.when(productUseCase.findSimilarProductsBatch(eq(List.of("1", "3")), any()))
+                .thenReturn(Map.of("1", new SimilarProducts("1", List.of("2"), List.of(domain)),
+                        "3", new SimilarProducts("3", List.of(), List.of())));
+        Mockito.when(productMapper.toDto(domain)).thenReturn(dto);
+
+        mockMvc.perform(post("/product/similar").contentType(MediaType.APPLICATION_JSON).content("{\"productIds\":[\"1\",\"3\"]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1", hasSize(1)))
+                .andExpect(jsonPath("$.1[0].id", is("2")))
+                .andExpect(jsonPath("$.3", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("POST /product/similar without product IDs -> 400")
+    void shouldRejectEmptyBatch() throws Exception {
+        mockMvc.perform(post("/product/similar").contentType(MediaType.APPLICATION_JSON).content("{\"productIds\":[]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title", is("INVALID_INPUT")));
+    }
+
+    @Test
+    @DisplayName("GET with Accept application/x-ndjson -> one ProductDetail per line")
+    void shouldStreamSimilarAsNdjson() throws Exception {
+        Product domain2 = new Product("2", "Prod 2", new BigDecimal("12.34"), true);
+        Product domain3 = new Product("3", "Prod 3", new BigDecimal("5"), false);
+        Mockito.when(productUseCase.streamSimilarProducts(eq("1"), any(), any())).thenReturn(Flux.just(domain2, domain3));
+        Mockito.when(productMapper.toDto(domain2)).thenReturn(new ProductDetail().id("2").name("Prod 2").price(new BigDecimal("12.34")).availability(true));
+        Mockito.when(productMapper.toDto(domain3)).thenReturn(new ProductDetail().id("3").name("Prod 3").price(new BigDecimal("5")).availability(false));
+
+        MvcResult result = mockMvc.perform(get("/product/{id}/similar", "1").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON));
+        assertThat(result.getResponse().getContentAsString().lines())
+                .containsExactly("{\"id\":\"2\",\"name\":\"Prod 2\",\"price\":12.34,\"availability\":true}",
+                        "{\"id\":\"3\",\"name\":\"Prod 3\",\"price\":5,\"availability\":false}");
+    }
+
 }
@@ -2,23 +2,42 @@ package com.jjas.similar_products.it;
 
 import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.jjas.similar_products.infrastructure.cache.CachingProductApiAdapter;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.assertj.core.api.Assertions.assertThat;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
 class ProductWorkflowIT {
 
     @RegisterExtension
@@ -32,10 +51,14 @@ class ProductWorkflowIT {
     @Autowired
     TestRestTemplate rest;
 
+    @Autowired
+    CachingProductApiAdapter cachingAdapter;
+
 
     @DynamicPropertySource
     static void registerProps(DynamicPropertyRegistry r) {
         r.add("external.product-api.base-url", () -> "http://localhost:" + wm.getPort());
+        r.add("similar-products.server-timing.enabled", () -> "true");
     }
 
     @BeforeEach
@@ -58,6 +81,14 @@ class ProductWorkflowIT {
                 .willReturn(okJson(body)));
     }
 
+    private void stubSlowProduct(String id, String name, double price, boolean available, int delayMs) {
+        String body = String.format(
+                "{\"id\":\"%s\",\"name\":\"%s\",\"price\":%s,\"availability\":%s}",
+                id, name, price, available);
+        wm.stubFor(get(urlPathEqualTo("/product/" + id))
+                .willReturn(okJson(body).withFixedDelay(delayMs)));
+    }
+
     private String appUrl(String path) {
         return "http://localhost:" + appPort + path;
     }
@@ -78,6 +109,7 @@ class ProductWorkflowIT {
         assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
         assertThat(resp.getBody()).contains("\"id\":\"2\"");
         assertThat(resp.getBody()).contains("\"id\":\"3\"");
+        assertThat(resp.getHeaders().getContentLength()).isEqualTo(resp.getBody().getBytes(StandardCharsets.UTF_8).length);
 
         wm.verify(getRequestedFor(urlPathEqualTo("/product/1/similarids")));
         wm.verify(getRequestedFor(urlPathEqualTo("/product/2")));
@@ -114,4 +146,266 @@ class ProductWorkflowIT {
         assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.BAD_GATEWAY);
         wm.verify(getRequestedFor(urlPathEqualTo("/product/10/similarids")));
     }
+
+    @Test
+    @DisplayName("fetches product details concurrently, latency follows the slowest one")
+    void shouldFetchDetailsConcurrently() {
+        //GIVEN
+        stubSimilarIds("20", "21", "22", "23");
+        stubSlowProduct("21", "Prod 21", 10.0, true, 100);
+        stubSlowProduct("22", "Prod 22", 20.0, true, 1500);
+        stubSlowProduct("23", "Prod 23", 30.0, false, 1500);
+
+        //WHEN
+        long start = System.nanoTime();
+        ResponseEntity<String> resp = rest.getForEntity(appUrl("/product/20/similar"), String.class);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        //THEN
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).contains("\"id\":\"21\"", "\"id\":\"22\"", "\"id\":\"23\"");
+        assertThat(elapsedMs).isBetween(1500L, 2900L);
+    }
+
+    @Test
+    @DisplayName("drops failed products while the others are fetched concurrently")
+    void shouldDropFailedProductsWhenFetchingConcurrently() {
+        //GIVEN
+        stubSimilarIds("30", "31", "32");
+        stubSlowProduct("31", "Prod 31", 10.0, true, 1000);
+        wm.stubFor(get(urlPathEqualTo("/product/32")).willReturn(aResponse().withStatus(500).withFixedDelay(1000)));
+
+        //WHEN
+        long start = System.nanoTime();
+        ResponseEntity<String> resp = rest.getForEntity(appUrl("/product/30/similar"), String.class);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        //THEN
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).contains("\"id\":\"31\"").doesNotContain("\"id\":\"32\"");
+        assertThat(elapsedMs).isLessThan(1900L);
+    }
+
+    @Test
+    @DisplayName("returns the products resolved before the X-Request-Timeout deadline")
+    void shouldReturnPartialResultsAtTheDeadline() {
+        //GIVEN
+        stubSimilarIds("50", "51", "52");
+        stubSlowProduct("51", "Prod 51", 10.0, true, 50);
+        stubSlowProduct("52", "Prod 52", 20.0, true, 1500);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Request-Timeout", "300");
+
+        //WHEN
+        long start = System.nanoTime();
+        ResponseEntity<String> resp = rest.exchange(appUrl("/product/50/similar"), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        //THEN
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).contains("\"id\":\"51\"").doesNotContain("\"id\":\"52\"");
+        assertThat(elapsedMs).isLessThan(1000L);
+    }
+
+    @Test
+    @DisplayName("concurrent requests for the same product hit the upstream only once")
+    void shouldCoalesceConcurrentRequestsForSameProduct() throws Exception {
+        //GIVEN
+        wm.stubFor(get(urlPathEqualTo("/product/40/similarids"))
+                .willReturn(okJson("[\"41\"]").withFixedDelay(300)));
+        stubSlowProduct("41", "Prod 41", 10.0, true, 300);
+        int parallelRequests = 20;
+        ExecutorService callers = Executors.newFixedThreadPool(parallelRequests);
+        CountDownLatch start = new CountDownLatch(1);
+
+        //WHEN
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < parallelRequests; i++) {
+            responses.add(callers.submit(() -> {
+                start.await();
+                return rest.getForEntity(appUrl("/product/40/similar"), String.class);
+            }));
+        }
+        start.countDown();
+
+        //THEN
+        for (Future<ResponseEntity<String>> response : responses) {
+            assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.get().getBody()).contains("\"id\":\"41\"");
+        }
+        callers.shutdown();
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/40/similarids")));
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/41")));
+    }
+
+    @Test
+    @DisplayName("publishes the saturation of the bulkhead of every upstream operation")
+    void shouldPublishBulkheadSaturationPerOperation() {
+        //WHEN
+        ResponseEntity<String> similarIds = rest.getForEntity(
+                appUrl("/actuator/metrics/resilience4j.bulkhead.queue.depth?tag=name:similarIds"), String.class);
+        ResponseEntity<String> productDetail = rest.getForEntity(
+                appUrl("/actuator/metrics/resilience4j.bulkhead.queue.depth?tag=name:productDetail"), String.class);
+
+        //THEN
+        assertThat(similarIds.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(productDetail.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    @DisplayName("breaks a timed request down into the similar IDs lookup, the fan-out and its slowest lookup")
+    void shouldBreakDownTimedRequests() {
+        //GIVEN
+        stubSimilarIds("97", "98", "99");
+        stubProduct("98", "Prod 98", 9.8, true);
+        stubSlowProduct("99", "Prod 99", 9.9, true, 150);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Server-Timing", "true");
+
+        //WHEN
+        ResponseEntity<String> response = rest.exchange(appUrl("/product/97/similar"), HttpMethod.GET,
+                new HttpEntity<>(headers), String.class);
+
+        //THEN
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst("Server-Timing"))
+                .startsWith("cache;desc=\"miss\", ids;dur=")
+                .contains(";desc=\"miss\", fanout;dur=", ";desc=\"2 details\", slowest;dur=", ";desc=\"99\", map;dur=");
+    }
+
+    @Test
+    @DisplayName("publishes upstream latencies, cache, circuit breaker and fan-out metrics for Prometheus")
+    void shouldPublishPrometheusMetrics() {
+        //GIVEN
+        stubSimilarIds("95", "96");
+        stubProduct("96", "Prod 96", 9.6, true);
+        rest.getForEntity(appUrl("/product/95/similar"), String.class);
+
+        //WHEN
+        ResponseEntity<String> scrape = rest.getForEntity(appUrl("/actuator/prometheus"), String.class);
+
+        //THEN
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(scrape.getBody())
+                .contains("upstream_requests_seconds_bucket{operation=\"productDetail\",outcome=\"success\"")
+                .contains("upstream_fallbacks_total{operation=\"similarIds\"}")
+                .containsPattern("cache_gets_total\\{cache=\"product-details\",.*result=\"miss\"}")
+                .contains("cache_invalidations_total{cache=\"similar-responses\"}")
+                .contains("resilience4j_circuitbreaker_state{")
+                .contains("fanout_size_bucket{");
+    }
+
+    @Test
+    @DisplayName("a batch request fetches every distinct product detail once")
+    void shouldFetchSharedDetailsOnceInABatch() {
+        //GIVEN
+        stubSimilarIds("60", "62", "63");
+        stubSimilarIds("61", "63", "64");
+        stubProduct("62", "Prod 62", 10.0, true);
+        stubProduct("63", "Prod 63", 20.0, true);
+        stubProduct("64", "Prod 64", 30.0, false);
+        wm.stubFor(get(urlPathEqualTo("/product/69/similarids")).willReturn(aResponse().withStatus(404)));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        //WHEN
+        ResponseEntity<String> resp = rest.exchange(appUrl("/product/similar"), HttpMethod.POST,
+                new HttpEntity<>("{\"productIds\":[\"60\",\"61\",\"69\"]}", headers), String.class);
+
+        //THEN
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).contains("\"60\":[", "\"61\":[", "\"id\":\"62\"", "\"id\":\"64\"").doesNotContain("\"69\"");
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/63")));
+    }
+
+    @Test
+    @DisplayName("streams every product as NDJSON as soon as its details arrive")
+    void shouldStreamProductsAsTheyArrive() throws Exception {
+        //GIVEN
+        stubSimilarIds("70", "71", "72");
+        stubSlowProduct("71", "Prod 71", 10.0, true, 50);
+        stubSlowProduct("72", "Prod 72", 20.0, true, 1500);
+        HttpURLConnection connection = (HttpURLConnection) URI.create(appUrl("/product/70/similar")).toURL().openConnection();
+        connection.setRequestProperty("Accept", "application/x-ndjson");
+
+        //WHEN
+        long start = System.nanoTime();
+        List<String> lines = new ArrayList<>();
+        long firstLineMs = -1;
+        long lastLineMs;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (firstLineMs < 0) {
+                    firstLineMs = (System.nanoTime() - start) / 1_000_000;
+                }
+                lines.add(line);
+            }
+            lastLineMs = (System.nanoTime() - start) / 1_000_000;
+        }
+
+        //THEN
+        assertThat(connection.getResponseCode()).isEqualTo(200);
+        assertThat(connection.getContentType()).startsWith("application/x-ndjson");
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).contains("\"id\":\"71\"");
+        assertThat(lines.get(1)).contains("\"id\":\"72\"");
+        assertThat(lastLineMs - firstLineMs).isGreaterThan(1000L);
+    }
+
+    @Test
+    @DisplayName("returns only the requested page, in rank order, without fetching products past it")
+    void shouldReturnTheRequestedPageInRankOrder() {
+        //GIVEN
+        stubSimilarIds("80", "84", "81", "83", "82", "85", "86", "87");
+        stubSlowProduct("84", "Prod 84", 40.0, true, 300);
+        wm.stubFor(get(urlPathEqualTo("/product/81")).willReturn(aResponse().withStatus(404)));
+        stubProduct("83", "Prod 83", 30.0, true);
+        stubProduct("82", "Prod 82", 20.0, true);
+        stubProduct("85", "Prod 85", 50.0, true);
+
+        //WHEN
+        ResponseEntity<String> resp = rest.getForEntity(appUrl("/product/80/similar?limit=3"), String.class);
+
+        //THEN
+        assertThat(resp.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(resp.getBody()).containsSubsequence("\"id\":\"84\"", "\"id\":\"83\"", "\"id\":\"82\"")
+                .doesNotContain("\"id\":\"81\"", "\"id\":\"85\"");
+        wm.verify(0, getRequestedFor(urlPathEqualTo("/product/86")));
+        wm.verify(0, getRequestedFor(urlPathEqualTo("/product/87")));
+    }
+
+    @Test
+    @DisplayName("answers a matching If-None-Match with 304 and revalidates cached products upstream with their ETag")
+    void shouldRevalidateWithEtags() throws Exception {
+        //GIVEN
+        stubSimilarIds("90", "91");
+        wm.stubFor(get(urlPathEqualTo("/product/91")).atPriority(2)
+                .willReturn(okJson("{\"id\":\"91\",\"name\":\"Prod 91\",\"price\":9.5,\"availability\":true}")
+                        .withHeader(HttpHeaders.ETAG, "\"v1\"")));
+        wm.stubFor(get(urlPathEqualTo("/product/91")).atPriority(1)
+                .withHeader(HttpHeaders.IF_NONE_MATCH, equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(304).withHeader(HttpHeaders.ETAG, "\"v1\"")));
+        ResponseEntity<String> first = rest.getForEntity(appUrl("/product/90/similar"), String.class);
+        String etag = first.getHeaders().getETag();
+
+        //WHEN
+        HttpHeaders conditional = new HttpHeaders();
+        conditional.setIfNoneMatch(etag);
+        ResponseEntity<String> notModified = rest.exchange(appUrl("/product/90/similar"), HttpMethod.GET,
+                new HttpEntity<>(conditional), String.class);
+        cachingAdapter.getProductDetailsCache().synchronous().refresh("91").get();
+        ResponseEntity<String> afterRefresh = rest.exchange(appUrl("/product/90/similar"), HttpMethod.GET,
+                new HttpEntity<>(conditional), String.class);
+
+        //THEN
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(first.getHeaders().getCacheControl()).startsWith("max-age=");
+        assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(notModified.getBody()).isNull();
+        assertThat(afterRefresh.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/90/similarids")));
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/91")).withHeader(HttpHeaders.IF_NONE_MATCH, equalTo("\"v1\"")));
+        wm.verify(2, getRequestedFor(urlPathEqualTo("/product/91")));
+    }
+
 }
@@ -0,0 +1,199 @@
+package com.jjas.similar_products.it;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.jjas.similar_products.infrastructure.http.UpstreamResilience;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveProductWorkflowIT {
+
+    @RegisterExtension
+    static WireMockExtension wm = WireMockExtension.newInstance()
+            .options(WireMockConfiguration.wireMockConfig().dynamicPort())
+            .build();
+
+    @Autowired
+    WebTestClient client;
+
+    @Autowired
+    ApplicationContext context;
+
+    @Autowired
+    CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @DynamicPropertySource
+    static void registerProps(DynamicPropertyRegistry r) {
+        r.add("external.product-api.base-url", () -> "http://localhost:" + wm.getPort());
+    }
+
+    @BeforeEach
+    void clean() {
+        wm.resetAll();
+    }
+
+    private void stubSimilarIds(String id, String... ids) {
+        String json = java.util.Arrays.toString(ids).replaceAll("([a-zA-Z0-9]+)", "\"$1\"");
+        wm.stubFor(get(urlPathEqualTo("/product/" + id + "/similarids"))
+                .willReturn(okJson(json)));
+    }
+
+    private void stubProduct(String id, String name, double price, boolean available, int delayMs) {
+        String body = String.format(
+                "{\"id\":\"%s\",\"name\":\"%s\",\"price\":%s,\"availability\":%s}",
+                id, name, price, available);
+        wm.stubFor(get(urlPathEqualTo("/product/" + id))
+                .willReturn(okJson(body).withFixedDelay(delayMs)));
+    }
+
+    @Test
+    @DisplayName("runs on the reactive web stack")
+    void shouldRunOnReactiveStack() {
+        assertThat(context).isInstanceOf(org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext.class);
+    }
+
+    @Test
+    @DisplayName("returns 200 OK with similar products, dropping failed ones")
+    void shouldReturn200WithSimilarProducts() {
+        //GIVEN
+        stubSimilarIds("1", "2", "3", "4");
+        stubProduct("2", "Prod 2", 12.34, true, 0);
+        stubProduct("3", "Prod 3", 99.99, false, 0);
+        wm.stubFor(get(urlPathEqualTo("/product/4")).willReturn(aResponse().withStatus(404)));
+
+        //WHEN / THEN
+        client.get().uri("/product/1/similar")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[?(@.id == '2')].name").isEqualTo("Prod 2")
+                .jsonPath("$[?(@.id == '3')].availability").isEqualTo(false);
+    }
+
+    @Test
+    @DisplayName("fetches product details concurrently")
+    void shouldFetchDetailsConcurrently() {
+        //GIVEN
+        stubSimilarIds("20", "21", "22", "23");
+        stubProduct("21", "Prod 21", 10.0, true, 1000);
+        stubProduct("22", "Prod 22", 20.0, true, 1000);
+        stubProduct("23", "Prod 23", 30.0, true, 1000);
+
+        //WHEN
+        long start = System.nanoTime();
+        client.mutate().responseTimeout(Duration.ofSeconds(10)).build()
+                .get().uri("/product/20/similar")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(3);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        //THEN
+        assertThat(elapsedMs).isLessThan(2500L);
+    }
+
+    @Test
+    @DisplayName("returns 404 Not Found when upstream is 404")
+    void shouldReturn404WhenUpstream404() {
+        //GIVEN
+        wm.stubFor(get(urlPathEqualTo("/product/999/similarids"))
+                .willReturn(aResponse().withStatus(404)
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"message\":\"not found\"}")));
+
+        //WHEN / THEN
+        client.get().uri("/product/999/similar")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody().jsonPath("$.title").isEqualTo("NOT_FOUND");
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/999/similarids")));
+    }
+
+    @Test
+    @DisplayName("returns 502 Bad Gateway when upstream is 5xx")
+    void shouldReturn502WhenUpstream5xx() {
+        //GIVEN
+        wm.stubFor(get(urlPathEqualTo("/product/10/similarids")).willReturn(aResponse().withStatus(502)));
+
+        //WHEN / THEN
+        client.get().uri("/product/10/similar")
+                .exchange()
+                .expectStatus().isEqualTo(502)
+                .expectBody().jsonPath("$.title").isEqualTo("UPSTREAM_FAILURE");
+    }
+
+    @Test
+    @DisplayName("returns 200 OK without products when the similar IDs circuit is open, as the blocking profile")
+    void shouldAnswerTheFallbackWhenSimilarIdsCircuitIsOpen() {
+        //GIVEN
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(UpstreamResilience.SIMILAR_IDS);
+        circuitBreaker.transitionToForcedOpenState();
+
+        //WHEN / THEN
+        try {
+            client.get().uri("/product/11/similar")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectBody().json("[]");
+        } finally {
+            circuitBreaker.reset();
+        }
+        wm.verify(0, getRequestedFor(urlPathEqualTo("/product/11/similarids")));
+    }
+
+    @Test
+    @DisplayName("bounds every upstream call by the X-Request-Timeout deadline, returning the products resolved by then")
+    void shouldReturnPartialResultsAtTheDeadline() {
+        //GIVEN
+        stubSimilarIds("50", "51", "52");
+        stubProduct("51", "Prod 51", 10.0, true, 50);
+        stubProduct("52", "Prod 52", 20.0, true, 1500);
+
+        //WHEN
+        long start = System.nanoTime();
+        String body = client.get().uri("/product/50/similar")
+                .header("X-Request-Timeout", "300")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        //THEN
+        assertThat(body).contains("\"id\":\"51\"").doesNotContain("\"id\":\"52\"");
+        assertThat(elapsedMs).isLessThan(1000L);
+    }
+
+    @Test
+    @DisplayName("returns 504 without retrying when the similar IDs are not known before the deadline")
+    void shouldReturn504WhenTheSimilarIdsMissTheDeadline() {
+        //GIVEN
+        wm.stubFor(get(urlPathEqualTo("/product/60/similarids")).willReturn(okJson("[\"61\"]").withFixedDelay(1000)));
+
+        //WHEN / THEN
+        client.get().uri("/product/60/similar")
+                .header("X-Request-Timeout", "200")
+                .exchange()
+                .expectStatus().isEqualTo(504)
+                .expectBody().jsonPath("$.title").isEqualTo("DEADLINE_EXCEEDED");
+        wm.verify(1, getRequestedFor(urlPathEqualTo("/product/60/similarids")));
+    }
+}
@@ -0,0 +1,150 @@
+package com.jjas.similar_products.it;
+
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.jjas.similar_products.config.VirtualThreads;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("virtual-threads")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadsWorkflowIT {
+
+    @RegisterExtension
+    static WireMockExtension wm = WireMockExtension.newInstance()
+            .options(WireMockConfiguration.wireMockConfig().dynamicPort())
+            .build();
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    TestRestTemplate rest;
+
+    @Autowired
+    @Qualifier("upstreamCallExecutor")
+    ExecutorService upstreamCallExecutor;
+
+    @DynamicPropertySource
+    static void registerProps(DynamicPropertyRegistry r) {
+        r.add("external.product-api.base-url", () -> "http://localhost:" + wm.getPort());
+    }
+
+    private String appUrl(String path) {
+        return "http://localhost:" + port + path;
+    }
+
+    @Test
+    @DisplayName("concurrent requests blocking on slow upstream calls never pin a carrier thread")
+    void shouldNotPinCarrierThreads() throws Exception {
+        //GIVEN
+        wm.stubFor(get(urlPathMatching("/product/[0-9]+/similarids"))
+                .willReturn(okJson("[\"201\",\"202\",\"203\",\"204\"]").withFixedDelay(20)));
+        wm.stubFor(get(urlPathMatching("/product/20[0-9]"))
+                .willReturn(okJson("{\"id\":\"201\",\"name\":\"Prod\",\"price\":1.5,\"availability\":true}").withFixedDelay(50)));
+        ExecutorService clients = Executors.newFixedThreadPool(32);
+
+        //WHEN
+        List<ResponseEntity<String>> responses = new ArrayList<>();
+        List<RecordedEvent> pinned;
+        try {
+            pinned = recordPinnedEvents(() -> {
+                List<Future<ResponseEntity<String>>> pending = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    String url = appUrl("/product/" + (100 + i) + "/similar");
+                    pending.add(clients.submit(() -> rest.getForEntity(url, String.class)));
+                }
+                for (Future<ResponseEntity<String>> response : pending) {
+                    responses.add(response.get());
+                }
+            });
+        } finally {
+            clients.shutdownNow();
+        }
+
+        //THEN
+        assertThat(upstreamCallExecutor).isNotNull();
+        assertThat(responses).allSatisfy(response -> {
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).contains("\"id\":\"201\"");
+        });
+        assertThat(pinned).isEmpty();
+    }
+
+    @Test
+    @DisplayName("the recording catches a virtual thread parking while it holds a monitor")
+    void shouldDetectPinnedCarrierThreads() throws Exception {
+        //GIVEN
+        Object monitor = new Object();
+        ExecutorService virtualThreads = VirtualThreads.newExecutor("pinning-");
+
+        //WHEN
+        List<RecordedEvent> pinned;
+        try {
+            pinned = recordPinnedEvents(() -> virtualThreads.submit(() -> {
+                synchronized (monitor) {
+                    Thread.sleep(20);
+                }
+                return null;
+            }).get());
+        } finally {
+            virtualThreads.shutdownNow();
+        }
+
+        //THEN
+        assertThat(pinned).isNotEmpty();
+    }
+
+    /***
+     * Runs the workload while recording the JFR events of virtual threads pinning their carrier, whatever the duration
+     * @return the pinned events
+     */
+    private static List<RecordedEvent> recordPinnedEvents(Workload workload) throws Exception {
+        Path events = Files.createTempFile("virtual-threads", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+            workload.run();
+            recording.stop();
+            recording.dump(events);
+            return RecordingFile.readAllEvents(events);
+        } finally {
+            Files.deleteIfExists(events);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        void run() throws Exception;
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.jjas.similar_products.service;
+
+import com.jjas.similar_products.config.FanOutProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BoundedFanOutTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldKeepInputOrderAndReturnNullForFailedTasks() {
+        // GIVEN
+        BoundedFanOut fanOut = new BoundedFanOut(executor, new FanOutProperties());
+
+        // WHEN
+        List<String> result = fanOut.map(List.of("1", "2", "3"), id -> {
+            if (id.equals("2")) {
+                throw new IllegalStateException("boom");
+            }
+            return "p" + id;
+        });
+
+        // THEN
+        assertThat(result).containsExactly("p1", null, "p3");
+    }
+
+    @Test
+    void shouldPublishTheSizeOfEveryFanOut() {
+        // GIVEN
+        BoundedFanOut fanOut = new BoundedFanOut(executor, new FanOutProperties());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        fanOut.bindTo(registry);
+
+        // WHEN
+        fanOut.map(List.of("1", "2", "3"), id -> id);
+        fanOut.stream(List.of("1"), id -> id).blockLast();
+
+        // THEN
+        DistributionSummary size = registry.get("fanout.size").summary();
+        assertThat(size.count()).isEqualTo(2);
+        assertThat(size.totalAmount()).isEqualTo(4);
+        assertThat(registry.get("fanout.in.flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void shouldNotExceedMaxInFlightPerRequest() throws Exception {
+        // GIVEN
+        FanOutProperties properties = new FanOutProperties();
+        properties.setMaxInFlightPerRequest(2);
+        BoundedFanOut fanOut = new BoundedFanOut(executor, properties);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        CountDownLatch twoStarted = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // WHEN
+        CompletableFuture<List<Integer>> result = CompletableFuture.supplyAsync(() -> fanOut.map(List.of(1, 2, 3, 4, 5, 6), n -> {
+            maxSeen.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            twoStarted.countDown();
+            await(release);
+            inFlight.decrementAndGet();
+            return n;
+        }));
+        assertThat(twoStarted.await(1, TimeUnit.SECONDS)).isTrue();
+        int inFlightAtTheLimit = inFlight.get();
+        release.countDown();
+
+        // THEN
+        assertThat(inFlightAtTheLimit).isEqualTo(2);
+        assertThat(result.get(1, TimeUnit.SECONDS)).containsExactly(1, 2, 3, 4, 5, 6);
+        assertThat(maxSeen.get()).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void shouldRunTasksConcurrently() {
+        // GIVEN
+        BoundedFanOut fanOut = new BoundedFanOut(executor, new FanOutProperties());
+        CountDownLatch allStarted = new CountDownLatch(4);
+
+        // WHEN
+        List<Boolean> result = fanOut.map(List.of(1, 2, 3, 4), n -> {
+            allStarted.countDown();
+            return await(allStarted);
+        });
+
+        // THEN
+        assertThat(result).containsOnly(true);
+    }
+
+    /***
+     * @return false when the latch did not open within a second
+     */
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,17 +1,39 @@
 package com.jjas.similar_products.service;
 
+import com.jjas.similar_products.config.FanOutProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
 import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.model.SimilarProducts;
 import com.jjas.similar_products.domain.port.output.ExternalProductService;
+import com.jjas.similar_products.infrastructure.http.exception.DeadlineExceededException;
+import com.jjas.similar_products.infrastructure.http.exception.ExternalServiceException;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import com.jjas.similar_products.infrastructure.rest.RequestTiming;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
-import java.util.Set;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import reactor.test.StepVerifier;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -20,24 +42,28 @@ class ProductServiceTest {
     @Mock
     ExternalProductService externalProductService;
 
-    @InjectMocks
     ProductService productService;
 
+    @BeforeEach
+    void setUp() {
+        productService = new ProductService(externalProductService, new BoundedFanOut(Runnable::run, new FanOutProperties()), new FanOutProperties());
+    }
+
     @Test
     void shouldReturnSimilarProductsWhenAllProductsExist() {
         // GIVEN
         String id = "1";
-        Set<String> similarIds = Set.of("2", "3");
+        List<String> similarIds = List.of("2", "3");
 
         Product product2 = new Product("2", "Shirt", new BigDecimal("19.99"), true);
         Product product3 = new Product("3", "Pants", new BigDecimal("29.99"), true);
 
-        when(externalProductService.fetchSimilarProductIds(id)).thenReturn(similarIds);
-        when(externalProductService.fetchProductDetail("2")).thenReturn(product2);
-        when(externalProductService.fetchProductDetail("3")).thenReturn(product3);
+        when(externalProductService.fetchSimilarProductIds(eq(id), any())).thenReturn(similarIds);
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(product2);
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(product3);
 
         // WHEN
-        Set<Product> result = productService.findSimilarProducts(id);
+        List<Product> result = productService.findSimilarProducts(id).getProducts();
 
         // THEN
         assertThat(result).containsExactly(product2, product3);
@@ -47,21 +73,21 @@ class ProductServiceTest {
     void shouldSkipNullProductsInSimilarList() {
         // GIVEN
         String id = "1";
-        Set<String> similarIds = Set.of("2", "3");
+        List<String> similarIds = List.of("2", "3");
 
-        when(externalProductService.fetchSimilarProductIds(id)).thenReturn(similarIds);
-        when(externalProductService.fetchProductDetail("2")).thenReturn(null);
-        when(externalProductService.fetchProductDetail("3")).thenReturn(
+        when(externalProductService.fetchSimilarProductIds(eq(id), any())).thenReturn(similarIds);
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(null);
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(
                 new Product("3", "Pants", new BigDecimal("29.99"), true));
 
         // WHEN
-        Set<Product> result = productService.findSimilarProducts(id);
+        List<Product> result = productService.findSimilarProducts(id).getProducts();
 
         // THEN
         assertThat(result).hasSize(1);
         assertThat(result)
                 .extracting(Product::getId)
-                .containsExactlyInAnyOrder("3");
+                .containsExactly("3");
     }
 
     @Test
@@ -69,35 +95,187 @@ class ProductServiceTest {
         // GIVEN
         String id = "1";
 
-        when(externalProductService.fetchSimilarProductIds(id)).thenReturn(Set.of("1", "2", "3"));
-        when(externalProductService.fetchProductDetail("1"))
+        when(externalProductService.fetchSimilarProductIds(eq(id), any())).thenReturn(List.of("1", "2", "3"));
+        when(externalProductService.fetchProductDetail(eq("1"), any()))
                 .thenThrow(new RuntimeException("Timeout"));
-        when(externalProductService.fetchProductDetail("2"))
+        when(externalProductService.fetchProductDetail(eq("2"), any()))
                 .thenReturn(new Product("2", "Trousers", new BigDecimal("19.99"), true));
-        when(externalProductService.fetchProductDetail("3"))
+        when(externalProductService.fetchProductDetail(eq("3"), any()))
                 .thenReturn(new Product("3", "Pants", new BigDecimal("29.99"), true));
 
         // WHEN
-        Set<Product> result = productService.findSimilarProducts(id);
+        List<Product> result = productService.findSimilarProducts(id).getProducts();
 
         // THEN
         assertThat(result).hasSize(2);
         assertThat(result)
                 .extracting(Product::getId)
-                .containsExactlyInAnyOrder("3", "2");
+                .containsExactly("2", "3");
     }
 
     @Test
     void shouldReturnEmptyListWhenSimilarIdsIsEmpty() {
         // GIVEN
         String id = "1";
-        when(externalProductService.fetchSimilarProductIds(id)).thenReturn(Set.of());
+        when(externalProductService.fetchSimilarProductIds(eq(id), any())).thenReturn(List.of());
 
         // WHEN
-        Set<Product> result = productService.findSimilarProducts(id);
+        List<Product> result = productService.findSimilarProducts(id).getProducts();
 
         // THEN
         assertThat(result).isEmpty();
     }
 
+    @Test
+    void shouldReturnTheProductsResolvedBeforeTheDeadline() {
+        // GIVEN
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ProductService concurrentService = new ProductService(externalProductService, new BoundedFanOut(executor, new FanOutProperties()), new FanOutProperties());
+        CountDownLatch release = new CountDownLatch(1);
+        Product product2 = new Product("2", "Shirt", new BigDecimal("19.99"), true);
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2", "3"));
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(product2);
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new Product("3", "Pants", new BigDecimal("29.99"), true);
+        });
+
+        // WHEN
+        SimilarProducts result = concurrentService.findSimilarProducts("1", Deadline.after(Duration.ofMillis(200)));
+        release.countDown();
+        executor.shutdownNow();
+
+        // THEN
+        assertThat(result.getProducts()).containsExactly(product2);
+        assertThat(result.isComplete()).isFalse();
+    }
+
+    @Test
+    void shouldFetchEveryDistinctProductDetailOnceInABatch() {
+        // GIVEN
+        Product product2 = new Product("2", "Shirt", new BigDecimal("19.99"), true);
+        Product product3 = new Product("3", "Pants", new BigDecimal("29.99"), true);
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2", "3"));
+        when(externalProductService.fetchSimilarProductIds(eq("4"), any())).thenReturn(List.of("3"));
+        when(externalProductService.fetchSimilarProductIds(eq("5"), any())).thenThrow(new ProductNotFoundException("5"));
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(product2);
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(product3);
+
+        // WHEN
+        Map<String, SimilarProducts> result = productService.findSimilarProductsBatch(List.of("1", "4", "5", "1"), Deadline.none());
+
+        // THEN
+        assertThat(result).containsOnlyKeys("1", "4");
+        assertThat(result.get("1").getProducts()).containsExactly(product2, product3);
+        assertThat(result.get("4").getProducts()).containsExactly(product3);
+        verify(externalProductService, times(1)).fetchProductDetail(eq("3"), any());
+        verify(externalProductService, times(1)).fetchSimilarProductIds(eq("1"), any());
+    }
+
+    @Test
+    void shouldFailTheBatchWhenSimilarIdsFailForAnotherReasonThanNotFound() {
+        // GIVEN
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2"));
+        when(externalProductService.fetchSimilarProductIds(eq("4"), any())).thenThrow(new ExternalServiceException("down", null));
+
+        // WHEN / THEN
+        assertThatThrownBy(() -> productService.findSimilarProductsBatch(List.of("1", "4"), Deadline.none()))
+                .isInstanceOf(ExternalServiceException.class);
+        verify(externalProductService, never()).fetchProductDetail(any(), any());
+    }
+
+    @Test
+    void shouldFailTheBatchWhenTheDeadlineIsReachedBeforeTheSimilarIds() {
+        // GIVEN
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ProductService concurrentService = new ProductService(externalProductService, new BoundedFanOut(executor, new FanOutProperties()), new FanOutProperties());
+        CountDownLatch release = new CountDownLatch(1);
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2"));
+        when(externalProductService.fetchSimilarProductIds(eq("4"), any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of("3");
+        });
+
+        // WHEN / THEN
+        assertThatThrownBy(() -> concurrentService.findSimilarProductsBatch(List.of("1", "4"), Deadline.after(Duration.ofMillis(200))))
+                .isInstanceOf(DeadlineExceededException.class)
+                .hasMessageContaining("4");
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldStreamEveryProductAsSoonAsItArrives() {
+        // GIVEN
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ProductService concurrentService = new ProductService(externalProductService, new BoundedFanOut(executor, new FanOutProperties()), new FanOutProperties());
+        Product product2 = new Product("2", "Shirt", new BigDecimal("19.99"), true);
+        Product product3 = new Product("3", "Pants", new BigDecimal("29.99"), true);
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2", "3", "4"));
+        CountDownLatch product3Emitted = new CountDownLatch(1);
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenAnswer(invocation -> {
+            product3Emitted.await(5, TimeUnit.SECONDS);
+            return product2;
+        });
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(product3);
+        when(externalProductService.fetchProductDetail(eq("4"), any())).thenThrow(new ProductNotFoundException("4"));
+
+        // WHEN / THEN
+        StepVerifier.create(concurrentService.streamSimilarProducts("1", Page.all(), Deadline.none()))
+                .expectNext(product3)
+                .then(product3Emitted::countDown)
+                .expectNext(product2)
+                .verifyComplete();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void shouldFetchOnlyTheRequestedWindowInRankOrder() {
+        // GIVEN
+        Product product3 = new Product("3", "Pants", new BigDecimal("29.99"), true);
+        Product product5 = new Product("5", "Socks", new BigDecimal("4.99"), true);
+        Product product6 = new Product("6", "Hat", new BigDecimal("9.99"), true);
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any()))
+                .thenReturn(List.of("2", "3", "4", "5", "6", "7", "8", "9", "10"));
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(product3);
+        when(externalProductService.fetchProductDetail(eq("4"), any())).thenThrow(new ProductNotFoundException("4"));
+        when(externalProductService.fetchProductDetail(eq("5"), any())).thenReturn(product5);
+        when(externalProductService.fetchProductDetail(eq("6"), any())).thenReturn(product6);
+
+        // WHEN
+        SimilarProducts result = productService.findSimilarProducts("1", Page.of(1, 3), Deadline.none());
+
+        // THEN
+        assertThat(result.getProducts()).containsExactly(product3, product5, product6);
+        verify(externalProductService, never()).fetchProductDetail(eq("2"), any());
+        verify(externalProductService, never()).fetchProductDetail(eq("8"), any());
+        verify(externalProductService, never()).fetchProductDetail(eq("10"), any());
+    }
+
+    @Test
+    void shouldReportTheLookupsToTheTimingOfTheRequest() {
+        // GIVEN
+        Product product2 = new Product("2", "Shirt", new BigDecimal("19.99"), true);
+        Product product3 = new Product("3", "Pants", new BigDecimal("29.99"), true);
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(List.of("2", "3", "4"));
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(product2);
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return product3;
+        });
+        when(externalProductService.fetchProductDetail(eq("4"), any())).thenThrow(new ProductNotFoundException("4"));
+
+        // WHEN
+        try (RequestTiming timing = RequestTiming.start()) {
+            productService.findSimilarProducts("1", Page.all(), Deadline.none(), timing);
+
+            // THEN
+            assertThat(timing.getSimilarIdsNanos()).isNotNegative();
+            assertThat(timing.getDetails()).isEqualTo(3);
+            assertThat(timing.getSlowestId()).isEqualTo("3");
+            assertThat(timing.getSlowestNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+            assertThat(timing.getFanOutNanos()).isGreaterThanOrEqualTo(timing.getSlowestNanos());
+        }
+    }
+
 }
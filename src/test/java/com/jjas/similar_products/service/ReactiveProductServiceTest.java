@@ -0,0 +1,112 @@
+package com.jjas.similar_products.service;
+
+import com.jjas.similar_products.config.FanOutProperties;
+import com.jjas.similar_products.domain.model.Deadline;
+import com.jjas.similar_products.domain.model.Page;
+import com.jjas.similar_products.domain.model.Product;
+import com.jjas.similar_products.domain.port.output.ReactiveExternalProductService;
+import com.jjas.similar_products.infrastructure.http.exception.ProductNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveProductServiceTest {
+
+    @Mock
+    ReactiveExternalProductService externalProductService;
+
+    ReactiveProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        productService = new ReactiveProductService(externalProductService, new FanOutProperties());
+    }
+
+    @Test
+    void shouldReturnSimilarProductsWhenAllProductsExist() {
+        // GIVEN
+        Product product2 = new Product("2", "Shirt", new BigDecimal("19.99"), true);
+        Product product3 = new Product("3", "Pants", new BigDecimal("29.99"), true);
+
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(Mono.just(List.of("2", "3")));
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(Mono.just(product2));
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(Mono.just(product3));
+
+        // WHEN / THEN
+        StepVerifier.create(productService.findSimilarProducts("1"))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldSkipProductsThatFail() {
+        // GIVEN
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(Mono.just(List.of("2", "3")));
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(Mono.error(new ProductNotFoundException("2")));
+        when(externalProductService.fetchProductDetail(eq("3"), any()))
+                .thenReturn(Mono.just(new Product("3", "Pants", new BigDecimal("29.99"), true)));
+
+        // WHEN / THEN
+        StepVerifier.create(productService.findSimilarProducts("1"))
+                .expectNextMatches(p -> p.getId().equals("3"))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldKeepTheRankOrderWhenEarlierProductsAreSlower() {
+        // GIVEN
+        when(externalProductService.fetchSimilarProductIds(eq("1"), any())).thenReturn(Mono.just(List.of("2", "3")));
+        when(externalProductService.fetchProductDetail(eq("2"), any())).thenReturn(
+                Mono.just(new Product("2", "Slow", new BigDecimal("1"), true)).delayElement(Duration.ofMillis(300)));
+        when(externalProductService.fetchProductDetail(eq("3"), any())).thenReturn(
+                Mono.just(new Product("3", "Fast", new BigDecimal("2"), true)));
+
+        // WHEN / THEN
+        StepVerifier.create(productService.findSimilarProducts("1"))
+                .expectNextMatches(p -> p.getId().equals("2"))
+                .expectNextMatches(p -> p.getId().equals("3"))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldPassTheDeadlineToEveryUpstreamCall() {
+        // GIVEN
+        Deadline deadline = Deadline.after(Duration.ofSeconds(5));
+        when(externalProductService.fetchSimilarProductIds(eq("1"), same(deadline))).thenReturn(Mono.just(List.of("2", "3")));
+        when(externalProductService.fetchProductDetail(eq("2"), same(deadline)))
+                .thenReturn(Mono.just(new Product("2", "Shirt", new BigDecimal("19.99"), true)));
+        when(externalProductService.fetchProductDetail(eq("3"), same(deadline)))
+                .thenReturn(Mono.just(new Product("3", "Pants", new BigDecimal("29.99"), true)));
+
+        // WHEN / THEN
+        StepVerifier.create(productService.findSimilarProducts("1", Page.all(), deadline))
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldPropagateErrorWhenSimilarIdsNotFound() {
+        // GIVEN
+        when(externalProductService.fetchSimilarProductIds(eq("9"), any())).thenReturn(Mono.error(new ProductNotFoundException("9")));
+
+        // WHEN / THEN
+        StepVerifier.create(productService.findSimilarProducts("9"))
+                .expectError(ProductNotFoundException.class)
+                .verify();
+    }
+
+}
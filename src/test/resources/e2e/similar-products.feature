@@ -9,7 +9,7 @@ Feature: E2E - /product/{id}/similar
     Given path 'product', '1', 'similar'
     When method get
     Then status 200
-    And match response contains only
+    And match response ==
 """
 [
   { id: '2', name: 'Dress',  price: 19.99, availability: true  },